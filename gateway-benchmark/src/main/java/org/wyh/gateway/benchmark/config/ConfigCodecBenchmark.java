@@ -0,0 +1,155 @@
+package org.wyh.gateway.benchmark.config;
+
+import com.alibaba.fastjson.JSON;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wyh.gateway.common.config.Rule;
+import org.wyh.gateway.common.config.ServiceDefinition;
+import org.wyh.gateway.common.config.ServiceInstance;
+import org.wyh.gateway.common.config.codec.BinaryWriter;
+import org.wyh.gateway.common.config.codec.ConfigCodec;
+import org.wyh.gateway.common.utils.JSONUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.benchmark.config
+ * @Author: wyh
+ * @Date: 2024-06-03 11:00
+ * @Description: 配置模型编解码的基准测试，对比ConfigCodec二进制编码与现有的JSON编码
+                 （jackson：JSONUtil，快照文件的旧格式；fastjson：注册中心元数据）。
+                 测试数据与DynamicConfigManagerBenchmark相同：带10个方法调用的服务定义，服务实例和带一个过滤器配置的规则。
+                 编码结果的大小在setup时打印。运行方式：
+                 java -jar gateway-benchmark/target/benchmarks.jar ConfigCodecBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigCodecBenchmark {
+    private ServiceDefinition definition;
+    private ServiceInstance instance;
+    private Rule rule;
+    //各编码方式预先编码好的数据，用于解码测试
+    private byte[] definitionBinary;
+    private byte[] instanceBinary;
+    private byte[] ruleBinary;
+    private String definitionJson;
+    private String instanceJson;
+    private String ruleJson;
+    //重复使用的写入器
+    private final BinaryWriter writer = new BinaryWriter(4096);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String uniqueId = "service-0:1.0.0";
+        definition = DynamicConfigManagerBenchmark.newDefinition(uniqueId, 0);
+        instance = DynamicConfigManagerBenchmark.newInstance(uniqueId, 1, 100);
+        rule = DynamicConfigManagerBenchmark.newRules(0).get(1);
+        definitionBinary = ConfigCodec.encode(definition);
+        instanceBinary = ConfigCodec.encode(instance);
+        ruleBinary = ConfigCodec.encode(rule);
+        definitionJson = JSONUtil.toJSONString(definition);
+        instanceJson = JSONUtil.toJSONString(instance);
+        ruleJson = JSONUtil.toJSONString(rule);
+        System.out.printf("%nencoded size (binary/json): definition %d/%d, instance %d/%d, rule %d/%d%n",
+                definitionBinary.length, utf8Length(definitionJson), instanceBinary.length, utf8Length(instanceJson),
+                ruleBinary.length, utf8Length(ruleJson));
+    }
+
+    private static int utf8Length(String json) {
+        return json.getBytes(StandardCharsets.UTF_8).length;
+    }
+    /*
+     * 编码
+     */
+    @Benchmark
+    public byte[] encodeDefinitionBinary() {
+        return ConfigCodec.encode(definition, writer.reset()).toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeDefinitionJackson() {
+        return JSONUtil.toJSONString(definition).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeDefinitionFastjson() {
+        return JSON.toJSONBytes(definition);
+    }
+
+    @Benchmark
+    public byte[] encodeInstanceBinary() {
+        return ConfigCodec.encode(instance, writer.reset()).toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeInstanceJackson() {
+        return JSONUtil.toJSONString(instance).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeInstanceFastjson() {
+        return JSON.toJSONBytes(instance);
+    }
+
+    @Benchmark
+    public byte[] encodeRuleBinary() {
+        return ConfigCodec.encode(rule, writer.reset()).toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeRuleJackson() {
+        return JSONUtil.toJSONString(rule).getBytes(StandardCharsets.UTF_8);
+    }
+    /*
+     * 解码（服务定义的JSON解码只测试fastjson，jackson需要额外处理invokerMap的接口类型，见ConfigSnapshotStore）
+     */
+    @Benchmark
+    public ServiceDefinition decodeDefinitionBinary() {
+        return ConfigCodec.decodeServiceDefinition(definitionBinary);
+    }
+
+    @Benchmark
+    public ServiceDefinition decodeDefinitionFastjson() {
+        return JSON.parseObject(definitionJson, ServiceDefinition.class);
+    }
+
+    @Benchmark
+    public ServiceInstance decodeInstanceBinary() {
+        return ConfigCodec.decodeServiceInstance(instanceBinary);
+    }
+
+    @Benchmark
+    public ServiceInstance decodeInstanceJackson() {
+        return JSONUtil.parse(instanceJson, ServiceInstance.class);
+    }
+
+    @Benchmark
+    public ServiceInstance decodeInstanceFastjson() {
+        return JSON.parseObject(instanceJson, ServiceInstance.class);
+    }
+
+    @Benchmark
+    public Rule decodeRuleBinary() {
+        return ConfigCodec.decodeRule(ruleBinary);
+    }
+
+    @Benchmark
+    public Rule decodeRuleJackson() {
+        return JSONUtil.parse(ruleJson, Rule.class);
+    }
+}
@@ -0,0 +1,251 @@
+package org.wyh.gateway.benchmark.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wyh.gateway.common.config.ConfigBatch;
+import org.wyh.gateway.common.config.DynamicConfigManager;
+import org.wyh.gateway.common.config.HttpServiceInvoker;
+import org.wyh.gateway.common.config.Rule;
+import org.wyh.gateway.common.config.ServiceDefinition;
+import org.wyh.gateway.common.config.ServiceInstance;
+import org.wyh.gateway.common.config.ServiceInvoker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.benchmark.config
+ * @Author: wyh
+ * @Date: 2024-05-29 9:10
+ * @Description: DynamicConfigManager读路径的基准测试。
+                 读线程测试getServiceInstanceByUniqueId，getRule和getServiceDefinition的吞吐量，
+                 同时由一个后台写线程模拟注册中心的变更（addServiceInstance/updateServiceInstance/removeServiceInstance/putAllRule）。
+                 运行方式（读线程数通过-t指定，分配速率通过-prof gc查看）：
+                 mvn -B package -pl gateway-benchmark -am
+                 java -jar gateway-benchmark/target/benchmarks.jar DynamicConfigManagerBenchmark -t 1 -prof gc
+                 java -jar gateway-benchmark/target/benchmarks.jar DynamicConfigManagerBenchmark -t 64 -p instanceCount=100000
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DynamicConfigManagerBenchmark {
+    //服务定义的个数
+    private static final int SERVICE_COUNT = 100;
+    //规则的个数
+    private static final int RULE_COUNT = 1000;
+    //被测服务（uniqueId）的服务实例数
+    @Param({"10", "1000", "100000"})
+    public int instanceCount;
+    //写线程每次变更之间的间隔（us），为0时写线程不间断地执行变更；为负数时不启动写线程
+    @Param({"100"})
+    public long churnIntervalMicros;
+    //被测服务的uniqueId
+    private String hotUniqueId;
+    //所有服务的uniqueId
+    private String[] uniqueIds;
+    //所有规则的ruleId
+    private String[] ruleIds;
+    //模拟注册中心变更的写线程
+    private Thread writer;
+    //写线程的停止标志
+    private volatile boolean running;
+    /**
+     * @date: 2024-05-29 9:20
+     * @description: 初始化配置：SERVICE_COUNT个服务定义（其中一个服务带有instanceCount个服务实例）和RULE_COUNT个规则，然后启动写线程
+     * @return: void
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        DynamicConfigManager manager = DynamicConfigManager.getInstance();
+        clear(manager);
+        uniqueIds = new String[SERVICE_COUNT];
+        ruleIds = new String[RULE_COUNT];
+        for (int i = 0; i < RULE_COUNT; i++) {
+            ruleIds[i] = "rule-" + i;
+        }
+        ConfigBatch batch = new ConfigBatch();
+        for (int i = 0; i < SERVICE_COUNT; i++) {
+            uniqueIds[i] = "service-" + i + ":1.0.0";
+            int count = i == 0 ? instanceCount : 4;
+            List<ServiceInstance> instances = new ArrayList<>(count);
+            for (int j = 0; j < count; j++) {
+                instances.add(newInstance(uniqueIds[i], j, 100));
+            }
+            batch.putService(newDefinition(uniqueIds[i], i), instances);
+        }
+        hotUniqueId = uniqueIds[0];
+        manager.applyBatch(batch);
+        manager.putAllRule(newRules(0));
+        if (churnIntervalMicros >= 0) {
+            running = true;
+            writer = new Thread(this::churn, "register-center-churn");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+    /**
+     * @date: 2024-05-29 9:25
+     * @description: 停止写线程
+     * @return: void
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join();
+        }
+        clear(DynamicConfigManager.getInstance());
+    }
+    /**
+     * @date: 2024-05-29 9:30
+     * @description: 写线程的执行逻辑：轮流修改、删除并重新添加被测服务的服务实例，每隔一段时间重新加载全部规则
+     * @return: void
+     */
+    private void churn() {
+        DynamicConfigManager manager = DynamicConfigManager.getInstance();
+        SplittableRandom random = new SplittableRandom(42);
+        long round = 0;
+        while (running) {
+            int index = random.nextInt(instanceCount);
+            switch ((int) (round % 3)) {
+                case 0:
+                    manager.updateServiceInstance(hotUniqueId, newInstance(hotUniqueId, index, 50 + random.nextInt(100)));
+                    break;
+                case 1:
+                    manager.removeServiceInstance(hotUniqueId, address(index));
+                    manager.addServiceInstance(hotUniqueId, newInstance(hotUniqueId, index, 100));
+                    break;
+                default:
+                    if (round % 300 == 2) {
+                        manager.putAllRule(newRules(round));
+                    }
+                    break;
+            }
+            round++;
+            if (churnIntervalMicros > 0) {
+                LockSupport.parkNanos(churnIntervalMicros * 1000L);
+            }
+        }
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.benchmark.config
+     * @Author: wyh
+     * @Date: 2024-05-29 9:35
+     * @Description: 每个读线程独立的随机数，避免读线程之间共享状态
+     */
+    @State(Scope.Thread)
+    public static class ReaderState {
+        private final SplittableRandom random = new SplittableRandom();
+
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+
+    @Benchmark
+    public Set<ServiceInstance> getServiceInstanceByUniqueId() {
+        return DynamicConfigManager.getInstance().getServiceInstanceByUniqueId(hotUniqueId, false);
+    }
+
+    @Benchmark
+    public Rule getRule(ReaderState state) {
+        return DynamicConfigManager.getInstance().getRule(ruleIds[state.next(RULE_COUNT)]);
+    }
+
+    @Benchmark
+    public ServiceDefinition getServiceDefinition(ReaderState state) {
+        return DynamicConfigManager.getInstance().getServiceDefinition(uniqueIds[state.next(SERVICE_COUNT)]);
+    }
+    /*
+     * 测试数据的构建方法
+     */
+    private static void clear(DynamicConfigManager manager) {
+        ConfigBatch batch = new ConfigBatch();
+        for (String uniqueId : manager.getServiceDefinitionMap().keySet()) {
+            batch.removeServiceDefinition(uniqueId).removeServiceInstances(uniqueId);
+        }
+        for (String uniqueId : manager.getSnapshot().getServiceInstanceViewMap().keySet()) {
+            batch.removeServiceInstances(uniqueId);
+        }
+        manager.applyBatch(batch);
+        manager.putAllRule(new ArrayList<>());
+    }
+
+    private static String address(int index) {
+        return "10." + ((index >>> 16) & 0xFF) + "." + ((index >>> 8) & 0xFF) + "." + (index & 0xFF) + ":8080";
+    }
+
+    static ServiceInstance newInstance(String uniqueId, int index, int weight) {
+        ServiceInstance instance = new ServiceInstance();
+        String address = address(index);
+        instance.setServiceInstanceId(address);
+        instance.setIp(address.substring(0, address.indexOf(':')));
+        instance.setPort(8080);
+        instance.setUniqueId(uniqueId);
+        instance.setVersion("1.0.0");
+        instance.setTags("zone=" + (index % 3) + ",tier=" + (index % 2 == 0 ? "gold" : "silver"));
+        instance.setWeight(weight);
+        instance.setRegisterTime(0L);
+        instance.setGray(index % 10 == 0);
+        return instance;
+    }
+
+    static ServiceDefinition newDefinition(String uniqueId, int index) {
+        Map<String, ServiceInvoker> invokerMap = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            HttpServiceInvoker invoker = new HttpServiceInvoker();
+            invoker.setInvokerPath("/service-" + index + "/api/" + i);
+            invoker.setRuleId("rule-" + ((index * 10 + i) % RULE_COUNT));
+            invoker.setTimeout(5000);
+            invokerMap.put(invoker.getInvokerPath(), invoker);
+        }
+        ServiceDefinition definition = new ServiceDefinition();
+        definition.setUniqueId(uniqueId);
+        definition.setServiceId(uniqueId.substring(0, uniqueId.indexOf(':')));
+        definition.setVersion("1.0.0");
+        definition.setProtocol("http");
+        definition.setPatternPath("/service-" + index + "/**");
+        definition.setInvokerMap(invokerMap);
+        return definition;
+    }
+
+    static List<Rule> newRules(long round) {
+        List<Rule> rules = new ArrayList<>(RULE_COUNT);
+        for (int i = 0; i < RULE_COUNT; i++) {
+            Rule rule = new Rule();
+            rule.setRuleId("rule-" + i);
+            rule.setName("rule-" + i);
+            rule.setProtocol("http");
+            rule.setOrder(i);
+            Rule.FilterConfig filterConfig = new Rule.FilterConfig();
+            filterConfig.setFilterId("load_balance_filter");
+            //每轮只修改一个规则的内容
+            filterConfig.setConfig(i == round % RULE_COUNT ? "{\"load_balance\":\"RoundRobin\"}" : "{\"load_balance\":\"Random\"}");
+            rule.addFilterConfig(filterConfig);
+            rules.add(rule);
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,130 @@
+package org.wyh.gateway.benchmark.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wyh.gateway.common.config.ServiceInstance;
+import org.wyh.gateway.common.config.ServiceInstanceView;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.benchmark.config
+ * @Author: wyh
+ * @Date: 2024-05-26 11:10
+ * @Description: 服务实例存储的内存占用对比：SERVICE_COUNT个服务，每个服务INSTANCES_PER_SERVICE个服务实例（其中10%被禁用）。
+                 hashSet：原有的模型，uniqueId -> HashSet<ServiceInstance>，每个服务实例都是完整的对象；
+                 view：uniqueId -> ServiceInstanceView，服务实例保存在紧凑存储表的列中，
+                 另外只为已启用的服务实例创建参与路由的对象（在视图创建时构建）。
+                 每种模型在setup时构建一次，并打印GC之后的常驻内存（每个服务实例的字节数）；基准测试本身测量构建耗时。
+                 运行方式：
+                 java -jar gateway-benchmark/target/benchmarks.jar InstanceFootprintBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class InstanceFootprintBenchmark {
+    //服务的个数
+    private static final int SERVICE_COUNT = 1000;
+    //每个服务的服务实例数
+    private static final int INSTANCES_PER_SERVICE = 200;
+    //存储模型
+    @Param({"hashSet", "view"})
+    public String model;
+    //所有服务的uniqueId
+    private String[] uniqueIds;
+    //setup时构建的常驻结构，保持可达，以便测量其内存占用
+    private Object retained;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        uniqueIds = new String[SERVICE_COUNT];
+        for (int i = 0; i < SERVICE_COUNT; i++) {
+            uniqueIds[i] = "service-" + i + ":1.0.0";
+        }
+        long before = usedHeapAfterGc();
+        retained = build();
+        long after = usedHeapAfterGc();
+        int total = SERVICE_COUNT * INSTANCES_PER_SERVICE;
+        System.out.printf("%nretained heap (%s): %.1f MB for %d instances, %d B per instance%n", model,
+                (after - before) / (1024.0 * 1024.0), total, (after - before) / total);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        retained = null;
+    }
+
+    @Benchmark
+    public Object build() {
+        Object result;
+        if ("hashSet".equals(model)) {
+            Map<String, Set<ServiceInstance>> instanceMap = new HashMap<>(SERVICE_COUNT * 2);
+            for (int i = 0; i < SERVICE_COUNT; i++) {
+                instanceMap.put(uniqueIds[i], new HashSet<>(newInstances(i)));
+            }
+            result = instanceMap;
+        } else {
+            Map<String, ServiceInstanceView> viewMap = new HashMap<>(SERVICE_COUNT * 2);
+            for (int i = 0; i < SERVICE_COUNT; i++) {
+                viewMap.put(uniqueIds[i], ServiceInstanceView.of(uniqueIds[i], newInstances(i)));
+            }
+            result = viewMap;
+        }
+        return result;
+    }
+    /**
+     * @date: 2024-05-26 11:15
+     * @description: 创建某一服务的服务实例（ip在所有服务之间不重复，每10个服务实例中有一个被禁用）
+     * @Param service:
+     * @return: java.util.List<org.wyh.gateway.common.config.ServiceInstance>
+     */
+    private List<ServiceInstance> newInstances(int service) {
+        List<ServiceInstance> instances = new ArrayList<>(INSTANCES_PER_SERVICE);
+        for (int j = 0; j < INSTANCES_PER_SERVICE; j++) {
+            ServiceInstance instance = DynamicConfigManagerBenchmark.newInstance(uniqueIds[service],
+                    service * INSTANCES_PER_SERVICE + j, 100);
+            instance.setEnable(j % 10 != 9);
+            instances.add(instance);
+        }
+        return instances;
+    }
+    /**
+     * @date: 2024-05-26 11:20
+     * @description: 多次GC之后读取已使用的堆内存
+     * @return: long
+     */
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,165 @@
+package org.wyh.gateway.benchmark.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AsciiString;
+import org.wyh.gateway.common.utils.AntPathMatcher;
+import org.wyh.gateway.common.utils.ByteBufCharSequence;
+import org.wyh.gateway.common.utils.UriVariables;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.benchmark.utils
+ * @Author: wyh
+ * @Date: 2024-06-05 10:30
+ * @Description: AntPathMatcher片段匹配的基准测试，对比逐字符比较的简单片段匹配与原有的正则表达式匹配（RegexAntPathMatcher）。
+                 shape指定被测的片段形式：literal（/api/users/list），star（/api/*），prefix（/api/user*），
+                 suffix（/static/*.json），variable（/api/users/{id}，同时提取路径变量），
+                 mixed（/api/{version}/users/*.json，多个简单片段组合）。
+                 matchAsciiString和matchByteBuf测试match(String, CharSequence)：路径不分词成字符串，预期分配为0 B/op；
+                 extractVariablesHolder测试将路径变量提取到可重复使用的UriVariables中，预期分配也为0 B/op。运行方式：
+                 java -jar gateway-benchmark/target/benchmarks.jar AntPathMatcherBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AntPathMatcherBenchmark {
+    //被测的片段形式
+    @Param({"literal", "star", "prefix", "suffix", "variable", "mixed"})
+    public String shape;
+    //路径规则
+    private String pattern;
+    //能够匹配的路径
+    private String path;
+    //不能匹配的路径（在最后一个片段处失败）
+    private String missPath;
+    //以AsciiString和ByteBuf形式保存的路径
+    private AsciiString asciiPath;
+    private ByteBuf bufPath;
+    //重复使用的ByteBuf视图
+    private final ByteBufCharSequence bufView = new ByteBufCharSequence();
+    //重复使用的路径变量容器
+    private final UriVariables variables = new UriVariables();
+    //使用简单片段匹配的AntPathMatcher（默认实现）
+    private final AntPathMatcher fastMatcher = new AntPathMatcher();
+    //所有片段都使用正则表达式的AntPathMatcher（原有实现）
+    private final AntPathMatcher regexMatcher = new RegexAntPathMatcher();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (shape) {
+            case "literal":
+                init("/api/users/list", "/api/users/list", "/api/users/lisT");
+                break;
+            case "star":
+                init("/api/*", "/api/users", "/web/users");
+                break;
+            case "prefix":
+                init("/api/user*", "/api/users", "/api/orders");
+                break;
+            case "suffix":
+                init("/static/*.json", "/static/config.json", "/static/config.xml");
+                break;
+            case "variable":
+                init("/api/users/{id}", "/api/users/10086", "/api/orders/10086");
+                break;
+            default:
+                init("/api/{version}/users/*.json", "/api/v1/users/list.json", "/api/v1/users/list.xml");
+                break;
+        }
+        asciiPath = new AsciiString(path);
+        bufPath = Unpooled.directBuffer().writeBytes(path.getBytes(StandardCharsets.US_ASCII));
+        if (fastMatcher.match(pattern, path) != regexMatcher.match(pattern, path)
+                || fastMatcher.match(pattern, missPath) != regexMatcher.match(pattern, missPath)) {
+            throw new IllegalStateException("matchers disagree on " + pattern);
+        }
+    }
+
+    private void init(String pattern, String path, String missPath) {
+        this.pattern = pattern;
+        this.path = path;
+        this.missPath = missPath;
+    }
+
+    @Benchmark
+    public boolean matchFast() {
+        return fastMatcher.match(pattern, path);
+    }
+
+    @Benchmark
+    public boolean matchRegex() {
+        return regexMatcher.match(pattern, path);
+    }
+
+    @Benchmark
+    public boolean matchAsciiString() {
+        return fastMatcher.match(pattern, asciiPath);
+    }
+
+    @Benchmark
+    public boolean matchByteBuf() {
+        return fastMatcher.match(pattern, bufView.reset(bufPath));
+    }
+
+    @Benchmark
+    public boolean missFast() {
+        return fastMatcher.match(pattern, missPath);
+    }
+
+    @Benchmark
+    public boolean missRegex() {
+        return regexMatcher.match(pattern, missPath);
+    }
+
+    @Benchmark
+    public Map<String, String> extractVariablesFast() {
+        return fastMatcher.extractUriTemplateVariables(pattern, path);
+    }
+
+    @Benchmark
+    public UriVariables extractVariablesHolder() {
+        fastMatcher.extractUriTemplateVariables(pattern, asciiPath, variables);
+        return variables;
+    }
+
+    @Benchmark
+    public Map<String, String> extractVariablesRegex() {
+        return regexMatcher.extractUriTemplateVariables(pattern, path);
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.benchmark.utils
+     * @Author: wyh
+     * @Date: 2024-06-05 10:40
+     * @Description: 原有实现：所有片段都编译成正则表达式（同样缓存片段匹配器）
+     */
+    static class RegexAntPathMatcher extends AntPathMatcher {
+        //片段规则到匹配器的缓存
+        private final Map<String, AntPathStringMatcher> regexCache = new ConcurrentHashMap<>(256);
+
+        @Override
+        protected AntPathStringMatcher getStringMatcher(String pattern) {
+            return regexCache.computeIfAbsent(pattern, key -> new AntPathStringMatcher(key, true, true));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.wyh.gateway.benchmark.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wyh.gateway.common.utils.AntPathMatcher;
+import org.wyh.gateway.common.utils.PatternMatch;
+import org.wyh.gateway.common.utils.PatternSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.benchmark.utils
+ * @Author: wyh
+ * @Date: 2024-06-07 11:00
+ * @Description: PatternSet的基准测试，对比一次性匹配（PatternSet.match）与现有的方式：
+ *               逐个调用AntPathMatcher.match，用getPatternComparator排序后取第一个，再提取路径变量。
+ *               路径规则与服务定义的patternPath类似：每个服务一个“/service-i/**”和一个“/service-i/api/{id}”。
+ *               运行方式：
+ *               java -jar gateway-benchmark/target/benchmarks.jar PatternSetBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PatternSetBenchmark {
+    //服务个数（路径规则数为其两倍）
+    @Param({"10", "100", "1000"})
+    public int serviceCount;
+    private final AntPathMatcher matcher = new AntPathMatcher();
+    private final List<String> patterns = new ArrayList<>();
+    private PatternSet patternSet;
+    //测试路径
+    private String[] paths;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        for (int i = 0; i < serviceCount; i++) {
+            patterns.add("/service-" + i + "/**");
+            patterns.add("/service-" + i + "/api/{id}");
+        }
+        patternSet = matcher.compilePatterns(patterns);
+        paths = new String[256];
+        for (int i = 0; i < paths.length; i++) {
+            int service = random.nextInt(serviceCount);
+            paths[i] = i % 2 == 0 ? "/service-" + service + "/api/" + i : "/service-" + service + "/static/" + i + ".js";
+        }
+        System.out.printf("%nranked: %s%n", patternSet.isRanked());
+    }
+
+    private String nextPath() {
+        return paths[random.nextInt(paths.length)];
+    }
+
+    @Benchmark
+    public PatternMatch patternSet() {
+        return patternSet.match(nextPath());
+    }
+
+    @Benchmark
+    public Map<String, String> loopAndSort() {
+        String path = nextPath();
+        List<String> candidates = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (matcher.match(pattern, path)) {
+                candidates.add(pattern);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        candidates.sort(matcher.getPatternComparator(path));
+        return matcher.extractUriTemplateVariables(candidates.get(0), path);
+    }
+}
@@ -0,0 +1,594 @@
+package org.wyh.gateway.common.config;
+
+import org.wyh.gateway.common.constant.BasicConst;
+import org.wyh.gateway.common.utils.NetUtils;
+
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-05-26 9:40
+ * @Description: 服务实例的紧凑存储表（不可变），以“结构体数组”的形式保存某一服务（uniqueId）的全部服务实例。
+                 表中不保留任何ServiceInstance对象，每个服务实例（无论是否启用）的属性都保存在基本类型数组（列）中：
+                 IPv4地址被压缩为一个int（其他地址保留原始字符串），version和tags经过intern处理，
+                 serviceInstanceId只在与“ip:port”不一致时才单独保存。ServiceInstance对象只在需要时（get方法）才创建。
+                 按serviceInstanceId的查找通过开放寻址的int数组完成，不需要HashMap节点，比较时也不会拼接字符串。
+                 单个服务实例的增删改（with/without）只复制各列数组并修改一行，不会重新处理其他服务实例的属性；
+                 替换服务实例时serviceInstanceId不变，查找表直接与原表共享。
+ */
+public final class CompactInstanceTable {
+    //空表
+    static final CompactInstanceTable EMPTY = new CompactInstanceTable(null, Collections.emptyList());
+    //表示Integer属性为null（仅用于列存储）
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    //标志位：已启用
+    private static final byte FLAG_ENABLE = 1;
+    //标志位：灰度
+    private static final byte FLAG_GRAY = 2;
+    //标志位：ip为IPv4地址，保存在addresses列中
+    private static final byte FLAG_IPV4 = 4;
+    //标志位：serviceInstanceId就是“ip:port”，没有单独保存
+    private static final byte FLAG_ADDRESS_ID = 8;
+    //服务实例所属的服务定义的唯一id（所有服务实例共享）
+    private final String uniqueId;
+    //服务实例数（各列的长度可能大于该值）
+    private final int size;
+    //已启用的灰度服务实例数
+    private final int grayCount;
+    //已启用的正常（非灰度）服务实例数
+    private final int normalCount;
+    //每个服务实例的标志位
+    private final byte[] flags;
+    //serviceInstanceId的哈希值，用于查找
+    private final int[] idHashes;
+    //serviceInstanceId的开放寻址哈希表，元素为服务实例下标+1（0表示空槽位）
+    private final int[] slots;
+    //压缩后的IPv4地址（FLAG_IPV4）
+    private final int[] addresses;
+    //不是IPv4地址（例如IPv6地址或主机名）时，保存原始的ip字符串，否则为null
+    private final String[] hosts;
+    //serviceInstanceId与“ip:port”不一致时，保存原始的serviceInstanceId，否则为null
+    private final String[] ids;
+    private final int[] ports;
+    private final int[] weights;
+    private final int[] warmUpTimes;
+    private final long[] registerTimes;
+    //经过intern处理的版本号和标签
+    private final String[] versions;
+    private final String[] tags;
+    /**
+     * @date: 2024-05-26 9:50
+     * @description: 有参构造器。serviceInstanceId相同的服务实例只保留最后一个（位置与第一次出现时相同）。
+     * @Param uniqueId:
+     * @Param instances:
+     * @return: null
+     */
+    private CompactInstanceTable(String uniqueId, Collection<ServiceInstance> instances) {
+        this.uniqueId = uniqueId == null ? null : uniqueId.intern();
+        int capacity = instances.size();
+        this.flags = new byte[capacity];
+        this.idHashes = new int[capacity];
+        this.slots = new int[slotLength(capacity)];
+        this.addresses = new int[capacity];
+        this.hosts = new String[capacity];
+        this.ids = new String[capacity];
+        this.ports = new int[capacity];
+        this.weights = new int[capacity];
+        this.warmUpTimes = new int[capacity];
+        this.registerTimes = new long[capacity];
+        this.versions = new String[capacity];
+        this.tags = new String[capacity];
+        long[] packed = new long[2];
+        int n = 0;
+        for (ServiceInstance instance : instances) {
+            if (instance == null) {
+                continue;
+            }
+            String id = instance.getServiceInstanceId();
+            int index = indexOf(id, n);
+            if (index >= 0) {
+                setRow(index, instance, packed);
+                continue;
+            }
+            setRow(n, instance, packed);
+            insertSlot(n);
+            n++;
+        }
+        this.size = n;
+        int gray = 0;
+        int normal = 0;
+        for (int i = 0; i < n; i++) {
+            if ((flags[i] & FLAG_ENABLE) != 0) {
+                if ((flags[i] & FLAG_GRAY) != 0) {
+                    gray++;
+                } else {
+                    normal++;
+                }
+            }
+        }
+        this.grayCount = gray;
+        this.normalCount = normal;
+    }
+    /**
+     * @date: 2024-05-26 9:52
+     * @description: 有参构造器，在原表的基础上替换第index行，或在末尾添加一行（index小于0时）
+     * @Param source:
+     * @Param index:
+     * @Param instance:
+     * @return: null
+     */
+    private CompactInstanceTable(CompactInstanceTable source, int index, ServiceInstance instance) {
+        this.uniqueId = source.uniqueId;
+        boolean append = index < 0;
+        int row = append ? source.size : index;
+        int capacity = append ? source.size + 1 : source.size;
+        this.size = capacity;
+        this.flags = Arrays.copyOf(source.flags, capacity);
+        this.idHashes = Arrays.copyOf(source.idHashes, capacity);
+        this.addresses = Arrays.copyOf(source.addresses, capacity);
+        this.hosts = Arrays.copyOf(source.hosts, capacity);
+        this.ids = Arrays.copyOf(source.ids, capacity);
+        this.ports = Arrays.copyOf(source.ports, capacity);
+        this.weights = Arrays.copyOf(source.weights, capacity);
+        this.warmUpTimes = Arrays.copyOf(source.warmUpTimes, capacity);
+        this.registerTimes = Arrays.copyOf(source.registerTimes, capacity);
+        this.versions = Arrays.copyOf(source.versions, capacity);
+        this.tags = Arrays.copyOf(source.tags, capacity);
+        int gray = source.grayCount;
+        int normal = source.normalCount;
+        if (!append && (flags[row] & FLAG_ENABLE) != 0) {
+            if ((flags[row] & FLAG_GRAY) != 0) {
+                gray--;
+            } else {
+                normal--;
+            }
+        }
+        setRow(row, instance, new long[2]);
+        if ((flags[row] & FLAG_ENABLE) != 0) {
+            if ((flags[row] & FLAG_GRAY) != 0) {
+                gray++;
+            } else {
+                normal++;
+            }
+        }
+        this.grayCount = gray;
+        this.normalCount = normal;
+        if (!append) {
+            //serviceInstanceId没有变化，查找表不需要修改
+            this.slots = source.slots;
+        } else if (slotLength(capacity) == source.slots.length) {
+            this.slots = source.slots.clone();
+            insertSlot(row);
+        } else {
+            this.slots = new int[slotLength(capacity)];
+            for (int i = 0; i < capacity; i++) {
+                insertSlot(i);
+            }
+        }
+    }
+    /**
+     * @date: 2024-05-26 9:54
+     * @description: 有参构造器，在原表的基础上删除第removed行（之后各行的下标减一）
+     * @Param source:
+     * @Param removed:
+     * @return: null
+     */
+    private CompactInstanceTable(CompactInstanceTable source, int removed) {
+        this.uniqueId = source.uniqueId;
+        int capacity = source.size - 1;
+        this.size = capacity;
+        this.flags = removeRow(source.flags, capacity, removed);
+        this.idHashes = removeRow(source.idHashes, capacity, removed);
+        this.addresses = removeRow(source.addresses, capacity, removed);
+        this.hosts = removeRow(source.hosts, capacity, removed);
+        this.ids = removeRow(source.ids, capacity, removed);
+        this.ports = removeRow(source.ports, capacity, removed);
+        this.weights = removeRow(source.weights, capacity, removed);
+        this.warmUpTimes = removeRow(source.warmUpTimes, capacity, removed);
+        this.registerTimes = removeRow(source.registerTimes, capacity, removed);
+        this.versions = removeRow(source.versions, capacity, removed);
+        this.tags = removeRow(source.tags, capacity, removed);
+        byte flag = source.flags[removed];
+        boolean enabled = (flag & FLAG_ENABLE) != 0;
+        boolean gray = (flag & FLAG_GRAY) != 0;
+        this.grayCount = source.grayCount - (enabled && gray ? 1 : 0);
+        this.normalCount = source.normalCount - (enabled && !gray ? 1 : 0);
+        //后面各行的下标发生了变化，根据已有的哈希值重建查找表（不需要重新计算字符串的哈希值）
+        this.slots = new int[slotLength(capacity)];
+        for (int i = 0; i < capacity; i++) {
+            insertSlot(i);
+        }
+    }
+    /**
+     * @date: 2024-05-26 9:55
+     * @description: 复制一列数据，并去掉其中的第removed个元素
+     * @Param column: 原来的列（基本类型或对象数组）
+     * @Param length: 新列的长度
+     * @Param removed:
+     * @return: T
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T removeRow(T column, int length, int removed) {
+        T result = (T) Array.newInstance(column.getClass().getComponentType(), length);
+        System.arraycopy(column, 0, result, 0, removed);
+        System.arraycopy(column, removed + 1, result, removed, length - removed);
+        return result;
+    }
+    /**
+     * @date: 2024-05-26 10:00
+     * @description: 根据服务实例集合构建紧凑存储表。serviceInstanceId相同的服务实例只保留最后一个（位置不变）。
+                     表中不会保留传入的ServiceInstance对象。
+     * @Param uniqueId:
+     * @Param serviceInstances:
+     * @return: org.wyh.gateway.common.config.CompactInstanceTable
+     */
+    static CompactInstanceTable of(String uniqueId, Collection<ServiceInstance> serviceInstances) {
+        CompactInstanceTable table = new CompactInstanceTable(uniqueId, serviceInstances);
+        return table.size == 0 ? EMPTY : table;
+    }
+    /**
+     * @date: 2024-05-26 10:01
+     * @description: 添加或替换单个服务实例（以serviceInstanceId判断是否为同一实例），返回新表，当前表保持不变
+     * @Param instance:
+     * @return: org.wyh.gateway.common.config.CompactInstanceTable
+     */
+    CompactInstanceTable with(ServiceInstance instance) {
+        return new CompactInstanceTable(this, indexOf(instance.getServiceInstanceId()), instance);
+    }
+    /**
+     * @date: 2024-05-26 10:02
+     * @description: 删除第index行，返回新表，当前表保持不变
+     * @Param index:
+     * @return: org.wyh.gateway.common.config.CompactInstanceTable
+     */
+    CompactInstanceTable without(int index) {
+        return size == 1 ? EMPTY : new CompactInstanceTable(this, index);
+    }
+    /**
+     * @date: 2024-05-26 9:55
+     * @description: 计算开放寻址哈希表的长度（2的幂，负载因子不超过0.5）
+     * @Param capacity:
+     * @return: int
+     */
+    private static int slotLength(int capacity) {
+        return capacity == 0 ? 1 : Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+    /**
+     * @date: 2024-05-26 9:56
+     * @description: 将第i行写入开放寻址哈希表
+     * @Param i:
+     * @return: void
+     */
+    private void insertSlot(int i) {
+        int mask = slots.length - 1;
+        int slot = idHashes[i] & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = i + 1;
+    }
+    /**
+     * @date: 2024-05-26 9:58
+     * @description: 将服务实例的属性写入第i行
+     * @Param i:
+     * @Param instance:
+     * @Param packed: 压缩ip时使用的临时数组
+     * @return: void
+     */
+    private void setRow(int i, ServiceInstance instance, long[] packed) {
+        String id = instance.getServiceInstanceId();
+        String ip = instance.getIp();
+        byte flag = (byte) ((instance.isEnable() ? FLAG_ENABLE : 0) | (instance.isGray() ? FLAG_GRAY : 0));
+        if (ip != null && ip.indexOf(':') < 0 && NetUtils.packIp(ip, packed)
+                && NetUtils.unpackIp(packed[0], packed[1]).equals(ip)) {
+            flag |= FLAG_IPV4;
+            addresses[i] = (int) packed[1];
+            hosts[i] = null;
+        } else {
+            addresses[i] = 0;
+            hosts[i] = ip;
+        }
+        if (id != null && ip != null && isAddressId(id, ip, instance.getPort())) {
+            flag |= FLAG_ADDRESS_ID;
+            ids[i] = null;
+        } else {
+            ids[i] = id;
+        }
+        flags[i] = flag;
+        idHashes[i] = id == null ? 0 : id.hashCode();
+        ports[i] = instance.getPort();
+        weights[i] = instance.getWeight() == null ? NULL_INT : instance.getWeight();
+        warmUpTimes[i] = instance.getWarmUpTime() == null ? NULL_INT : instance.getWarmUpTime();
+        registerTimes[i] = instance.getRegisterTime();
+        versions[i] = instance.getVersion() == null ? null : instance.getVersion().intern();
+        tags[i] = instance.getTags() == null ? null : instance.getTags().intern();
+    }
+    /**
+     * @date: 2024-05-26 10:05
+     * @description: 判断serviceInstanceId是否就是“ip:port”（不创建字符串）
+     * @Param id:
+     * @Param ip:
+     * @Param port:
+     * @return: boolean
+     */
+    private static boolean isAddressId(String id, String ip, int port) {
+        int colon = ip.length();
+        if (id.length() <= colon + 1 || !id.startsWith(ip) || id.charAt(colon) != BasicConst.COLON_SEPARATOR.charAt(0)) {
+            return false;
+        }
+        return matchPort(id, colon + 1, port);
+    }
+    /**
+     * @date: 2024-05-26 10:06
+     * @description: 判断serviceInstanceId是否就是压缩后的IPv4地址与端口拼接成的“ip:port”（不创建字符串）
+     * @Param id:
+     * @Param address:
+     * @Param port:
+     * @return: boolean
+     */
+    private static boolean isIpv4AddressId(String id, int address, int port) {
+        int pos = 0;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int octet = (address >>> shift) & 0xFF;
+            //逐位比较十进制数字
+            for (int divisor = octet >= 100 ? 100 : octet >= 10 ? 10 : 1; divisor > 0; divisor /= 10) {
+                if (pos >= id.length() || id.charAt(pos) != (char) ('0' + octet / divisor % 10)) {
+                    return false;
+                }
+                pos++;
+            }
+            char separator = shift == 0 ? BasicConst.COLON_SEPARATOR.charAt(0) : '.';
+            if (pos >= id.length() || id.charAt(pos) != separator) {
+                return false;
+            }
+            pos++;
+        }
+        return matchPort(id, pos, port);
+    }
+    /**
+     * @date: 2024-05-26 10:07
+     * @description: 判断id从start开始的剩余部分是否就是端口的十进制表示（不含多余的前导0）
+     * @Param id:
+     * @Param start:
+     * @Param port:
+     * @return: boolean
+     */
+    private static boolean matchPort(String id, int start, int port) {
+        if (start >= id.length()) {
+            return false;
+        }
+        int value = 0;
+        for (int i = start; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9' || (i == start && c == '0' && id.length() > start + 1)) {
+                return false;
+            }
+            value = value * 10 + (c - '0');
+            if (value > 65535) {
+                return false;
+            }
+        }
+        return value == port;
+    }
+    /**
+     * @date: 2024-05-26 10:08
+     * @description: 判断第i行的serviceInstanceId是否与给定的id相同（直接比较列中的数据，不创建字符串）
+     * @Param i:
+     * @Param id:
+     * @return: boolean
+     */
+    private boolean idEquals(int i, String id) {
+        if ((flags[i] & FLAG_ADDRESS_ID) == 0) {
+            return id.equals(ids[i]);
+        }
+        if ((flags[i] & FLAG_IPV4) != 0) {
+            return isIpv4AddressId(id, addresses[i], ports[i]);
+        }
+        return isAddressId(id, hosts[i], ports[i]);
+    }
+    /**
+     * @date: 2024-05-26 10:10
+     * @description: 根据serviceInstanceId查找服务实例的下标，不存在时返回-1（不会创建任何对象）
+     * @Param serviceInstanceId:
+     * @return: int
+     */
+    public int indexOf(String serviceInstanceId) {
+        return indexOf(serviceInstanceId, size);
+    }
+    /**
+     * @date: 2024-05-26 10:11
+     * @description: 在前n行中查找serviceInstanceId（构建过程中使用）
+     * @Param serviceInstanceId:
+     * @Param n:
+     * @return: int
+     */
+    private int indexOf(String serviceInstanceId, int n) {
+        if (serviceInstanceId == null || n == 0) {
+            return -1;
+        }
+        int hash = serviceInstanceId.hashCode();
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int i = slots[slot] - 1;
+            if (idHashes[i] == hash && idEquals(i, serviceInstanceId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    /**
+     * @date: 2024-05-26 10:12
+     * @description: 判断两个表保存的服务实例集合是否相同：serviceInstanceId集合相同，且每个服务实例的全部属性都相同（与顺序无关）。
+                     顺序相同时逐行比较各列，不会创建任何对象。
+     * @Param other:
+     * @return: boolean
+     */
+    boolean contentEquals(CompactInstanceTable other) {
+        if (this == other) {
+            return true;
+        }
+        if (size != other.size || grayCount != other.grayCount || normalCount != other.normalCount) {
+            return false;
+        }
+        boolean sameOrder = true;
+        for (int i = 0; i < size; i++) {
+            if (!rowEquals(i, other, i)) {
+                sameOrder = false;
+                break;
+            }
+        }
+        if (sameOrder) {
+            return true;
+        }
+        //顺序不同时按serviceInstanceId逐个查找（两个表中的id都不重复，数量相同时一一对应）
+        for (int i = 0; i < size; i++) {
+            int j = other.indexOf(getServiceInstanceId(i));
+            if (j < 0 || !rowEquals(i, other, j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * @date: 2024-05-26 10:13
+     * @description: 比较当前表的第i行与另一个表的第j行的全部属性
+     * @Param i:
+     * @Param other:
+     * @Param j:
+     * @return: boolean
+     */
+    private boolean rowEquals(int i, CompactInstanceTable other, int j) {
+        return flags[i] == other.flags[j]
+                && idHashes[i] == other.idHashes[j]
+                && addresses[i] == other.addresses[j]
+                && ports[i] == other.ports[j]
+                && weights[i] == other.weights[j]
+                && warmUpTimes[i] == other.warmUpTimes[j]
+                && registerTimes[i] == other.registerTimes[j]
+                && Objects.equals(hosts[i], other.hosts[j])
+                && Objects.equals(ids[i], other.ids[j])
+                && Objects.equals(versions[i], other.versions[j])
+                && Objects.equals(tags[i], other.tags[j]);
+    }
+    /**
+     * @date: 2024-05-26 10:15
+     * @description: 根据第i行的数据创建服务实例对象（每次调用都会创建新对象）
+     * @Param i:
+     * @return: org.wyh.gateway.common.config.ServiceInstance
+     */
+    public ServiceInstance get(int i) {
+        return get(i, null);
+    }
+    /**
+     * @date: 2024-05-26 10:16
+     * @description: 根据第i行的数据创建服务实例对象。tagsCache不为null时，相同的标签（已经intern）只解析一次，
+                     解析结果由创建出的多个对象共享。
+     * @Param i:
+     * @Param tagsCache: 标签 -> 解析后的标签集合，可以为null
+     * @return: org.wyh.gateway.common.config.ServiceInstance
+     */
+    ServiceInstance get(int i, Map<String, InstanceTags> tagsCache) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setServiceInstanceId(getServiceInstanceId(i));
+        instance.setUniqueId(uniqueId);
+        instance.setIp(getIp(i));
+        instance.setPort(ports[i]);
+        if (tagsCache == null || tags[i] == null) {
+            instance.setTags(tags[i]);
+        } else {
+            instance.setTags(tags[i], tagsCache.computeIfAbsent(tags[i], InstanceTags::parse));
+        }
+        instance.setWeight(weights[i] == NULL_INT ? null : weights[i]);
+        instance.setWarmUpTime(warmUpTimes[i] == NULL_INT ? null : warmUpTimes[i]);
+        instance.setRegisterTime(registerTimes[i]);
+        instance.setEnable(isEnable(i));
+        instance.setVersion(versions[i]);
+        instance.setGray(isGray(i));
+        return instance;
+    }
+    /**
+     * @date: 2024-05-26 10:20
+     * @description: 获取第i个服务实例的serviceInstanceId（与“ip:port”一致时会拼接出新的字符串）
+     * @Param i:
+     * @return: java.lang.String
+     */
+    public String getServiceInstanceId(int i) {
+        return (flags[i] & FLAG_ADDRESS_ID) != 0 ? getIp(i) + BasicConst.COLON_SEPARATOR + ports[i] : ids[i];
+    }
+    /**
+     * @date: 2024-05-26 10:22
+     * @description: 获取第i个服务实例的ip（IPv4地址会还原出新的字符串）
+     * @Param i:
+     * @return: java.lang.String
+     */
+    public String getIp(int i) {
+        if ((flags[i] & FLAG_IPV4) == 0) {
+            return hosts[i];
+        }
+        return NetUtils.unpackIp(0L, 0x0000FFFF00000000L | (addresses[i] & 0xFFFFFFFFL));
+    }
+
+    public int getPort(int i) {
+        return ports[i];
+    }
+
+    public boolean isEnable(int i) {
+        return (flags[i] & FLAG_ENABLE) != 0;
+    }
+
+    public boolean isGray(int i) {
+        return (flags[i] & FLAG_GRAY) != 0;
+    }
+
+    public String getVersion(int i) {
+        return versions[i];
+    }
+
+    public String getTags(int i) {
+        return tags[i];
+    }
+
+    public String getUniqueId() {
+        return uniqueId;
+    }
+
+    public int size() {
+        return size;
+    }
+    /**
+     * @date: 2024-05-26 10:25
+     * @description: 获取已启用的灰度或正常服务实例数
+     * @Param gray:
+     * @return: int
+     */
+    public int getEnabledCount(boolean gray) {
+        return gray ? grayCount : normalCount;
+    }
+    /**
+     * @date: 2024-05-26 10:30
+     * @description: 获取全部服务实例的只读列表视图（每次访问元素时都会创建新对象）
+     * @return: java.util.List<org.wyh.gateway.common.config.ServiceInstance>
+     */
+    public List<ServiceInstance> asList() {
+        return new AbstractList<>() {
+            @Override
+            public ServiceInstance get(int index) {
+                return CompactInstanceTable.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
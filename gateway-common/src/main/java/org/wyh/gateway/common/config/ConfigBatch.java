@@ -0,0 +1,200 @@
+package org.wyh.gateway.common.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.wyh.gateway.common.config.filter.FilterConfigRegistry;
+import org.wyh.gateway.common.exception.FilterConfigParseException;
+import org.wyh.gateway.common.utils.TimeUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-05-27 9:10
+ * @Description: 配置批量变更类，用于收集一批服务定义，服务实例和规则的变更，
+                 然后通过DynamicConfigManager.applyBatch方法一次性应用，并作为同一个版本的快照发布。
+                 批量变更中的操作按照添加顺序执行，后面的操作可以看到前面操作的结果。该类不是线程安全的。
+ */
+@Slf4j
+public final class ConfigBatch {
+    //按顺序记录的变更操作
+    private final List<Consumer<ConfigSnapshot.Builder>> operations = new ArrayList<>();
+    //应用变更时因过滤器配置不合法而被拒绝的规则（ruleId）
+    private final Set<String> rejectedRuleIds = new LinkedHashSet<>();
+    /**
+     * @date: 2024-05-27 9:15
+     * @description: 添加或替换服务定义
+     * @Param uniqueId:
+     * @Param serviceDefinition:
+     * @return: org.wyh.gateway.common.config.ConfigBatch
+     */
+    public ConfigBatch putServiceDefinition(String uniqueId, ServiceDefinition serviceDefinition) {
+        operations.add(builder -> builder.markRefreshed(uniqueId).putServiceDefinition(uniqueId, serviceDefinition));
+        return this;
+    }
+    /**
+     * @date: 2024-05-27 9:16
+     * @description: 删除服务定义
+     * @Param uniqueId:
+     * @return: org.wyh.gateway.common.config.ConfigBatch
+     */
+    public ConfigBatch removeServiceDefinition(String uniqueId) {
+        operations.add(builder -> builder.markRefreshed(uniqueId).removeServiceDefinition(uniqueId));
+        return this;
+    }
+    /**
+     * @date: 2024-05-27 9:18
+     * @description: 覆盖式设置服务实例集合（集合为空时相当于删除该服务的全部服务实例）
+     * @Param uniqueId:
+     * @Param serviceInstances:
+     * @return: org.wyh.gateway.common.config.ConfigBatch
+     */
+    public ConfigBatch putServiceInstances(String uniqueId, Collection<ServiceInstance> serviceInstances) {
+        ServiceInstanceView view = ServiceInstanceView.of(uniqueId, serviceInstances);
+        operations.add(builder -> builder.markRefreshed(uniqueId).putServiceInstanceView(uniqueId, view));
+        return this;
+    }
+    /**
+     * @date: 2024-05-27 9:20
+     * @description: 添加或替换单个服务实例
+     * @Param uniqueId:
+     * @Param serviceInstance:
+     * @return: org.wyh.gateway.common.config.ConfigBatch
+     */
+    public ConfigBatch addServiceInstance(String uniqueId, ServiceInstance serviceInstance) {
+        operations.add(builder -> builder.markRefreshed(uniqueId).putServiceInstanceView(uniqueId,
+                builder.getServiceInstanceView(uniqueId).withInstance(uniqueId, serviceInstance)));
+        return this;
+    }
+    /**
+     * @date: 2024-05-27 9:22
+     * @description: 删除单个服务实例
+     * @Param uniqueId:
+     * @Param serviceInstanceId:
+     * @return: org.wyh.gateway.common.config.ConfigBatch
+     */
+    public ConfigBatch removeServiceInstance(String uniqueId, String serviceInstanceId) {
+        operations.add(builder -> {
+            builder.markRefreshed(uniqueId);
+            ServiceInstanceView view = builder.getServiceInstanceView(uniqueId);
+            ServiceInstanceView newView = view.withoutInstance(serviceInstanceId);
+            if (newView != view) {
+                builder.putServiceInstanceView(uniqueId, newView);
+            }
+        });
+        return this;
+    }
+    /**
+     * @date: 2024-05-27 9:24
+     * @description: 删除服务的全部服务实例
+     * @Param uniqueId:
+     * @return: org.wyh.gateway.common.config.ConfigBatch
+     */
+    public ConfigBatch removeServiceInstances(String uniqueId) {
+        operations.add(builder -> builder.markRefreshed(uniqueId).removeServiceInstanceView(uniqueId));
+        return this;
+    }
+    /**
+     * @date: 2024-05-27 9:26
+     * @description: 设置服务定义及其服务实例集合（对应注册中心推送的一次服务变更）
+     * @Param serviceDefinition:
+     * @Param serviceInstances:
+     * @return: org.wyh.gateway.common.config.ConfigBatch
+     */
+    public ConfigBatch putService(ServiceDefinition serviceDefinition, Collection<ServiceInstance> serviceInstances) {
+        putServiceDefinition(serviceDefinition.getUniqueId(), serviceDefinition);
+        return putServiceInstances(serviceDefinition.getUniqueId(), serviceInstances);
+    }
+    /**
+     * @date: 2024-05-30 9:20
+     * @description: 以新的规则列表整体替换规则集合，并按照ruleId和规则内容进行对比（先比较内容哈希值，相同时再逐个字段比较）：
+                     内容没有变化的规则继续使用原有的Rule对象（包括其lastModifiedTime），
+                     只有新增或内容发生变化的规则才会更新lastModifiedTime，不在新列表中的规则会被删除。
+                     新增或内容发生变化的规则会在这里编译过滤器配置，配置不合法的规则会被拒绝：
+                     若存在旧版本则继续使用旧版本，否则不加载该规则。所有规则都没有变化时，不会产生任何修改。
+     * @Param ruleList:
+     * @return: org.wyh.gateway.common.config.ConfigBatch
+     */
+    public ConfigBatch replaceRules(List<Rule> ruleList) {
+        operations.add(builder -> {
+            long now = TimeUtil.currentTimeMillis();
+            Map<String, Rule> newRuleMap = new HashMap<>(ruleList.size() * 2);
+            boolean changed = false;
+            for (Rule rule : ruleList) {
+                Rule oldRule = builder.getRule(rule.getRuleId());
+                //哈希值只用于快速排除，相同时还要逐个字段确认，避免哈希冲突导致规则的修改被忽略
+                if (oldRule != null && (oldRule == rule
+                        || (oldRule.contentHash() == rule.contentHash() && oldRule.contentEquals(rule)))) {
+                    newRuleMap.put(rule.getRuleId(), oldRule);
+                } else if (!compile(rule)) {
+                    if (oldRule != null) {
+                        newRuleMap.put(rule.getRuleId(), oldRule);
+                    }
+                } else {
+                    rule.setLastModifiedTime(now);
+                    newRuleMap.put(rule.getRuleId(), rule);
+                    changed = true;
+                }
+            }
+            //沿用的规则都来自当前规则集合，因此数量相同就说明没有规则被删除
+            if (changed || newRuleMap.size() != builder.getRuleCount()) {
+                builder.replaceRules(newRuleMap);
+            }
+        });
+        return this;
+    }
+    /**
+     * @date: 2024-06-01 10:30
+     * @description: 编译规则的过滤器配置并缓存到规则上。配置不合法时记录日志，并将该规则记为被拒绝。
+     * @Param rule:
+     * @return: boolean 是否编译成功
+     */
+    private boolean compile(Rule rule) {
+        try {
+            FilterConfigRegistry.getInstance().compileAndCache(rule);
+            return true;
+        } catch (FilterConfigParseException e) {
+            log.error("【规则加载】过滤器配置不合法，拒绝加载规则: ruleId={}, filterId={}", e.getRuleId(), e.getFilterId(), e);
+            rejectedRuleIds.add(rule.getRuleId());
+            return false;
+        }
+    }
+    /**
+     * @date: 2024-05-27 9:30
+     * @description: 将所有操作依次应用到快照构建器上（由DynamicConfigManager在写锁内调用）
+     * @Param builder:
+     * @return: void
+     */
+    void applyTo(ConfigSnapshot.Builder builder) {
+        rejectedRuleIds.clear();
+        for (Consumer<ConfigSnapshot.Builder> operation : operations) {
+            operation.accept(builder);
+        }
+    }
+
+    /**
+     * @date: 2024-06-01 10:35
+     * @description: 获取上一次应用变更时被拒绝的规则（ruleId）
+     * @return: java.util.Set<java.lang.String>
+     */
+    public Set<String> getRejectedRuleIds() {
+        return Collections.unmodifiableSet(rejectedRuleIds);
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+}
@@ -0,0 +1,155 @@
+package org.wyh.gateway.common.config;
+
+import org.wyh.gateway.common.config.event.ConfigChangeEvent;
+import org.wyh.gateway.common.config.event.RuleChangeEvent;
+import org.wyh.gateway.common.config.event.ServiceDefinitionChangeEvent;
+import org.wyh.gateway.common.config.event.ServiceInstanceChangeEvent;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-05-27 9:40
+ * @Description: 配置变更报告类（不可变），描述一次批量变更实际改变了哪些内容。
+                 报告由该次变更产生的事件汇总得到，只包含真正发生变化的服务定义，服务实例和规则。
+ */
+public final class ConfigChangeReport {
+    //变更后的快照版本号（没有发生变更时为当前快照的版本号）
+    private final long generation;
+    //该次变更产生的全部事件
+    private final List<ConfigChangeEvent> events;
+    //新增的服务定义（uniqueId）
+    private final Set<String> addedServiceDefinitions = new LinkedHashSet<>();
+    //被修改的服务定义（uniqueId）
+    private final Set<String> updatedServiceDefinitions = new LinkedHashSet<>();
+    //被删除的服务定义（uniqueId）
+    private final Set<String> removedServiceDefinitions = new LinkedHashSet<>();
+    //服务实例发生变化的服务（uniqueId）
+    private final Set<String> changedServiceInstances = new LinkedHashSet<>();
+    //发生变化的规则（ruleId），包括新增，修改和删除的规则
+    private final Set<String> changedRuleIds = new LinkedHashSet<>();
+    //新增的规则（ruleId）
+    private final Set<String> addedRuleIds = new LinkedHashSet<>();
+    //内容发生变化的规则（ruleId）
+    private final Set<String> updatedRuleIds = new LinkedHashSet<>();
+    //被删除的规则（ruleId）
+    private final Set<String> removedRuleIds = new LinkedHashSet<>();
+    //因过滤器配置不合法而被拒绝加载的规则（ruleId）
+    private final Set<String> rejectedRuleIds;
+    /**
+     * @date: 2024-05-27 9:45
+     * @description: 有参构造器
+     * @Param generation:
+     * @Param events:
+     * @Param rejectedRuleIds:
+     * @return: null
+     */
+    ConfigChangeReport(long generation, List<ConfigChangeEvent> events, Set<String> rejectedRuleIds) {
+        this.generation = generation;
+        this.rejectedRuleIds = new LinkedHashSet<>(rejectedRuleIds);
+        this.events = Collections.unmodifiableList(events);
+        for (ConfigChangeEvent event : events) {
+            switch (event.getType()) {
+                case SERVICE_DEFINITION_ADDED:
+                    addedServiceDefinitions.add(((ServiceDefinitionChangeEvent) event).getUniqueId());
+                    break;
+                case SERVICE_DEFINITION_UPDATED:
+                    updatedServiceDefinitions.add(((ServiceDefinitionChangeEvent) event).getUniqueId());
+                    break;
+                case SERVICE_DEFINITION_REMOVED:
+                    removedServiceDefinitions.add(((ServiceDefinitionChangeEvent) event).getUniqueId());
+                    break;
+                case SERVICE_INSTANCES_CHANGED:
+                    changedServiceInstances.add(((ServiceInstanceChangeEvent) event).getUniqueId());
+                    break;
+                case RULES_CHANGED:
+                    RuleChangeEvent ruleEvent = (RuleChangeEvent) event;
+                    for (String ruleId : ruleEvent.getChangedRuleIds()) {
+                        changedRuleIds.add(ruleId);
+                        if (ruleEvent.getOldRule(ruleId) == null) {
+                            addedRuleIds.add(ruleId);
+                        } else if (ruleEvent.getNewRule(ruleId) == null) {
+                            removedRuleIds.add(ruleId);
+                        } else {
+                            updatedRuleIds.add(ruleId);
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public List<ConfigChangeEvent> getEvents() {
+        return events;
+    }
+
+    public Set<String> getAddedServiceDefinitions() {
+        return Collections.unmodifiableSet(addedServiceDefinitions);
+    }
+
+    public Set<String> getUpdatedServiceDefinitions() {
+        return Collections.unmodifiableSet(updatedServiceDefinitions);
+    }
+
+    public Set<String> getRemovedServiceDefinitions() {
+        return Collections.unmodifiableSet(removedServiceDefinitions);
+    }
+
+    public Set<String> getChangedServiceInstances() {
+        return Collections.unmodifiableSet(changedServiceInstances);
+    }
+
+    public Set<String> getChangedRuleIds() {
+        return Collections.unmodifiableSet(changedRuleIds);
+    }
+
+    public Set<String> getAddedRuleIds() {
+        return Collections.unmodifiableSet(addedRuleIds);
+    }
+
+    public Set<String> getUpdatedRuleIds() {
+        return Collections.unmodifiableSet(updatedRuleIds);
+    }
+
+    public Set<String> getRemovedRuleIds() {
+        return Collections.unmodifiableSet(removedRuleIds);
+    }
+
+    public Set<String> getRejectedRuleIds() {
+        return Collections.unmodifiableSet(rejectedRuleIds);
+    }
+    /**
+     * @date: 2024-05-27 9:50
+     * @description: 判断是否没有发生任何变更
+     * @return: boolean
+     */
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigChangeReport{" +
+                "generation=" + generation +
+                ", addedServiceDefinitions=" + addedServiceDefinitions +
+                ", updatedServiceDefinitions=" + updatedServiceDefinitions +
+                ", removedServiceDefinitions=" + removedServiceDefinitions +
+                ", changedServiceInstances=" + changedServiceInstances +
+                ", addedRuleIds=" + addedRuleIds +
+                ", updatedRuleIds=" + updatedRuleIds +
+                ", removedRuleIds=" + removedRuleIds +
+                ", rejectedRuleIds=" + rejectedRuleIds +
+                '}';
+    }
+}
@@ -0,0 +1,375 @@
+package org.wyh.gateway.common.config;
+
+import org.wyh.gateway.common.config.event.ConfigChangeEvent;
+import org.wyh.gateway.common.config.event.RuleChangeEvent;
+import org.wyh.gateway.common.config.event.ServiceDefinitionChangeEvent;
+import org.wyh.gateway.common.config.event.ServiceInstanceChangeEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-05-15 9:20
+ * @Description: 动态配置快照类，是某一时刻服务定义，服务实例和规则信息的不可变副本。
+                 每个快照都带有一个单调递增的版本号（generation）。
+                 写操作不会修改已发布的快照，而是基于当前快照构建出下一个版本的快照，然后整体替换（copy-on-write）。
+                 因此，读线程拿到一个快照后，看到的三类信息一定是相互一致的，并且整个读取过程无需加锁。
+ */
+public final class ConfigSnapshot {
+    //初始的空快照，版本号为0
+    public static final ConfigSnapshot EMPTY = new ConfigSnapshot(0L,
+            PersistentMap.empty(), PersistentMap.empty(), Collections.emptyMap(), RuleIndex.EMPTY,
+            ServiceVersionIndex.EMPTY);
+    //快照的版本号
+    private final long generation;
+    //服务定义集合。key为uniqueId（持久化map，修改单个服务时与上一个快照共享其余节点）
+    private final PersistentMap<String, ServiceDefinition> serviceDefinitionMap;
+    //服务实例视图集合。key为uniqueId（持久化map，修改单个服务时与上一个快照共享其余节点）
+    private final PersistentMap<String, ServiceInstanceView> serviceInstanceViewMap;
+    //规则集合。key为ruleId
+    private final Map<String, Rule> ruleMap;
+    //规则索引（路径->规则列表，服务id->规则列表），由服务定义集合和规则集合推导而来
+    private final RuleIndex ruleIndex;
+    //服务版本索引（serviceId -> version -> 服务条目），由服务定义集合和服务实例视图集合推导而来
+    private final ServiceVersionIndex serviceVersionIndex;
+    /**
+     * @date: 2024-05-15 9:26
+     * @description: 有参构造器。传入的规则map必须已经是只读的。
+     * @Param generation:
+     * @Param serviceDefinitionMap:
+     * @Param serviceInstanceViewMap:
+     * @Param ruleMap:
+     * @Param ruleIndex:
+     * @Param serviceVersionIndex:
+     * @return: null
+     */
+    private ConfigSnapshot(long generation, PersistentMap<String, ServiceDefinition> serviceDefinitionMap,
+                           PersistentMap<String, ServiceInstanceView> serviceInstanceViewMap, Map<String, Rule> ruleMap,
+                           RuleIndex ruleIndex, ServiceVersionIndex serviceVersionIndex) {
+        this.generation = generation;
+        this.serviceDefinitionMap = serviceDefinitionMap;
+        this.serviceInstanceViewMap = serviceInstanceViewMap;
+        this.ruleMap = ruleMap;
+        this.ruleIndex = ruleIndex;
+        this.serviceVersionIndex = serviceVersionIndex;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public Map<String, ServiceDefinition> getServiceDefinitionMap() {
+        return serviceDefinitionMap;
+    }
+
+    public Map<String, ServiceInstanceView> getServiceInstanceViewMap() {
+        return serviceInstanceViewMap;
+    }
+
+    public Map<String, Rule> getRuleMap() {
+        return ruleMap;
+    }
+
+    public RuleIndex getRuleIndex() {
+        return ruleIndex;
+    }
+
+    public ServiceVersionIndex getServiceVersionIndex() {
+        return serviceVersionIndex;
+    }
+    /**
+     * @date: 2024-05-15 9:30
+     * @description: 根据uniqueId获取服务定义
+     * @Param uniqueId:
+     * @return: org.wyh.gateway.common.config.ServiceDefinition
+     */
+    public ServiceDefinition getServiceDefinition(String uniqueId) {
+        return serviceDefinitionMap.get(uniqueId);
+    }
+    /**
+     * @date: 2024-05-15 9:31
+     * @description: 根据uniqueId获取服务实例视图。若不存在，则返回空视图。
+     * @Param uniqueId:
+     * @return: org.wyh.gateway.common.config.ServiceInstanceView
+     */
+    public ServiceInstanceView getServiceInstanceView(String uniqueId) {
+        ServiceInstanceView view = serviceInstanceViewMap.get(uniqueId);
+        return view == null ? ServiceInstanceView.EMPTY : view;
+    }
+    /**
+     * @date: 2024-05-15 9:32
+     * @description: 根据ruleId获取规则
+     * @Param ruleId:
+     * @return: org.wyh.gateway.common.config.Rule
+     */
+    public Rule getRule(String ruleId) {
+        return ruleMap.get(ruleId);
+    }
+    /**
+     * @date: 2024-05-17 10:00
+     * @description: 根据方法调用路径获取规则列表（按优先级排序）
+     * @Param path:
+     * @return: java.util.List<org.wyh.gateway.common.config.Rule>
+     */
+    public List<Rule> getRulesByPath(String path) {
+        return ruleIndex.getRulesByPath(path);
+    }
+    /**
+     * @date: 2024-05-17 10:01
+     * @description: 根据服务id获取规则列表（按优先级排序）
+     * @Param serviceId:
+     * @return: java.util.List<org.wyh.gateway.common.config.Rule>
+     */
+    public List<Rule> getRulesByServiceId(String serviceId) {
+        return ruleIndex.getRulesByServiceId(serviceId);
+    }
+    /**
+     * @date: 2024-05-15 9:33
+     * @description: 基于当前快照创建一个构建器，用于构建下一个版本的快照
+     * @return: org.wyh.gateway.common.config.ConfigSnapshot.Builder
+     */
+    Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigSnapshot{" +
+                "generation=" + generation +
+                ", serviceDefinitions=" + serviceDefinitionMap.size() +
+                ", serviceInstanceViews=" + serviceInstanceViewMap.size() +
+                ", rules=" + ruleMap.size() +
+                '}';
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.config
+     * @Author: wyh
+     * @Date: 2024-05-15 9:35
+     * @Description: 快照构建器（非线程安全，只由持有写锁的线程使用）。
+                     服务定义和服务实例视图保存在持久化map中，每次修改只复制被修改的key所在的路径（O(log32 n)），
+                     不会复制整个map；规则只有在第一次被修改时才会复制，未修改的map会直接沿用上一个快照中的对象。
+                     一个构建器中累积的所有修改，会在build时作为同一个版本一起发布。
+     */
+    static final class Builder {
+        //作为构建基础的快照
+        private final ConfigSnapshot base;
+        //以下三个map在第一次修改之前为null，表示沿用base中的map
+        private PersistentMap<String, ServiceDefinition> serviceDefinitionMap;
+        private PersistentMap<String, ServiceInstanceView> serviceInstanceViewMap;
+        private Map<String, Rule> ruleMap;
+        //以下三个集合记录了被修改过的key，用于在快照发布后计算变更事件
+        private final Set<String> touchedDefinitionIds = new LinkedHashSet<>();
+        private final Set<String> touchedViewIds = new LinkedHashSet<>();
+        private final Set<String> touchedRuleIds = new LinkedHashSet<>();
+        //被注册中心刷新过的服务（uniqueId），无论内容是否发生变化都会记录
+        private final Set<String> refreshedUniqueIds = new LinkedHashSet<>();
+
+        private Builder(ConfigSnapshot base) {
+            this.base = base;
+        }
+
+        public ConfigSnapshot getBase() {
+            return base;
+        }
+
+        public Builder putServiceDefinition(String uniqueId, ServiceDefinition serviceDefinition) {
+            //内容与当前服务定义相同（例如注册中心重复推送）时沿用当前对象，不产生修改，也就不会重建规则索引和路由表
+            ServiceDefinition current = getServiceDefinition(uniqueId);
+            if (current != null && current.contentEquals(serviceDefinition)) {
+                return this;
+            }
+            serviceDefinitionMap = definitions().plus(uniqueId, serviceDefinition);
+            touchedDefinitionIds.add(uniqueId);
+            return this;
+        }
+
+        public Builder removeServiceDefinition(String uniqueId) {
+            serviceDefinitionMap = definitions().minus(uniqueId);
+            touchedDefinitionIds.add(uniqueId);
+            return this;
+        }
+
+        /**
+         * @date: 2024-06-10 9:30
+         * @description: 记录该服务被注册中心刷新过（即使推送的内容与当前内容相同，不产生任何修改）
+         * @Param uniqueId:
+         * @return: org.wyh.gateway.common.config.ConfigSnapshot.Builder
+         */
+        public Builder markRefreshed(String uniqueId) {
+            refreshedUniqueIds.add(uniqueId);
+            return this;
+        }
+
+        public Set<String> getRefreshedUniqueIds() {
+            return Collections.unmodifiableSet(refreshedUniqueIds);
+        }
+
+        public ServiceDefinition getServiceDefinition(String uniqueId) {
+            return definitions().get(uniqueId);
+        }
+
+        public Builder putServiceInstanceView(String uniqueId, ServiceInstanceView view) {
+            //内容与当前视图相同（例如注册中心重复推送）时沿用当前视图，不产生修改，也就不会触发下游的重建
+            ServiceInstanceView current = getServiceInstanceView(uniqueId);
+            if (view == current || (view == null ? current.size() == 0 : view.contentEquals(current))) {
+                return this;
+            }
+            //空视图没有保存的意义，直接移除
+            if (view == null || view.size() == 0) {
+                serviceInstanceViewMap = views().minus(uniqueId);
+            } else {
+                serviceInstanceViewMap = views().plus(uniqueId, view);
+            }
+            touchedViewIds.add(uniqueId);
+            return this;
+        }
+
+        public Builder removeServiceInstanceView(String uniqueId) {
+            serviceInstanceViewMap = views().minus(uniqueId);
+            touchedViewIds.add(uniqueId);
+            return this;
+        }
+
+        public ServiceInstanceView getServiceInstanceView(String uniqueId) {
+            ServiceInstanceView view = views().get(uniqueId);
+            return view == null ? ServiceInstanceView.EMPTY : view;
+        }
+
+        public Builder putRule(String ruleId, Rule rule) {
+            rules().put(ruleId, rule);
+            touchedRuleIds.add(ruleId);
+            return this;
+        }
+
+        public Builder removeRule(String ruleId) {
+            rules().remove(ruleId);
+            touchedRuleIds.add(ruleId);
+            return this;
+        }
+        /**
+         * @date: 2024-05-15 9:48
+         * @description: 整体替换规则集合
+         * @Param newRuleMap:
+         * @return: org.wyh.gateway.common.config.ConfigSnapshot.Builder
+         */
+        public Builder replaceRules(Map<String, Rule> newRuleMap) {
+            touchedRuleIds.addAll(ruleMap == null ? base.ruleMap.keySet() : ruleMap.keySet());
+            touchedRuleIds.addAll(newRuleMap.keySet());
+            ruleMap = new HashMap<>(newRuleMap);
+            return this;
+        }
+
+        public Rule getRule(String ruleId) {
+            return ruleMap != null ? ruleMap.get(ruleId) : base.getRule(ruleId);
+        }
+
+        public int getRuleCount() {
+            return ruleMap != null ? ruleMap.size() : base.ruleMap.size();
+        }
+        /**
+         * @date: 2024-05-15 9:50
+         * @description: 判断构建器中是否存在修改
+         * @return: boolean
+         */
+        public boolean isModified() {
+            //持久化map在key不存在或value没有变化时会返回原对象，因此与base中的map比较即可
+            return definitions() != base.serviceDefinitionMap || views() != base.serviceInstanceViewMap
+                    || ruleMap != null;
+        }
+        /**
+         * @date: 2024-05-15 9:52
+         * @description: 构建下一个版本的快照，版本号在基础快照的基础上加一。
+                         只有服务定义或规则发生变更时，才会重新构建规则索引，否则直接沿用上一个快照的索引。
+                         服务版本索引只针对被修改过的uniqueId增量更新。
+         * @return: org.wyh.gateway.common.config.ConfigSnapshot
+         */
+        public ConfigSnapshot build() {
+            PersistentMap<String, ServiceDefinition> newServiceDefinitionMap = definitions();
+            PersistentMap<String, ServiceInstanceView> newServiceInstanceViewMap = views();
+            Map<String, Rule> newRuleMap = ruleMap == null ? base.ruleMap : Collections.unmodifiableMap(ruleMap);
+            RuleIndex newRuleIndex = newServiceDefinitionMap == base.serviceDefinitionMap && ruleMap == null
+                    ? base.ruleIndex : RuleIndex.build(newServiceDefinitionMap, newRuleMap);
+            //服务版本索引只需增量更新被修改过的uniqueId
+            Set<String> touchedUniqueIds = new LinkedHashSet<>(touchedDefinitionIds);
+            touchedUniqueIds.addAll(touchedViewIds);
+            ServiceVersionIndex newServiceVersionIndex = base.serviceVersionIndex.update(touchedUniqueIds,
+                    newServiceDefinitionMap, newServiceInstanceViewMap);
+            return new ConfigSnapshot(base.generation + 1, newServiceDefinitionMap,
+                    newServiceInstanceViewMap, newRuleMap, newRuleIndex, newServiceVersionIndex);
+        }
+
+        /**
+         * @date: 2024-05-20 10:30
+         * @description: 对比基础快照和新快照中被修改过的key，生成变更事件。
+                         只有值真正发生变化（不是同一个对象）的key才会产生事件，服务定义和服务实例视图还需要内容不同。
+         * @Param newSnapshot: 由该构建器构建出的新快照
+         * @return: java.util.List<org.wyh.gateway.common.config.event.ConfigChangeEvent>
+         */
+        List<ConfigChangeEvent> diff(ConfigSnapshot newSnapshot) {
+            List<ConfigChangeEvent> events = new ArrayList<>();
+            for (String uniqueId : touchedDefinitionIds) {
+                ServiceDefinition oldDefinition = base.getServiceDefinition(uniqueId);
+                ServiceDefinition newDefinition = newSnapshot.getServiceDefinition(uniqueId);
+                //同一批修改中先改后改回时，服务定义对象不同但内容相同，不算作变化
+                if (oldDefinition != newDefinition
+                        && (oldDefinition == null || !oldDefinition.contentEquals(newDefinition))) {
+                    events.add(new ServiceDefinitionChangeEvent(newSnapshot, uniqueId, oldDefinition, newDefinition));
+                }
+            }
+            for (String uniqueId : touchedViewIds) {
+                ServiceInstanceView oldView = base.getServiceInstanceView(uniqueId);
+                ServiceInstanceView newView = newSnapshot.getServiceInstanceView(uniqueId);
+                //同一批修改中先改后改回时，视图对象不同但内容相同，不算作变化
+                if (oldView != newView && !oldView.contentEquals(newView)) {
+                    events.add(new ServiceInstanceChangeEvent(newSnapshot, uniqueId, oldView, newView));
+                }
+            }
+            Set<String> changedRuleIds = new LinkedHashSet<>();
+            Map<String, Rule> oldRules = new HashMap<>();
+            Map<String, Rule> newRules = new HashMap<>();
+            for (String ruleId : touchedRuleIds) {
+                Rule oldRule = base.getRule(ruleId);
+                Rule newRule = newSnapshot.getRule(ruleId);
+                if (oldRule == newRule) {
+                    continue;
+                }
+                changedRuleIds.add(ruleId);
+                if (oldRule != null) {
+                    oldRules.put(ruleId, oldRule);
+                }
+                if (newRule != null) {
+                    newRules.put(ruleId, newRule);
+                }
+            }
+            if (!changedRuleIds.isEmpty()) {
+                events.add(new RuleChangeEvent(newSnapshot, Collections.unmodifiableSet(changedRuleIds),
+                        Collections.unmodifiableMap(oldRules), Collections.unmodifiableMap(newRules)));
+            }
+            return events;
+        }
+
+        private PersistentMap<String, ServiceDefinition> definitions() {
+            return serviceDefinitionMap == null ? base.serviceDefinitionMap : serviceDefinitionMap;
+        }
+
+        private PersistentMap<String, ServiceInstanceView> views() {
+            return serviceInstanceViewMap == null ? base.serviceInstanceViewMap : serviceInstanceViewMap;
+        }
+
+        private Map<String, Rule> rules() {
+            if (ruleMap == null) {
+                ruleMap = new HashMap<>(base.ruleMap);
+            }
+            return ruleMap;
+        }
+    }
+}
@@ -1,14 +1,19 @@
 package org.wyh.gateway.common.config;
 
-import org.apache.commons.collections.CollectionUtils;
+import org.wyh.gateway.common.config.event.ConfigChangeEvent;
+import org.wyh.gateway.common.config.event.ConfigChangeListener;
+import org.wyh.gateway.common.config.event.ConfigChangeNotifier;
+import org.wyh.gateway.common.config.event.ConfigChangeType;
+import org.wyh.gateway.common.config.filter.FilterConfigRegistry;
+import org.wyh.gateway.common.config.metrics.ConfigMetrics;
 import org.wyh.gateway.common.utils.TimeUtil;
 
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * @BelongsProject: my-api-gateway
@@ -16,23 +21,28 @@ import java.util.stream.Collectors;
  * @Author: wyh
  * @Date: 2024-01-22 11:00
  * @Description: 动态配置管理类，主要负责缓存和管理动态配置信息，即服务定义，服务实例和规则信息
+ *               所有信息都保存在一个不可变的配置快照（ConfigSnapshot）中，并通过volatile字段整体发布。
+ *               读操作直接读取当前快照，无需加锁；写操作在写锁的保护下构建下一个版本的快照，再一次性替换。
  * todo：其实这个类应该改名成DynamicInfoManager，也就是动态信息管理器类
  */
 public class DynamicConfigManager {
-    //缓存服务定义的集合。key为uniqueId，是服务定义的唯一标识
-    private ConcurrentHashMap<String, ServiceDefinition> serviceDefinitionMap =
-            new ConcurrentHashMap<>();
-    //缓存服务实例的集合。key为uniqueId，是服务实例所属的服务定义的唯一标识。一个服务定义与一组服务实例对应。
-    private ConcurrentHashMap<String, Set<ServiceInstance>> serviceInstanceMap =
-            new ConcurrentHashMap<>();
-    //缓存规则的集合。key为ruleId，是规则的唯一标识。
-    private ConcurrentHashMap<String, Rule> ruleMap = new ConcurrentHashMap<>();
+    //当前发布的配置快照。快照本身不可变，每次写操作都会替换成一个新版本的快照。
+    private volatile ConfigSnapshot snapshot = ConfigSnapshot.EMPTY;
+    //写锁。所有写操作串行执行，保证快照版本号单调递增，且不会丢失并发写入的修改。
+    private final Object writeLock = new Object();
+    //配置变更通知器，负责将每个新版本快照产生的变更事件异步通知给监听器
+    private final ConfigChangeNotifier changeNotifier = new ConfigChangeNotifier();
+    //指标（查找次数，未命中次数，更新耗时等），同时注册到JMX中
+    private final ConfigMetrics metrics = new ConfigMetrics(this::getSnapshot);
+    //服务刷新监听器，在写锁内同步接收每次写操作中被注册中心刷新过的服务（uniqueId）
+    private final List<Consumer<Set<String>>> refreshListeners = new CopyOnWriteArrayList<>();
     /**
      * @date: 2024-01-22 15:20
      * @description: private修饰的无参构造器
      * @return: null
      */
     private DynamicConfigManager() {
+        metrics.registerMBean();
     }
     /**
      * @BelongsProject: my-api-gateway
@@ -53,6 +63,128 @@ public class DynamicConfigManager {
     public static DynamicConfigManager getInstance() {
         return SingletonHolder.INSTANCE;
     }
+    /*
+     * 对配置快照的相关操作
+     */
+    /**
+     * @date: 2024-05-15 10:20
+     * @description: 获取当前发布的配置快照。
+                     如果一次请求需要读取多类信息（例如服务定义+服务实例+规则），应当先获取快照，再从同一个快照中读取，
+                     这样才能保证读到的信息相互一致。
+     * @return: org.wyh.gateway.common.config.ConfigSnapshot
+     */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+    /**
+     * @date: 2024-05-15 10:22
+     * @description: 获取当前配置快照的版本号
+     * @return: long
+     */
+    public long getGeneration() {
+        return snapshot.getGeneration();
+    }
+    /**
+     * @date: 2024-05-28 10:20
+     * @description: 获取配置管理器的指标
+     * @return: org.wyh.gateway.common.config.metrics.ConfigMetrics
+     */
+    public ConfigMetrics getMetrics() {
+        return metrics;
+    }
+    /**
+     * @date: 2024-05-15 10:25
+     * @description: 在写锁的保护下修改配置，并将所有修改作为下一个版本的快照一次性发布。
+                     若没有发生任何修改，则不会发布新快照。
+     * @Param mutation: 对快照构建器进行的修改操作
+     * @return: org.wyh.gateway.common.config.ConfigSnapshot 修改后的快照（没有发生修改时为当前快照）
+     */
+    ConfigSnapshot update(Consumer<ConfigSnapshot.Builder> mutation) {
+        synchronized (writeLock) {
+            long start = System.nanoTime();
+            ConfigSnapshot.Builder builder = snapshot.toBuilder();
+            mutation.accept(builder);
+            notifyRefreshed(builder);
+            if (builder.isModified()) {
+                ConfigSnapshot newSnapshot = builder.build();
+                snapshot = newSnapshot;
+                //在写锁内提交事件，保证事件的分发顺序与快照版本号的顺序一致
+                if (changeNotifier.hasListeners()) {
+                    changeNotifier.publish(builder.diff(newSnapshot));
+                }
+                metrics.recordUpdate(System.nanoTime() - start);
+            }
+            return snapshot;
+        }
+    }
+    /**
+     * @date: 2024-05-27 10:00
+     * @description: 一次性应用一批服务定义和服务实例的变更。
+                     所有变更作为同一个版本的快照发布，读请求要么看到全部变更，要么一个都看不到；
+                     派生的缓存（例如规则索引）也只会重建一次。
+     * @Param batch:
+     * @return: org.wyh.gateway.common.config.ConfigChangeReport 实际发生的变更
+     */
+    public ConfigChangeReport applyBatch(ConfigBatch batch) {
+        synchronized (writeLock) {
+            long start = System.nanoTime();
+            ConfigSnapshot.Builder builder = snapshot.toBuilder();
+            batch.applyTo(builder);
+            notifyRefreshed(builder);
+            if (!builder.isModified()) {
+                return new ConfigChangeReport(snapshot.getGeneration(), Collections.emptyList(), batch.getRejectedRuleIds());
+            }
+            ConfigSnapshot newSnapshot = builder.build();
+            snapshot = newSnapshot;
+            List<ConfigChangeEvent> events = builder.diff(newSnapshot);
+            changeNotifier.publish(events);
+            metrics.recordUpdate(System.nanoTime() - start);
+            return new ConfigChangeReport(newSnapshot.getGeneration(), events, batch.getRejectedRuleIds());
+        }
+    }
+    /**
+     * @date: 2024-05-20 10:40
+     * @description: 注册配置变更监听器。事件会在单独的通知线程中按快照版本顺序异步分发，不会占用请求处理线程。
+     * @Param listener:
+     * @Param types: 感兴趣的事件类型，不传则监听所有类型
+     * @return: void
+     */
+    public void addConfigChangeListener(ConfigChangeListener listener, ConfigChangeType... types) {
+        changeNotifier.addListener(listener, types);
+    }
+    /**
+     * @date: 2024-05-20 10:42
+     * @description: 注销配置变更监听器
+     * @Param listener:
+     * @return: void
+     */
+    public void removeConfigChangeListener(ConfigChangeListener listener) {
+        changeNotifier.removeListener(listener);
+    }
+    /**
+     * @date: 2024-06-10 9:40
+     * @description: 注册服务刷新监听器。监听器在写锁内由执行写操作的线程同步调用，参数为本次写操作中被注册中心刷新过的服务，
+                     即使推送的内容与当前内容相同（不发布新快照，也不产生变更事件）也会调用。监听器中不能再调用写操作。
+     * @Param listener:
+     * @return: void
+     */
+    void addServiceRefreshListener(Consumer<Set<String>> listener) {
+        refreshListeners.add(listener);
+    }
+
+    void removeServiceRefreshListener(Consumer<Set<String>> listener) {
+        refreshListeners.remove(listener);
+    }
+
+    private void notifyRefreshed(ConfigSnapshot.Builder builder) {
+        Set<String> refreshedUniqueIds = builder.getRefreshedUniqueIds();
+        if (refreshedUniqueIds.isEmpty()) {
+            return;
+        }
+        for (Consumer<Set<String>> listener : refreshListeners) {
+            listener.accept(refreshedUniqueIds);
+        }
+    }
     /*
      * 对服务定义的相关操作
      */
@@ -66,7 +198,7 @@ public class DynamicConfigManager {
     public void putServiceDefinition(String uniqueId,
                                      ServiceDefinition serviceDefinition) {
 
-        serviceDefinitionMap.put(uniqueId, serviceDefinition);;
+        update(builder -> builder.markRefreshed(uniqueId).putServiceDefinition(uniqueId, serviceDefinition));
     }
     /**
      * @date: 2024-01-22 15:32
@@ -75,7 +207,30 @@ public class DynamicConfigManager {
      * @return: org.wyh.common.config.ServiceDefinition
      */
     public ServiceDefinition getServiceDefinition(String uniqueId) {
-        return serviceDefinitionMap.get(uniqueId);
+        ServiceDefinition serviceDefinition = snapshot.getServiceDefinition(uniqueId);
+        metrics.recordServiceDefinitionLookup(serviceDefinition != null);
+        return serviceDefinition;
+    }
+    /**
+     * @date: 2024-05-31 10:20
+     * @description: 根据serviceId和version获取服务条目（服务定义 + 服务实例视图），不需要拼接uniqueId。
+                     version为空或该版本不存在时，回退到默认版本（GatewayConst.DEFAULT_VERSION）；服务不存在时返回null。
+     * @Param serviceId:
+     * @Param version:
+     * @return: org.wyh.gateway.common.config.ServiceEntry
+     */
+    public ServiceEntry getServiceEntry(String serviceId, String version) {
+        return snapshot.getServiceVersionIndex().getEntryOrDefault(serviceId, version);
+    }
+    /**
+     * @date: 2024-05-31 10:22
+     * @description: 根据serviceId和version获取服务条目（精确匹配，不回退到默认版本）。不存在时返回null。
+     * @Param serviceId:
+     * @Param version:
+     * @return: org.wyh.gateway.common.config.ServiceEntry
+     */
+    public ServiceEntry getServiceEntryExact(String serviceId, String version) {
+        return snapshot.getServiceVersionIndex().getEntry(serviceId, version);
     }
     /**
      * @date: 2024-01-22 15:32
@@ -84,15 +239,15 @@ public class DynamicConfigManager {
      * @return: void
      */
     public void removeServiceDefinition(String uniqueId) {
-        serviceDefinitionMap.remove(uniqueId);
+        update(builder -> builder.markRefreshed(uniqueId).removeServiceDefinition(uniqueId));
     }
     /**
      * @date: 2024-01-22 15:33
-     * @description: 获取整个服务定义集合
-     * @return: java.util.concurrent.ConcurrentHashMap<java.lang.String, org.wyh.common.config.ServiceDefinition>
+     * @description: 获取整个服务定义集合（只读）
+     * @return: java.util.Map<java.lang.String, org.wyh.common.config.ServiceDefinition>
      */
-    public ConcurrentHashMap<String, ServiceDefinition> getServiceDefinitionMap() {
-        return serviceDefinitionMap;
+    public Map<String, ServiceDefinition> getServiceDefinitionMap() {
+        return snapshot.getServiceDefinitionMap();
     }
     /*
      * 对服务实例的相关操作
@@ -105,28 +260,30 @@ public class DynamicConfigManager {
      * @return: java.util.Set<org.wyh.common.config.ServiceInstance>
      */
     public Set<ServiceInstance> getServiceInstanceByUniqueId(String uniqueId, boolean gray){
-        Set<ServiceInstance> serviceInstances = serviceInstanceMap.get(uniqueId);
-        //判断服务实例集合是否为空
-        if(CollectionUtils.isEmpty(serviceInstances)){
-            return Collections.emptySet();
-        }
-        //判断要获取的是灰度服务实例集合还是正常（非灰度）服务实例集合
-        if(gray){
-            /*
-             * 以下代码的作用是从服务实例集合中筛选出灰度服务实例集合
-             * stream方法可以将集合转换为（元素）流
-             * filter方法的作用是过滤，具体来说，它会遍历流中的每一个元素，并检查表达式结果是否为真。
-             * 只有当结果为真，对应元素才会被保留在流中。
-             * collect(Collectors.toSet())的作用是将流中的元素收集到一个Set集合中。
-             */
-            return serviceInstances.stream()
-                    .filter(instance->instance.isGray())
-                    .collect(Collectors.toSet());
-        }
-        //从服务实例集合中筛选出正常（非灰度）服务实例集合
-        return serviceInstances.stream()
-                .filter(instance->!(instance.isGray()))
-                .collect(Collectors.toSet());
+        //直接返回预先构建好的只读集合，不会在请求路径上产生新的集合对象
+        Set<ServiceInstance> instanceSet = getServiceInstanceView(uniqueId).getInstanceSet(gray);
+        metrics.recordServiceInstanceLookup(!instanceSet.isEmpty());
+        return instanceSet;
+    }
+    /**
+     * @date: 2024-05-14 10:05
+     * @description: 根据uniqueId获取对应的服务实例视图。若不存在，则返回空视图。
+     * @Param uniqueId:
+     * @return: org.wyh.gateway.common.config.ServiceInstanceView
+     */
+    public ServiceInstanceView getServiceInstanceView(String uniqueId) {
+        return snapshot.getServiceInstanceView(uniqueId);
+    }
+    /**
+     * @date: 2024-05-24 10:15
+     * @description: 根据标签条件获取服务实例（只包含已启用的服务实例），通过标签索引的位图按位与实现，不需要遍历服务实例
+     * @Param uniqueId:
+     * @Param gray: 标识是否要获取灰度服务实例
+     * @Param conditions: 标签条件，例如{zone=a, tier=gold}
+     * @return: org.wyh.gateway.common.config.ServiceInstance[]
+     */
+    public ServiceInstance[] getServiceInstancesByTags(String uniqueId, boolean gray, Map<String, String> conditions) {
+        return getServiceInstanceView(uniqueId).getTagIndex(gray).select(conditions);
     }
     /**
      * @date: 2024-01-22 15:36
@@ -136,8 +293,9 @@ public class DynamicConfigManager {
      * @return: void
      */
     public void addServiceInstance(String uniqueId, ServiceInstance serviceInstance) {
-        Set<ServiceInstance> set = serviceInstanceMap.get(uniqueId);
-        set.add(serviceInstance);
+        //以serviceInstanceId为key直接定位，若该实例已存在则会被覆盖
+        update(builder -> builder.markRefreshed(uniqueId).putServiceInstanceView(uniqueId,
+                builder.getServiceInstanceView(uniqueId).withInstance(uniqueId, serviceInstance)));
     }
     /**
      * @date: 2024-01-22 15:38
@@ -147,8 +305,9 @@ public class DynamicConfigManager {
      * @return: void
      */
     public void addServiceInstance(String uniqueId, Set<ServiceInstance> serviceInstanceSet) {
-        //put方法是覆盖的：如果新插入entry的key在map中已经存在，那么它会覆盖掉旧的entry
-        serviceInstanceMap.put(uniqueId, serviceInstanceSet);
+        //覆盖式更新：新视图会直接替换掉该uniqueId对应的旧视图。视图构建时会复制传入的集合，因此调用方之后对集合的修改不会产生影响。
+        update(builder -> builder.markRefreshed(uniqueId).putServiceInstanceView(uniqueId,
+                ServiceInstanceView.of(uniqueId, serviceInstanceSet)));
     }
     /**
      * @date: 2024-01-22 15:39
@@ -158,18 +317,9 @@ public class DynamicConfigManager {
      * @return: void
      */
     public void updateServiceInstance(String uniqueId, ServiceInstance serviceInstance) {
-        Set<ServiceInstance> set = serviceInstanceMap.get(uniqueId);
-        Iterator<ServiceInstance> it = set.iterator();
-        while(it.hasNext()) {
-            ServiceInstance is = it.next();
-            if(is.getServiceInstanceId().equals(serviceInstance.getServiceInstanceId())) {
-                //先移除旧值
-                it.remove();
-                break;
-            }
-        }
-        //移除旧值后，再添加新值
-        set.add(serviceInstance);
+        //以serviceInstanceId为key直接替换旧值，无需遍历整个服务实例集合
+        update(builder -> builder.markRefreshed(uniqueId).putServiceInstanceView(uniqueId,
+                builder.getServiceInstanceView(uniqueId).withInstance(uniqueId, serviceInstance)));
     }
     /**
      * @date: 2024-01-22 15:43
@@ -179,15 +329,25 @@ public class DynamicConfigManager {
      * @return: void
      */
     public void removeServiceInstance(String uniqueId, String serviceInstanceId) {
-        Set<ServiceInstance> set = serviceInstanceMap.get(uniqueId);
-        Iterator<ServiceInstance> it = set.iterator();
-        while(it.hasNext()) {
-            ServiceInstance is = it.next();
-            if(is.getServiceInstanceId().equals(serviceInstanceId)) {
-                it.remove();
-                break;
+        update(builder -> {
+            builder.markRefreshed(uniqueId);
+            ServiceInstanceView view = builder.getServiceInstanceView(uniqueId);
+            ServiceInstanceView newView = view.withoutInstance(serviceInstanceId);
+            //实例不存在时视图不变，也就不需要发布新的快照
+            if (newView != view) {
+                builder.putServiceInstanceView(uniqueId, newView);
             }
-        }
+        });
+    }
+    /**
+     * @date: 2024-05-16 9:40
+     * @description: 根据uniqueId和serviceInstanceId获取单个服务实例
+     * @Param uniqueId:
+     * @Param serviceInstanceId:
+     * @return: org.wyh.gateway.common.config.ServiceInstance
+     */
+    public ServiceInstance getServiceInstance(String uniqueId, String serviceInstanceId) {
+        return snapshot.getServiceInstanceView(uniqueId).getInstance(serviceInstanceId);
     }
     /**
      * @date: 2024-01-22 15:44
@@ -196,39 +356,39 @@ public class DynamicConfigManager {
      * @return: void
      */
     public void removeServiceInstancesByUniqueId(String uniqueId) {
-        serviceInstanceMap.remove(uniqueId);
+        update(builder -> builder.markRefreshed(uniqueId).removeServiceInstanceView(uniqueId));
     }
     /*
      * 对规则的相关操作
      */
     /**
      * @date: 2024-01-22 16:00
-     * @description: 添加单个规则
+     * @description: 添加单个规则。规则的过滤器配置会在这里编译并缓存，
+                     配置不合法时抛出FilterConfigParseException（FILTER_CONFIG_PARSE_ERROR），规则不会被加载。
      * @Param ruleId:
      * @Param rule:
      * @return: void
      */
     public void putRule(String ruleId, Rule rule) {
+        FilterConfigRegistry.getInstance().compileAndCache(rule);
         //更新规则的最后修改时间属性
         rule.setLastModifiedTime(TimeUtil.currentTimeMillis());
-        ruleMap.put(ruleId, rule);
+        update(builder -> builder.putRule(ruleId, rule));
     }
     /**
      * @date: 2024-01-22 16:01
      * @description: 加载多个规则（规则列表）。
                      通常是nacos中的规则配置发生变更时，相应监听器会调用该方法，更新ruleMap
+                     新的规则集合会和其他配置信息一起，作为下一个版本的快照整体发布，不会出现规则集合被“替换一半”的情况。
+                     规则按照ruleId和内容哈希值进行对比，内容没有变化的规则会继续使用原有的Rule对象和lastModifiedTime，
+                     因此按规则缓存的数据（例如解析后的过滤器配置，限流器状态）不会失效。
+                     过滤器配置不合法的规则会被拒绝（已存在的规则保留旧版本），并记录在变更报告中。
      * @Param ruleList:
-     * @return: void
+     * @return: org.wyh.gateway.common.config.ConfigChangeReport 新增，修改，删除和被拒绝的规则
      */
-    public void putAllRule(List<Rule> ruleList) {
-        //该方法除了要初始化ruleMap外，还要初始化pathRuleMap和serviceRuleMap
-        ConcurrentHashMap<String,Rule> newRuleMap = new ConcurrentHashMap<>();
-        for (Rule rule : ruleList) {
-            //更新规则的最后修改时间属性
-            rule.setLastModifiedTime(TimeUtil.currentTimeMillis());
-            newRuleMap.put(rule.getRuleId(), rule);
-        }
-        ruleMap = newRuleMap;
+    public ConfigChangeReport putAllRule(List<Rule> ruleList) {
+        //该方法除了要初始化ruleMap外，还要初始化pathRuleMap和serviceRuleMap（在构建快照时由RuleIndex完成）
+        return applyBatch(new ConfigBatch().replaceRules(ruleList));
     }
     /**
      * @date: 2024-01-22 16:15
@@ -237,7 +397,37 @@ public class DynamicConfigManager {
      * @return: org.wyh.common.config.Rule
      */
     public Rule getRule(String ruleId) {
-        return ruleMap.get(ruleId);
+        Rule rule = snapshot.getRule(ruleId);
+        metrics.recordRuleLookup(rule != null);
+        return rule;
+    }
+    /**
+     * @date: 2024-05-17 10:10
+     * @description: 根据方法调用路径获取绑定的规则列表，列表已按优先级排好序
+     * @Param path: 方法调用路径，即ServiceDefinition.invokerMap中的key
+     * @return: java.util.List<org.wyh.gateway.common.config.Rule>
+     */
+    public List<Rule> getRulesByPath(String path) {
+        return snapshot.getRulesByPath(path);
+    }
+    /**
+     * @date: 2024-05-17 10:12
+     * @description: 根据方法调用路径获取优先级最高的规则。若不存在，则返回null。
+     * @Param path:
+     * @return: org.wyh.gateway.common.config.Rule
+     */
+    public Rule getRuleByPath(String path) {
+        List<Rule> rules = snapshot.getRulesByPath(path);
+        return rules.isEmpty() ? null : rules.get(0);
+    }
+    /**
+     * @date: 2024-05-17 10:14
+     * @description: 根据服务id获取该服务绑定的规则列表，列表已按优先级排好序
+     * @Param serviceId:
+     * @return: java.util.List<org.wyh.gateway.common.config.Rule>
+     */
+    public List<Rule> getRulesByServiceId(String serviceId) {
+        return snapshot.getRulesByServiceId(serviceId);
     }
     /**
      * @date: 2024-01-22 16:15
@@ -246,14 +436,14 @@ public class DynamicConfigManager {
      * @return: void
      */
     public void removeRule(String ruleId) {
-        ruleMap.remove(ruleId);
+        update(builder -> builder.removeRule(ruleId));
     }
     /**
      * @date: 2024-01-22 16:16
-     * @description: 获取整个规则集合
-     * @return: java.util.concurrent.ConcurrentHashMap<java.lang.String, org.wyh.common.config.Rule>
+     * @description: 获取整个规则集合（只读）
+     * @return: java.util.Map<java.lang.String, org.wyh.common.config.Rule>
      */
-    public ConcurrentHashMap<String, Rule> getRuleMap() {
-        return ruleMap;
+    public Map<String, Rule> getRuleMap() {
+        return snapshot.getRuleMap();
     }
 }
@@ -0,0 +1,88 @@
+package org.wyh.gateway.common.config;
+
+import org.wyh.gateway.common.constant.BasicConst;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-05-24 9:10
+ * @Description: 服务实例的标签集合（不可变），由ServiceInstance.tags解析得到。
+                 tags的格式为“key1=value1,key2=value2”，只有key没有value的标签，其value为空串。
+                 解析出的key和value都经过了intern处理，大量服务实例的相同标签只会保存一份字符串。
+                 解析只在服务实例（从注册中心）到达时进行一次，请求路径上不会再切分字符串。
+ */
+public final class InstanceTags {
+    //空标签集合
+    public static final InstanceTags EMPTY = new InstanceTags(Collections.emptyMap());
+    //标签key与value的只读映射
+    private final Map<String, String> tagMap;
+    /**
+     * @date: 2024-05-24 9:12
+     * @description: 有参构造器
+     * @Param tagMap:
+     * @return: null
+     */
+    private InstanceTags(Map<String, String> tagMap) {
+        this.tagMap = tagMap;
+    }
+    /**
+     * @date: 2024-05-24 9:15
+     * @description: 解析标签字符串。字符串为空时返回空标签集合；空白的标签项会被忽略，重复的key以最后一次出现的为准。
+     * @Param tags:
+     * @return: org.wyh.gateway.common.config.InstanceTags
+     */
+    public static InstanceTags parse(String tags) {
+        if (tags == null || tags.isBlank()) {
+            return EMPTY;
+        }
+        Map<String, String> tagMap = new LinkedHashMap<>();
+        for (String item : tags.split(BasicConst.COMMA_SEPARATOR)) {
+            int index = item.indexOf(BasicConst.EQUAL_SEPARATOR);
+            String key = (index < 0 ? item : item.substring(0, index)).trim();
+            if (key.isEmpty()) {
+                continue;
+            }
+            String value = index < 0 ? BasicConst.BLANK_SEPARATOR_1 : item.substring(index + 1).trim();
+            tagMap.put(key.intern(), value.intern());
+        }
+        return tagMap.isEmpty() ? EMPTY : new InstanceTags(Collections.unmodifiableMap(tagMap));
+    }
+    /**
+     * @date: 2024-05-24 9:20
+     * @description: 获取标签key对应的value，不存在时返回null
+     * @Param key:
+     * @return: java.lang.String
+     */
+    public String get(String key) {
+        return tagMap.get(key);
+    }
+    /**
+     * @date: 2024-05-24 9:21
+     * @description: 判断是否包含指定的标签（key和value都相等）
+     * @Param key:
+     * @Param value:
+     * @return: boolean
+     */
+    public boolean contains(String key, String value) {
+        String actual = tagMap.get(key);
+        return actual != null && actual.equals(value);
+    }
+
+    public Map<String, String> asMap() {
+        return tagMap;
+    }
+
+    public boolean isEmpty() {
+        return tagMap.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return tagMap.toString();
+    }
+}
@@ -0,0 +1,404 @@
+package org.wyh.gateway.common.config;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-06-11 9:10
+ * @Description: 不可变的持久化哈希映射（哈希数组映射字典树，HAMT），供配置快照保存服务定义和服务实例视图。
+                 每个节点按照哈希值的5位（32路分支）定位子节点，节点中只保存实际存在的分支（位图 + 紧凑数组）。
+                 plus/minus不会修改当前map，而是只复制从根节点到被修改的key所在节点的路径（最多7层），其余节点与当前map共享，
+                 因此单个服务的变更只需O(log32 n)的复制，不会随服务总数线性增长。读操作与HashMap相同，不需要加锁。
+                 key不能为null，value可以为null。通过Map接口进行的修改操作都会抛出UnsupportedOperationException。
+ */
+final class PersistentMap<K, V> extends AbstractMap<K, V> {
+    //空map
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0);
+    //表示key不存在（value可以为null，不能用null表示）
+    private static final Object NOT_FOUND = new Object();
+    //每层使用的哈希值位数
+    private static final int BITS = 5;
+    //根节点
+    private final Node root;
+    //键值对数量
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+    /**
+     * @date: 2024-06-11 9:15
+     * @description: 返回添加或替换了一个键值对的新map。value与当前值是同一个对象时，直接返回当前map。
+     * @Param key:
+     * @Param value:
+     * @return: org.wyh.gateway.common.config.PersistentMap<K, V>
+     */
+    PersistentMap<K, V> plus(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        int hash = hash(key);
+        Node newRoot = root.put(hash, key, value, 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentMap<>(newRoot, root.find(hash, key, 0) == NOT_FOUND ? size + 1 : size);
+    }
+    /**
+     * @date: 2024-06-11 9:18
+     * @description: 返回删除了一个键值对的新map。key不存在时，直接返回当前map。
+     * @Param key:
+     * @return: org.wyh.gateway.common.config.PersistentMap<K, V>
+     */
+    PersistentMap<K, V> minus(Object key) {
+        if (key == null) {
+            return this;
+        }
+        Node newRoot = root.remove(hash(key), key, 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentMap<>(newRoot, size - 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        Object value = root.find(hash(key), key, 0);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && root.find(hash(key), key, 0) != NOT_FOUND;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 0x1F);
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.config
+     * @Author: wyh
+     * @Date: 2024-06-11 9:20
+     * @Description: （内部类）节点。array中每两个元素为一组：key和value，或者null和子节点。
+     */
+    private abstract static class Node {
+        //键值对或子节点
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+        /**
+         * @date: 2024-06-11 9:22
+         * @description: 查找key对应的value，不存在时返回NOT_FOUND
+         * @Param hash:
+         * @Param key:
+         * @Param shift: 当前层使用的哈希值起始位
+         * @return: java.lang.Object
+         */
+        abstract Object find(int hash, Object key, int shift);
+        /**
+         * @date: 2024-06-11 9:23
+         * @description: 添加或替换键值对，返回新节点（没有变化时返回当前节点）
+         * @Param hash:
+         * @Param key:
+         * @Param value:
+         * @Param shift:
+         * @return: org.wyh.gateway.common.config.PersistentMap.Node
+         */
+        abstract Node put(int hash, Object key, Object value, int shift);
+        /**
+         * @date: 2024-06-11 9:24
+         * @description: 删除键值对，返回新节点（key不存在时返回当前节点，节点变空时返回null）
+         * @Param hash:
+         * @Param key:
+         * @Param shift:
+         * @return: org.wyh.gateway.common.config.PersistentMap.Node
+         */
+        abstract Node remove(int hash, Object key, int shift);
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.config
+     * @Author: wyh
+     * @Date: 2024-06-11 9:25
+     * @Description: （内部类）位图节点，位图中的第i位表示哈希值在当前层为i的分支是否存在
+     */
+    private static final class BitmapNode extends Node {
+        //空节点（只作为根节点）
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+        //存在的分支
+        private final int bitmap;
+
+        private BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1)) << 1;
+        }
+
+        @Override
+        Object find(int hash, Object key, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).find(hash, key, shift + BITS);
+            }
+            return key.equals(k) ? array[i + 1] : NOT_FOUND;
+        }
+
+        @Override
+        Node put(int hash, Object key, Object value, int shift) {
+            int bit = bit(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, i);
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy(array, i, newArray, i + 2, array.length - i);
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).put(hash, key, value, shift + BITS);
+                return child == v ? this : replace(i, null, child);
+            }
+            if (key.equals(k)) {
+                return v == value ? this : replace(i, k, value);
+            }
+            return replace(i, null, merge(k, v, hash, key, value, shift + BITS));
+        }
+
+        @Override
+        Node remove(int hash, Object key, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                Node child = (Node) array[i + 1];
+                Node newChild = child.remove(hash, key, shift + BITS);
+                if (newChild == child) {
+                    return this;
+                }
+                return newChild != null ? replace(i, null, newChild) : without(bit, i);
+            }
+            return key.equals(k) ? without(bit, i) : this;
+        }
+
+        private BitmapNode replace(int i, Object key, Object value) {
+            Object[] newArray = array.clone();
+            newArray[i] = key;
+            newArray[i + 1] = value;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        private BitmapNode without(int bit, int i) {
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, newArray.length - i);
+            return new BitmapNode(bitmap ^ bit, newArray);
+        }
+        /**
+         * @date: 2024-06-11 9:30
+         * @description: 两个key在当前层落到同一分支时，为它们创建下一层的节点（哈希值完全相同时创建冲突节点）
+         * @Param key1:
+         * @Param value1:
+         * @Param hash2:
+         * @Param key2:
+         * @Param value2:
+         * @Param shift: 下一层使用的哈希值起始位
+         * @return: org.wyh.gateway.common.config.PersistentMap.Node
+         */
+        private static Node merge(Object key1, Object value1, int hash2, Object key2, Object value2, int shift) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+            }
+            return EMPTY.put(hash1, key1, value1, shift).put(hash2, key2, value2, shift);
+        }
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.config
+     * @Author: wyh
+     * @Date: 2024-06-11 9:35
+     * @Description: （内部类）冲突节点，保存哈希值完全相同的多个键值对（线性查找）
+     */
+    private static final class CollisionNode extends Node {
+        //所有键值对共同的哈希值
+        private final int hash;
+
+        private CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int hash, Object key, int shift) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            return i < 0 ? NOT_FOUND : array[i + 1];
+        }
+
+        @Override
+        Node put(int hash, Object key, Object value, int shift) {
+            if (hash != this.hash) {
+                //哈希值不同，在当前层创建位图节点，把冲突节点作为其中一个分支
+                return new BitmapNode(bit(this.hash, shift), new Object[]{null, this}).put(hash, key, value, shift);
+            }
+            int i = indexOf(key);
+            Object[] newArray;
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                newArray = array.clone();
+            } else {
+                i = array.length;
+                newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, array.length);
+                newArray[i] = key;
+            }
+            newArray[i + 1] = value;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        Node remove(int hash, Object key, int shift) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, newArray.length - i);
+            return new CollisionNode(hash, newArray);
+        }
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.config
+     * @Author: wyh
+     * @Date: 2024-06-11 9:40
+     * @Description: （内部类）深度优先遍历所有键值对的迭代器（树的深度最多为7层位图节点 + 1层冲突节点）
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+        //从根节点到当前节点的路径上各节点的数组
+        private final Object[][] arrays = new Object[8][];
+        //路径上各节点下一个要访问的位置
+        private final int[] positions = new int[8];
+        //路径的长度
+        private int depth;
+        //下一个要返回的键值对
+        private Entry<K, V> next;
+
+        private EntryIterator(Node root) {
+            arrays[0] = root.array;
+            depth = 1;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth > 0) {
+                Object[] array = arrays[depth - 1];
+                int position = positions[depth - 1];
+                if (position >= array.length) {
+                    depth--;
+                    continue;
+                }
+                positions[depth - 1] = position + 2;
+                if (array[position] == null) {
+                    arrays[depth] = ((Node) array[position + 1]).array;
+                    positions[depth] = 0;
+                    depth++;
+                } else {
+                    next = new SimpleImmutableEntry<>((K) array[position], (V) array[position + 1]);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            Entry<K, V> result = next;
+            if (result == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return result;
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package org.wyh.gateway.common.config;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.wyh.gateway.common.config.filter.CompiledFilterConfigs;
+import org.wyh.gateway.common.config.filter.FilterChain;
+import org.wyh.gateway.common.config.filter.FilterConfigRegistry;
 
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -34,6 +40,14 @@ public class Rule implements Comparable<Rule>, Serializable{
     private Integer order;
     //规则的过滤器配置集合（其实就是在定义一条过滤器链）。
     private Set<FilterConfig> filterConfigs = new HashSet<>();
+    //编译后的过滤器配置（类型化的配置对象），在规则加载时由FilterConfigRegistry生成，不参与序列化
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile CompiledFilterConfigs compiledFilterConfigs;
+    //按执行顺序排好序的过滤器链，第一次使用时构建，过滤器配置集合被修改时失效，不参与序列化
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile FilterChain filterChain;
     /**
      * @date: 2024-01-11 14:04
      * @description: 无参构造器
@@ -92,8 +106,56 @@ public class Rule implements Comparable<Rule>, Serializable{
      * @return: boolean
      */
     public boolean addFilterConfig(FilterConfig filterConfig){
+        compiledFilterConfigs = null;
+        filterChain = null;
         return filterConfigs.add(filterConfig);
     }
+    /**
+     * @date: 2024-06-01 10:00
+     * @description: 设置过滤器配置集合（已编译的过滤器配置和过滤器链随之失效）
+     * @Param filterConfigs:
+     * @return: void
+     */
+    public void setFilterConfigs(Set<FilterConfig> filterConfigs) {
+        this.compiledFilterConfigs = null;
+        this.filterChain = null;
+        this.filterConfigs = filterConfigs;
+    }
+    /**
+     * @date: 2024-06-01 10:05
+     * @description: 缓存编译后的过滤器配置（由FilterConfigRegistry在规则加载时调用）
+     * @Param compiledFilterConfigs:
+     * @return: void
+     */
+    public void cacheCompiledFilterConfigs(CompiledFilterConfigs compiledFilterConfigs) {
+        this.compiledFilterConfigs = compiledFilterConfigs;
+    }
+    /**
+     * @date: 2024-06-01 10:10
+     * @description: 获取编译后的过滤器配置。规则在加载时已经编译过，这里通常只是一次字段读取；
+                     只有规则未经加载流程（例如直接创建的对象）或解析器注册表发生变化时，才会在这里重新编译。
+     * @return: org.wyh.gateway.common.config.filter.CompiledFilterConfigs
+     */
+    public CompiledFilterConfigs compiledFilterConfigs() {
+        CompiledFilterConfigs result = compiledFilterConfigs;
+        FilterConfigRegistry registry = FilterConfigRegistry.getInstance();
+        if (result == null || result.getRegistryVersion() != registry.getVersion()) {
+            result = registry.compile(this);
+            compiledFilterConfigs = result;
+        }
+        return result;
+    }
+    /**
+     * @date: 2024-06-01 10:15
+     * @description: 根据filterId获取类型化的过滤器配置（不需要在请求路径上解析json）。
+                     该规则没有配置该过滤器，或该过滤器没有注册解析器时，返回null。
+     * @Param filterId:
+     * @return: T
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getParsedFilterConfig(String filterId) {
+        return (T) compiledFilterConfigs().get(filterId);
+    }
     /**
      * @date: 2024-01-11 14:40
      * @description: 根据filterId获取相应的过滤器的配置信息
@@ -101,12 +163,7 @@ public class Rule implements Comparable<Rule>, Serializable{
      * @return: org.wyh.common.config.Rule.FilterConfig
      */
     public FilterConfig getFilterConfig(String filterId){
-        for(FilterConfig filterConfig : filterConfigs){
-            if(filterConfig.getFilterId().equalsIgnoreCase(filterId)){
-                return filterConfig;
-            }
-        }
-        return null;
+        return filterChain().get(filterId);
     }
     /**
      * @date: 2024-01-11 14:53
@@ -115,12 +172,95 @@ public class Rule implements Comparable<Rule>, Serializable{
      * @return: boolean
      */
     public boolean checkFilterExist(String filterId){
+        return filterChain().contains(filterId);
+    }
+    /**
+     * @date: 2024-06-02 10:20
+     * @description: 获取按执行顺序排好序的过滤器链。过滤器链在第一次调用时构建并缓存在规则上，
+                     之后只有过滤器配置集合被修改（setFilterConfigs/addFilterConfig）时才会重新构建。
+     * @return: org.wyh.gateway.common.config.filter.FilterChain
+     */
+    public FilterChain filterChain() {
+        FilterChain result = filterChain;
+        if (result == null) {
+            result = FilterChain.of(filterConfigs);
+            filterChain = result;
+        }
+        return result;
+    }
+
+    /**
+     * @date: 2024-05-30 9:10
+     * @description: 计算规则内容的64位哈希值（不包括lastModifiedTime），用于在重新加载规则时快速排除内容发生了变化的规则。
+                     哈希值相同不代表内容相同，还需要用contentEquals确认。
+                     过滤器配置集合是无序的，因此各个过滤器配置的哈希值以与顺序无关的方式（求和）合并。
+     * @return: long
+     */
+    public long contentHash() {
+        long hash = 0x9E3779B97F4A7C15L;
+        hash = mix(hash, ruleId);
+        hash = mix(hash, name);
+        hash = mix(hash, protocol);
+        hash = mix(hash, order == null ? null : order.toString());
+        long filterHash = 0;
+        if (filterConfigs != null) {
+            for (FilterConfig filterConfig : filterConfigs) {
+                filterHash += mix(mix(0xC2B2AE3D27D4EB4FL, filterConfig.getFilterId()), filterConfig.getConfig());
+            }
+        }
+        return mix(hash, Long.toString(filterHash));
+    }
+    /**
+     * @date: 2024-05-30 9:12
+     * @description: 逐个字段比较两个规则的内容是否相同（不包括lastModifiedTime）。
+                     过滤器配置集合按filterId对应，并比较各个过滤器的配置。
+     * @Param other:
+     * @return: boolean
+     */
+    public boolean contentEquals(Rule other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || !Objects.equals(ruleId, other.ruleId) || !Objects.equals(name, other.name)
+                || !Objects.equals(protocol, other.protocol) || !Objects.equals(order, other.order)) {
+            return false;
+        }
+        int size = filterConfigs == null ? 0 : filterConfigs.size();
+        int otherSize = other.filterConfigs == null ? 0 : other.filterConfigs.size();
+        if (size != otherSize) {
+            return false;
+        }
+        if (size == 0) {
+            return true;
+        }
+        Map<String, String> otherConfigMap = new HashMap<>(otherSize * 2);
+        for (FilterConfig filterConfig : other.filterConfigs) {
+            otherConfigMap.put(filterConfig.getFilterId(), filterConfig.getConfig());
+        }
         for (FilterConfig filterConfig : filterConfigs) {
-            if(filterConfig.getFilterId().equalsIgnoreCase(filterId)){
-                return true;
+            if (!otherConfigMap.containsKey(filterConfig.getFilterId())
+                    || !Objects.equals(filterConfig.getConfig(), otherConfigMap.get(filterConfig.getFilterId()))) {
+                return false;
             }
         }
-        return false;
+        return true;
+    }
+    /**
+     * @date: 2024-05-30 9:15
+     * @description: 将字符串合并到哈希值中（FNV-1a，null与空串区分开）
+     * @Param hash:
+     * @Param value:
+     * @return: long
+     */
+    private static long mix(long hash, String value) {
+        if (value == null) {
+            return (hash ^ 0xFF) * 0x100000001B3L;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        //字段之间的分隔
+        return (hash ^ 0x1F) * 0x100000001B3L;
     }
 
     @Override
@@ -0,0 +1,124 @@
+package org.wyh.gateway.common.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-05-17 9:15
+ * @Description: 规则索引类，是配置快照的一部分（不可变）。
+                 包含两个索引：方法调用路径 -> 规则列表（pathRuleMap），服务id -> 规则列表（serviceRuleMap）。
+                 规则列表已经按照Rule.compareTo定义的优先级排好序，因此请求路径上只需查找一次map即可拿到规则。
+                 只有当服务定义或规则发生变更时，才会重新构建该索引。
+ */
+public final class RuleIndex {
+    //空索引
+    static final RuleIndex EMPTY = new RuleIndex(Collections.emptyMap(), Collections.emptyMap());
+    //方法调用路径与规则列表的映射。key为ServiceDefinition.invokerMap中的路径
+    private final Map<String, List<Rule>> pathRuleMap;
+    //服务与规则列表的映射。key为serviceId，value为该服务所有方法调用绑定的规则
+    private final Map<String, List<Rule>> serviceRuleMap;
+    /**
+     * @date: 2024-05-17 9:20
+     * @description: 有参构造器
+     * @Param pathRuleMap:
+     * @Param serviceRuleMap:
+     * @return: null
+     */
+    private RuleIndex(Map<String, List<Rule>> pathRuleMap, Map<String, List<Rule>> serviceRuleMap) {
+        this.pathRuleMap = pathRuleMap;
+        this.serviceRuleMap = serviceRuleMap;
+    }
+    /**
+     * @date: 2024-05-17 9:25
+     * @description: 根据服务定义集合和规则集合构建规则索引。
+                     方法调用绑定的ruleId在规则集合中不存在时，该方法调用会被跳过。
+     * @Param serviceDefinitionMap:
+     * @Param ruleMap:
+     * @return: org.wyh.gateway.common.config.RuleIndex
+     */
+    static RuleIndex build(Map<String, ServiceDefinition> serviceDefinitionMap, Map<String, Rule> ruleMap) {
+        if (serviceDefinitionMap.isEmpty() || ruleMap.isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, List<Rule>> pathRuleMap = new HashMap<>();
+        Map<String, List<Rule>> serviceRuleMap = new HashMap<>();
+        for (ServiceDefinition serviceDefinition : serviceDefinitionMap.values()) {
+            Map<String, ServiceInvoker> invokerMap = serviceDefinition.getInvokerMap();
+            if (invokerMap == null) {
+                continue;
+            }
+            for (Map.Entry<String, ServiceInvoker> entry : invokerMap.entrySet()) {
+                String ruleId = entry.getValue().getRuleId();
+                Rule rule = ruleId == null ? null : ruleMap.get(ruleId);
+                if (rule == null) {
+                    continue;
+                }
+                addRule(pathRuleMap, entry.getKey(), rule);
+                addRule(serviceRuleMap, serviceDefinition.getServiceId(), rule);
+            }
+        }
+        return new RuleIndex(sortAndFreeze(pathRuleMap), sortAndFreeze(serviceRuleMap));
+    }
+    /**
+     * @date: 2024-05-17 9:32
+     * @description: 将规则加入key对应的规则列表中（同一规则只保存一次）
+     * @Param map:
+     * @Param key:
+     * @Param rule:
+     * @return: void
+     */
+    private static void addRule(Map<String, List<Rule>> map, String key, Rule rule) {
+        List<Rule> rules = map.computeIfAbsent(key, k -> new ArrayList<>(2));
+        if (!rules.contains(rule)) {
+            rules.add(rule);
+        }
+    }
+    /**
+     * @date: 2024-05-17 9:35
+     * @description: 将每个规则列表按照优先级排序，并转换为只读列表
+     * @Param map:
+     * @return: java.util.Map<java.lang.String, java.util.List<org.wyh.gateway.common.config.Rule>>
+     */
+    private static Map<String, List<Rule>> sortAndFreeze(Map<String, List<Rule>> map) {
+        for (Map.Entry<String, List<Rule>> entry : map.entrySet()) {
+            List<Rule> rules = entry.getValue();
+            Collections.sort(rules);
+            entry.setValue(Collections.unmodifiableList(rules));
+        }
+        return Collections.unmodifiableMap(map);
+    }
+    /**
+     * @date: 2024-05-17 9:40
+     * @description: 根据方法调用路径获取规则列表（按优先级排序）。若不存在，则返回空列表。
+     * @Param path:
+     * @return: java.util.List<org.wyh.gateway.common.config.Rule>
+     */
+    public List<Rule> getRulesByPath(String path) {
+        List<Rule> rules = pathRuleMap.get(path);
+        return rules == null ? Collections.emptyList() : rules;
+    }
+    /**
+     * @date: 2024-05-17 9:42
+     * @description: 根据服务id获取规则列表（按优先级排序）。若不存在，则返回空列表。
+     * @Param serviceId:
+     * @return: java.util.List<org.wyh.gateway.common.config.Rule>
+     */
+    public List<Rule> getRulesByServiceId(String serviceId) {
+        List<Rule> rules = serviceRuleMap.get(serviceId);
+        return rules == null ? Collections.emptyList() : rules;
+    }
+
+    public Map<String, List<Rule>> getPathRuleMap() {
+        return pathRuleMap;
+    }
+
+    public Map<String, List<Rule>> getServiceRuleMap() {
+        return serviceRuleMap;
+    }
+}
@@ -74,6 +74,50 @@ public class ServiceDefinition implements Serializable {
         this.desc = desc;
         this.invokerMap = invokerMap;
     }
+    /**
+     * @date: 2024-06-10 10:20
+     * @description: 逐个字段比较两个服务定义的内容是否相同（包括方法调用集合中每个方法调用的各个字段）。
+                     注册中心每次推送都会解析出新的服务定义对象，内容相同时应当沿用原有对象，避免触发下游的重建。
+     * @Param other:
+     * @return: boolean
+     */
+    public boolean contentEquals(ServiceDefinition other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || enable != other.enable || !Objects.equals(uniqueId, other.uniqueId)
+                || !Objects.equals(serviceId, other.serviceId) || !Objects.equals(version, other.version)
+                || !Objects.equals(protocol, other.protocol) || !Objects.equals(patternPath, other.patternPath)
+                || !Objects.equals(envType, other.envType) || !Objects.equals(desc, other.desc)) {
+            return false;
+        }
+        int size = invokerMap == null ? 0 : invokerMap.size();
+        int otherSize = other.invokerMap == null ? 0 : other.invokerMap.size();
+        if (size != otherSize) {
+            return false;
+        }
+        if (size == 0) {
+            return true;
+        }
+        for (Map.Entry<String, ServiceInvoker> entry : invokerMap.entrySet()) {
+            if (!invokerEquals(entry.getValue(), other.invokerMap.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean invokerEquals(ServiceInvoker invoker, ServiceInvoker other) {
+        if (invoker == other) {
+            return true;
+        }
+        return invoker != null && other != null && invoker.getClass() == other.getClass()
+                && invoker.getTimeout() == other.getTimeout()
+                && Objects.equals(invoker.getInvokerPath(), other.getInvokerPath())
+                && Objects.equals(invoker.getRuleId(), other.getRuleId())
+                && Objects.equals(invoker.getDesc(), other.getDesc());
+    }
+
     @Override
     public boolean equals(Object o) {
         if(this == o){
@@ -0,0 +1,69 @@
+package org.wyh.gateway.common.config;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-05-31 9:10
+ * @Description: 服务条目类（不可变），是服务版本索引中某一服务的某一版本对应的服务定义和服务实例视图。
+                 服务定义或服务实例视图可能只存在其中一个（例如服务实例先于服务定义到达）。
+ */
+public final class ServiceEntry {
+    //服务定义的唯一id（serviceId:version）
+    private final String uniqueId;
+    //服务id
+    private final String serviceId;
+    //服务版本
+    private final String version;
+    //服务定义，可能为null
+    private final ServiceDefinition serviceDefinition;
+    //服务实例视图，不存在时为空视图
+    private final ServiceInstanceView serviceInstanceView;
+    /**
+     * @date: 2024-05-31 9:12
+     * @description: 有参构造器
+     * @Param uniqueId:
+     * @Param serviceId:
+     * @Param version:
+     * @Param serviceDefinition:
+     * @Param serviceInstanceView:
+     * @return: null
+     */
+    ServiceEntry(String uniqueId, String serviceId, String version,
+                 ServiceDefinition serviceDefinition, ServiceInstanceView serviceInstanceView) {
+        this.uniqueId = uniqueId;
+        this.serviceId = serviceId;
+        this.version = version;
+        this.serviceDefinition = serviceDefinition;
+        this.serviceInstanceView = serviceInstanceView == null ? ServiceInstanceView.EMPTY : serviceInstanceView;
+    }
+
+    public String getUniqueId() {
+        return uniqueId;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public ServiceDefinition getServiceDefinition() {
+        return serviceDefinition;
+    }
+
+    public ServiceInstanceView getServiceInstanceView() {
+        return serviceInstanceView;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceEntry{" +
+                "uniqueId='" + uniqueId + '\'' +
+                ", definition=" + (serviceDefinition != null) +
+                ", instanceView=" + serviceInstanceView +
+                '}';
+    }
+}
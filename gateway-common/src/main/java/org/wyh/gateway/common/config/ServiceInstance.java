@@ -1,5 +1,6 @@
 package org.wyh.gateway.common.config;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -25,8 +26,12 @@ public class ServiceInstance implements Serializable {
     protected String ip;
     //服务实例port
     protected int port;
-    //标签信息
+    //标签信息，格式为“key1=value1,key2=value2”
     protected String tags;
+    //解析后的标签集合，在设置tags时解析（只解析一次），不参与序列化
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected transient InstanceTags parsedTags = InstanceTags.EMPTY;
     //权重信息（负载均衡时要用到）
     protected Integer weight;
     //服务实例的预热时间，单位为ms，默认为3分钟（负载均衡时要用到）
@@ -47,6 +52,59 @@ public class ServiceInstance implements Serializable {
     public ServiceInstance(){
         super();
     }
+    /**
+     * @date: 2024-05-26 11:00
+     * @description: 设置服务实例所属的服务定义的唯一id（intern处理，同一服务的大量服务实例共享同一个字符串）
+     * @Param uniqueId:
+     * @return: void
+     */
+    public void setUniqueId(String uniqueId) {
+        this.uniqueId = uniqueId == null ? null : uniqueId.intern();
+    }
+    /**
+     * @date: 2024-05-26 11:02
+     * @description: 设置服务实例的版本号（intern处理）
+     * @Param version:
+     * @return: void
+     */
+    public void setVersion(String version) {
+        this.version = version == null ? null : version.intern();
+    }
+    /**
+     * @date: 2024-05-24 10:00
+     * @description: 设置标签信息，同时解析出标签集合
+     * @Param tags:
+     * @return: void
+     */
+    public void setTags(String tags) {
+        this.tags = tags == null ? null : tags.intern();
+        this.parsedTags = InstanceTags.parse(tags);
+    }
+    /**
+     * @date: 2024-05-26 10:50
+     * @description: 设置标签信息及其已经解析好的标签集合（紧凑存储表创建对象时使用，相同的标签只解析一次）
+     * @Param tags:
+     * @Param parsedTags:
+     * @return: void
+     */
+    void setTags(String tags, InstanceTags parsedTags) {
+        this.tags = tags;
+        this.parsedTags = parsedTags;
+    }
+    /**
+     * @date: 2024-05-24 10:02
+     * @description: 获取解析后的标签集合（没有采用getter的命名，以免被序列化）
+     * @return: org.wyh.gateway.common.config.InstanceTags
+     */
+    public InstanceTags parsedTags() {
+        InstanceTags result = parsedTags;
+        //Java原生反序列化不会调用setter，此时需要补充解析
+        if (result == null) {
+            result = InstanceTags.parse(tags);
+            parsedTags = result;
+        }
+        return result;
+    }
     /**
      * @date: 2024-01-22 14:26
      * @description: 获取服务实例的地址（即ip:port）
@@ -0,0 +1,400 @@
+package org.wyh.gateway.common.config;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-05-14 9:30
+ * @Description: 服务实例视图类，是某一服务（uniqueId）对应的服务实例集合的只读快照。
+                 视图内部以紧凑存储表（CompactInstanceTable）保存全部服务实例，表中只有基本类型的列，不保留ServiceInstance对象。
+                 参与路由的对象（按照灰度/正常划分并剔除了被禁用的服务实例的数组，以及标签索引）在视图创建时（写线程上）就构建好，
+                 视图发布之后，请求路径（包括事件循环线程）上的读操作都不会创建对象，也不需要加锁。
+                 按serviceInstanceId的查找通过紧凑存储表的索引完成，不需要为每个服务实例分配HashMap/HashSet节点。
+                 视图本身不可变，增删改操作会返回一个新的视图，所以写操作可以和读请求并发执行。
+                 单个服务实例的增删改是增量完成的：紧凑存储表只复制各列数组并修改一行，已经创建的参与路由的对象会被新视图沿用，
+                 只为发生变化的服务实例创建新对象。由于视图不可变，复制数组的开销仍与服务实例数成正比（O(n)的内存复制，
+                 不会逐个处理服务实例的属性），这是换取读路径上无锁、按数组下标访问的代价；
+                 标签索引只在对应的灰度/正常服务实例数组发生变化时才重新构建。
+ */
+public final class ServiceInstanceView {
+    //空的服务实例数组
+    private static final ServiceInstance[] EMPTY_INSTANCES = new ServiceInstance[0];
+    //空视图，当uniqueId没有对应的服务实例时返回该对象
+    public static final ServiceInstanceView EMPTY = new ServiceInstanceView(null, CompactInstanceTable.EMPTY);
+    //服务实例所属的服务定义的唯一id
+    private final String uniqueId;
+    //全部服务实例（包括被禁用的服务实例）的紧凑存储表，供写操作在此基础上构建新的视图
+    private final CompactInstanceTable table;
+    //参与路由的服务实例对象，在视图创建时构建
+    private final Routing routing;
+    /**
+     * @date: 2024-05-14 9:36
+     * @description: 有参构造器，根据服务实例的紧凑存储表构建视图
+     * @Param uniqueId:
+     * @Param table:
+     * @return: null
+     */
+    private ServiceInstanceView(String uniqueId, CompactInstanceTable table) {
+        this.uniqueId = uniqueId;
+        this.table = table;
+        this.routing = new Routing();
+    }
+    /**
+     * @date: 2024-05-26 10:34
+     * @description: 有参构造器，在原视图的参与路由的对象的基础上增量构建
+     * @Param uniqueId:
+     * @Param table: 修改后的紧凑存储表
+     * @Param source: 原视图的参与路由的对象
+     * @Param row: 发生变化的行（在原表中的下标，添加时为原表的行数）
+     * @Param removed: 该行是否被删除
+     * @return: null
+     */
+    private ServiceInstanceView(String uniqueId, CompactInstanceTable table, Routing source, int row, boolean removed) {
+        this.uniqueId = uniqueId;
+        this.table = table;
+        this.routing = new Routing(source, row, removed);
+    }
+    /**
+     * @date: 2024-05-14 9:40
+     * @description: 根据服务实例集合构建视图。集合为空时返回空视图。
+     * @Param uniqueId:
+     * @Param serviceInstances:
+     * @return: org.wyh.gateway.common.config.ServiceInstanceView
+     */
+    public static ServiceInstanceView of(String uniqueId, Collection<ServiceInstance> serviceInstances) {
+        if (serviceInstances == null || serviceInstances.isEmpty()) {
+            return EMPTY;
+        }
+        CompactInstanceTable table = CompactInstanceTable.of(uniqueId, serviceInstances);
+        return table.size() == 0 ? EMPTY : new ServiceInstanceView(uniqueId, table);
+    }
+    /**
+     * @date: 2024-05-16 9:20
+     * @description: 添加或替换单个服务实例（以serviceInstanceId判断是否为同一实例），返回新的视图，当前视图保持不变
+     * @Param uniqueId:
+     * @Param serviceInstance:
+     * @return: org.wyh.gateway.common.config.ServiceInstanceView
+     */
+    public ServiceInstanceView withInstance(String uniqueId, ServiceInstance serviceInstance) {
+        if (table.size() == 0) {
+            return of(uniqueId, Collections.singletonList(serviceInstance));
+        }
+        int index = table.indexOf(serviceInstance.getServiceInstanceId());
+        return new ServiceInstanceView(uniqueId, table.with(serviceInstance), routing,
+                index < 0 ? table.size() : index, false);
+    }
+    /**
+     * @date: 2024-05-16 9:24
+     * @description: 移除单个服务实例，返回新的视图。若该实例不存在，则直接返回当前视图。
+     * @Param serviceInstanceId:
+     * @return: org.wyh.gateway.common.config.ServiceInstanceView
+     */
+    public ServiceInstanceView withoutInstance(String serviceInstanceId) {
+        int index = table.indexOf(serviceInstanceId);
+        if (index < 0) {
+            return this;
+        }
+        if (table.size() == 1) {
+            return EMPTY;
+        }
+        return new ServiceInstanceView(uniqueId, table.without(index), routing, index, true);
+    }
+
+    /**
+     * @date: 2024-05-16 9:26
+     * @description: 判断两个视图包含的服务实例是否相同（serviceInstanceId以及全部属性都相同，与顺序无关）。
+                     注册中心重复推送相同的服务实例集合时，新旧视图虽然不是同一个对象，但内容相同。
+     * @Param other:
+     * @return: boolean
+     */
+    public boolean contentEquals(ServiceInstanceView other) {
+        return this == other || (other != null && table.contentEquals(other.table));
+    }
+
+    public CompactInstanceTable getTable() {
+        return table;
+    }
+
+    public String getUniqueId() {
+        return uniqueId;
+    }
+    /**
+     * @date: 2024-05-15 10:02
+     * @description: 获取全部服务实例（包括被禁用的服务实例）的只读集合。
+                     已启用的服务实例直接返回参与路由的对象，只有被禁用的服务实例在访问时才根据紧凑存储表创建。
+     * @return: java.util.Collection<org.wyh.gateway.common.config.ServiceInstance>
+     */
+    public Collection<ServiceInstance> getAllInstances() {
+        return new AbstractList<>() {
+            @Override
+            public ServiceInstance get(int index) {
+                return routing.getRow(index);
+            }
+
+            @Override
+            public int size() {
+                return table.size();
+            }
+        };
+    }
+    /**
+     * @date: 2024-05-16 9:28
+     * @description: 根据serviceInstanceId获取服务实例（包括被禁用的服务实例）。
+                     已启用的服务实例直接返回参与路由的对象，不会创建新对象。
+     * @Param serviceInstanceId:
+     * @return: org.wyh.gateway.common.config.ServiceInstance
+     */
+    public ServiceInstance getInstance(String serviceInstanceId) {
+        int index = table.indexOf(serviceInstanceId);
+        return index < 0 ? null : routing.getRow(index);
+    }
+    /**
+     * @date: 2024-05-16 9:29
+     * @description: 判断视图中是否包含serviceInstanceId对应的服务实例（包括被禁用的服务实例），不会创建对象
+     * @Param serviceInstanceId:
+     * @return: boolean
+     */
+    public boolean contains(String serviceInstanceId) {
+        return table.indexOf(serviceInstanceId) >= 0;
+    }
+    /**
+     * @date: 2024-05-16 9:29
+     * @description: 获取服务实例的总数（包括被禁用的服务实例）
+     * @return: int
+     */
+    public int size() {
+        return table.size();
+    }
+    /**
+     * @date: 2024-05-16 9:30
+     * @description: 获取已启用的服务实例数（包括灰度和正常服务实例），不会创建对象
+     * @return: int
+     */
+    public int getEnabledCount() {
+        return table.getEnabledCount(true) + table.getEnabledCount(false);
+    }
+    /**
+     * @date: 2024-05-14 9:45
+     * @description: 获取灰度或正常服务实例数组。注意：返回的是内部数组，调用方不能修改它。
+     * @Param gray: 标识是否要获取灰度服务实例
+     * @return: org.wyh.gateway.common.config.ServiceInstance[]
+     */
+    public ServiceInstance[] getInstances(boolean gray) {
+        return gray ? routing.grayInstances : routing.normalInstances;
+    }
+    /**
+     * @date: 2024-05-14 9:46
+     * @description: 获取灰度或正常服务实例的只读集合
+     * @Param gray: 标识是否要获取灰度服务实例
+     * @return: java.util.Set<org.wyh.gateway.common.config.ServiceInstance>
+     */
+    public Set<ServiceInstance> getInstanceSet(boolean gray) {
+        return gray ? routing.graySet : routing.normalSet;
+    }
+    /**
+     * @date: 2024-05-24 10:10
+     * @description: 获取灰度或正常服务实例的标签索引，位图下标与getInstances(gray)返回的数组下标一致
+     * @Param gray: 标识是否要获取灰度服务实例的标签索引
+     * @return: org.wyh.gateway.common.config.TagIndex
+     */
+    public TagIndex getTagIndex(boolean gray) {
+        return gray ? routing.grayTagIndex : routing.normalTagIndex;
+    }
+    /**
+     * @date: 2024-05-14 9:47
+     * @description: 判断视图中是否没有任何可用的服务实例
+     * @return: boolean
+     */
+    public boolean isEmpty() {
+        return table.getEnabledCount(true) == 0 && table.getEnabledCount(false) == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceInstanceView{" +
+                "uniqueId='" + uniqueId + '\'' +
+                ", gray=" + table.getEnabledCount(true) +
+                ", normal=" + table.getEnabledCount(false) +
+                '}';
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.config
+     * @Author: wyh
+     * @Date: 2024-05-26 10:38
+     * @Description: （内部类）参与路由的服务实例对象：按照灰度/正常划分并剔除了被禁用的服务实例的数组，
+                     以及基于数组的只读集合和标签索引。
+                     rows与紧凑存储表的各行一一对应（被禁用的服务实例为null），用于在增量更新时沿用已经创建的对象。
+     */
+    private final class Routing {
+        //紧凑存储表每一行对应的服务实例对象，被禁用的服务实例为null
+        private final ServiceInstance[] rows;
+        //已启用的灰度服务实例数组
+        private final ServiceInstance[] grayInstances;
+        //已启用的正常（非灰度）服务实例数组
+        private final ServiceInstance[] normalInstances;
+        //灰度服务实例数组对应的只读集合（直接基于数组实现，不会复制）
+        private final Set<ServiceInstance> graySet;
+        //正常服务实例数组对应的只读集合（直接基于数组实现，不会复制）
+        private final Set<ServiceInstance> normalSet;
+        //灰度服务实例的标签索引
+        private final TagIndex grayTagIndex;
+        //正常服务实例的标签索引
+        private final TagIndex normalTagIndex;
+
+        private Routing() {
+            this.rows = new ServiceInstance[table.size()];
+            //标签已经intern，按引用缓存解析结果，相同的标签只解析一次
+            Map<String, InstanceTags> tagsCache = new IdentityHashMap<>();
+            for (int i = 0; i < rows.length; i++) {
+                //被禁用的服务实例不参与路由
+                if (table.isEnable(i)) {
+                    rows[i] = table.get(i, tagsCache);
+                }
+            }
+            this.grayInstances = split(rows, true);
+            this.normalInstances = split(rows, false);
+            this.graySet = new InstanceArraySet(grayInstances, true);
+            this.normalSet = new InstanceArraySet(normalInstances, false);
+            this.grayTagIndex = TagIndex.build(grayInstances);
+            this.normalTagIndex = TagIndex.build(normalInstances);
+        }
+        /**
+         * @date: 2024-05-26 10:39
+         * @description: 在原视图的基础上增量构建：沿用其他行已经创建的对象，只为发生变化的行创建新对象；
+                         灰度或正常服务实例数组没有变化时，直接沿用原来的数组和标签索引
+         * @Param source: 原视图的参与路由的对象
+         * @Param row: 发生变化的行（在原表中的下标，添加时为原表的行数）
+         * @Param removed: 该行是否被删除
+         * @return: null
+         */
+        private Routing(Routing source, int row, boolean removed) {
+            int length = table.size();
+            if (removed) {
+                this.rows = new ServiceInstance[length];
+                System.arraycopy(source.rows, 0, rows, 0, row);
+                System.arraycopy(source.rows, row + 1, rows, row, length - row);
+            } else {
+                this.rows = Arrays.copyOf(source.rows, length);
+                rows[row] = table.isEnable(row) ? table.get(row) : null;
+            }
+            ServiceInstance[] gray = split(rows, true);
+            ServiceInstance[] normal = split(rows, false);
+            boolean sameGray = sameInstances(gray, source.grayInstances);
+            boolean sameNormal = sameInstances(normal, source.normalInstances);
+            this.grayInstances = sameGray ? source.grayInstances : gray;
+            this.normalInstances = sameNormal ? source.normalInstances : normal;
+            this.graySet = new InstanceArraySet(grayInstances, true);
+            this.normalSet = new InstanceArraySet(normalInstances, false);
+            this.grayTagIndex = sameGray ? source.grayTagIndex : TagIndex.build(grayInstances);
+            this.normalTagIndex = sameNormal ? source.normalTagIndex : TagIndex.build(normalInstances);
+        }
+        /**
+         * @date: 2024-06-12 9:20
+         * @description: 获取第i行对应的服务实例：已启用的服务实例直接返回已经创建的对象，被禁用的服务实例根据紧凑存储表创建
+         * @Param i:
+         * @return: org.wyh.gateway.common.config.ServiceInstance
+         */
+        private ServiceInstance getRow(int i) {
+            ServiceInstance instance = rows[i];
+            return instance != null ? instance : table.get(i);
+        }
+        /**
+         * @date: 2024-05-26 10:39
+         * @description: 从各行的对象中取出已启用的灰度或正常服务实例（保持行的顺序）
+         * @Param rows:
+         * @Param gray:
+         * @return: org.wyh.gateway.common.config.ServiceInstance[]
+         */
+        private ServiceInstance[] split(ServiceInstance[] rows, boolean gray) {
+            ServiceInstance[] result = newArray(table.getEnabledCount(gray));
+            int n = 0;
+            for (int i = 0; i < rows.length && n < result.length; i++) {
+                if (rows[i] != null && table.isGray(i) == gray) {
+                    result[n++] = rows[i];
+                }
+            }
+            return result;
+        }
+
+    }
+
+    private static boolean sameInstances(ServiceInstance[] a, ServiceInstance[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ServiceInstance[] newArray(int length) {
+        return length == 0 ? EMPTY_INSTANCES : new ServiceInstance[length];
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.config
+     * @Author: wyh
+     * @Date: 2024-05-26 10:40
+     * @Description: （内部类）基于服务实例数组的只读集合，contains通过紧凑存储表的索引完成，不需要额外的HashSet节点
+     */
+    private final class InstanceArraySet extends AbstractSet<ServiceInstance> {
+        //服务实例数组
+        private final ServiceInstance[] instances;
+        //该集合是否为灰度服务实例集合
+        private final boolean gray;
+
+        private InstanceArraySet(ServiceInstance[] instances, boolean gray) {
+            this.instances = instances;
+            this.gray = gray;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof ServiceInstance)) {
+                return false;
+            }
+            int index = table.indexOf(((ServiceInstance) o).getServiceInstanceId());
+            return index >= 0 && table.isEnable(index) && table.isGray(index) == gray;
+        }
+
+        @Override
+        public Iterator<ServiceInstance> iterator() {
+            return new Iterator<>() {
+                private int cursor = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return cursor < instances.length;
+                }
+
+                @Override
+                public ServiceInstance next() {
+                    if (cursor >= instances.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return instances[cursor++];
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return instances.length;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.wyh.gateway.common.config;
+
+import org.wyh.gateway.common.constant.BasicConst;
+import org.wyh.gateway.common.constant.GatewayConst;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-05-31 9:20
+ * @Description: 服务版本索引类，是配置快照的一部分（不可变）。
+                 以两级结构组织服务：serviceId -> version -> 服务条目（服务定义 + 服务实例视图），
+                 并为每个服务预先确定默认版本（GatewayConst.DEFAULT_VERSION）对应的条目。
+                 因此按版本路由或回退到默认版本时，只需两次map查找，不需要拼接“serviceId:version”字符串。
+                 服务定义或服务实例发生变更时，只会重建受影响的serviceId对应的条目，其余条目直接沿用。
+ */
+public final class ServiceVersionIndex {
+    //空索引
+    static final ServiceVersionIndex EMPTY = new ServiceVersionIndex(PersistentMap.empty(), PersistentMap.empty());
+    //serviceId -> 该服务的所有版本（持久化map，增量更新时与上一个索引共享其余节点）
+    private final PersistentMap<String, ServiceVersions> serviceMap;
+    //uniqueId -> 服务条目，用于在增量更新时找到旧条目（持久化map）
+    private final PersistentMap<String, ServiceEntry> entryMap;
+    /**
+     * @date: 2024-05-31 9:25
+     * @description: 有参构造器
+     * @Param serviceMap:
+     * @Param entryMap:
+     * @return: null
+     */
+    private ServiceVersionIndex(PersistentMap<String, ServiceVersions> serviceMap,
+                                PersistentMap<String, ServiceEntry> entryMap) {
+        this.serviceMap = serviceMap;
+        this.entryMap = entryMap;
+    }
+    /**
+     * @date: 2024-05-31 9:30
+     * @description: 在当前索引的基础上，根据发生变化的uniqueId增量构建新的索引。
+                     只复制受影响的serviceId的版本集合，两个map都是持久化map，不会随服务总数复制整个map。
+     * @Param touchedUniqueIds: 服务定义或服务实例视图发生变化的uniqueId
+     * @Param serviceDefinitionMap: 新快照的服务定义集合
+     * @Param serviceInstanceViewMap: 新快照的服务实例视图集合
+     * @return: org.wyh.gateway.common.config.ServiceVersionIndex
+     */
+    ServiceVersionIndex update(Collection<String> touchedUniqueIds, Map<String, ServiceDefinition> serviceDefinitionMap,
+                               Map<String, ServiceInstanceView> serviceInstanceViewMap) {
+        if (touchedUniqueIds.isEmpty()) {
+            return this;
+        }
+        PersistentMap<String, ServiceEntry> newEntryMap = entryMap;
+        //受影响的serviceId -> 该服务所有版本的可修改副本
+        Map<String, Map<String, ServiceEntry>> touchedServices = new HashMap<>();
+        for (String uniqueId : touchedUniqueIds) {
+            ServiceEntry oldEntry = newEntryMap.get(uniqueId);
+            if (oldEntry != null) {
+                newEntryMap = newEntryMap.minus(uniqueId);
+                versionsOf(touchedServices, oldEntry.getServiceId()).remove(oldEntry.getVersion());
+            }
+            ServiceDefinition definition = serviceDefinitionMap.get(uniqueId);
+            ServiceInstanceView view = serviceInstanceViewMap.get(uniqueId);
+            if (definition == null && view == null) {
+                continue;
+            }
+            ServiceEntry newEntry = newEntry(uniqueId, definition, view);
+            newEntryMap = newEntryMap.plus(uniqueId, newEntry);
+            versionsOf(touchedServices, newEntry.getServiceId()).put(newEntry.getVersion(), newEntry);
+        }
+        PersistentMap<String, ServiceVersions> newServiceMap = serviceMap;
+        for (Map.Entry<String, Map<String, ServiceEntry>> entry : touchedServices.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                newServiceMap = newServiceMap.minus(entry.getKey());
+            } else {
+                newServiceMap = newServiceMap.plus(entry.getKey(), new ServiceVersions(entry.getValue()));
+            }
+        }
+        return new ServiceVersionIndex(newServiceMap, newEntryMap);
+    }
+    /**
+     * @date: 2024-05-31 9:40
+     * @description: 获取某一服务所有版本的可修改副本（每个serviceId只复制一次）
+     * @Param touchedServices:
+     * @Param serviceId:
+     * @return: java.util.Map<java.lang.String, org.wyh.gateway.common.config.ServiceEntry>
+     */
+    private Map<String, ServiceEntry> versionsOf(Map<String, Map<String, ServiceEntry>> touchedServices, String serviceId) {
+        return touchedServices.computeIfAbsent(serviceId, id -> {
+            ServiceVersions versions = serviceMap.get(id);
+            return versions == null ? new HashMap<>() : new HashMap<>(versions.versionMap);
+        });
+    }
+    /**
+     * @date: 2024-05-31 9:45
+     * @description: 创建服务条目。serviceId和version优先取自服务定义，没有服务定义时从uniqueId（serviceId:version）中解析。
+     * @Param uniqueId:
+     * @Param definition:
+     * @Param view:
+     * @return: org.wyh.gateway.common.config.ServiceEntry
+     */
+    private static ServiceEntry newEntry(String uniqueId, ServiceDefinition definition, ServiceInstanceView view) {
+        String serviceId = definition == null ? null : definition.getServiceId();
+        String version = definition == null ? null : definition.getVersion();
+        if (serviceId == null || version == null) {
+            int colon = uniqueId.lastIndexOf(BasicConst.COLON_SEPARATOR);
+            if (serviceId == null) {
+                serviceId = colon < 0 ? uniqueId : uniqueId.substring(0, colon);
+            }
+            if (version == null) {
+                version = colon < 0 ? GatewayConst.DEFAULT_VERSION : uniqueId.substring(colon + 1);
+            }
+        }
+        return new ServiceEntry(uniqueId, serviceId, version, definition, view);
+    }
+    /**
+     * @date: 2024-05-31 9:50
+     * @description: 根据serviceId和version获取服务条目（精确匹配）。不存在时返回null。
+     * @Param serviceId:
+     * @Param version:
+     * @return: org.wyh.gateway.common.config.ServiceEntry
+     */
+    public ServiceEntry getEntry(String serviceId, String version) {
+        ServiceVersions versions = serviceMap.get(serviceId);
+        return versions == null ? null : versions.versionMap.get(version);
+    }
+    /**
+     * @date: 2024-05-31 9:52
+     * @description: 获取服务默认版本（GatewayConst.DEFAULT_VERSION）的服务条目。不存在时返回null。
+     * @Param serviceId:
+     * @return: org.wyh.gateway.common.config.ServiceEntry
+     */
+    public ServiceEntry getDefaultEntry(String serviceId) {
+        ServiceVersions versions = serviceMap.get(serviceId);
+        return versions == null ? null : versions.defaultEntry;
+    }
+    /**
+     * @date: 2024-05-31 9:55
+     * @description: 根据serviceId和version获取服务条目。version为空或该版本不存在时，回退到默认版本。
+     * @Param serviceId:
+     * @Param version:
+     * @return: org.wyh.gateway.common.config.ServiceEntry
+     */
+    public ServiceEntry getEntryOrDefault(String serviceId, String version) {
+        ServiceVersions versions = serviceMap.get(serviceId);
+        if (versions == null) {
+            return null;
+        }
+        if (version == null || version.isEmpty()) {
+            return versions.defaultEntry;
+        }
+        ServiceEntry entry = versions.versionMap.get(version);
+        return entry == null ? versions.defaultEntry : entry;
+    }
+    /**
+     * @date: 2024-05-31 10:00
+     * @description: 获取服务的所有版本（version -> 服务条目）。不存在时返回空map。
+     * @Param serviceId:
+     * @return: java.util.Map<java.lang.String, org.wyh.gateway.common.config.ServiceEntry>
+     */
+    public Map<String, ServiceEntry> getVersions(String serviceId) {
+        ServiceVersions versions = serviceMap.get(serviceId);
+        return versions == null ? Collections.emptyMap() : versions.versionMap;
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.config
+     * @Author: wyh
+     * @Date: 2024-05-31 10:05
+     * @Description: （内部类）某一服务的所有版本，以及预先确定的默认版本条目
+     */
+    private static final class ServiceVersions {
+        //version -> 服务条目（只读）
+        private final Map<String, ServiceEntry> versionMap;
+        //默认版本的服务条目，不存在时为null
+        private final ServiceEntry defaultEntry;
+
+        private ServiceVersions(Map<String, ServiceEntry> versionMap) {
+            this.versionMap = Collections.unmodifiableMap(versionMap);
+            this.defaultEntry = versionMap.get(GatewayConst.DEFAULT_VERSION);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.wyh.gateway.common.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-05-24 9:30
+ * @Description: 服务实例标签的倒排索引（不可变），是服务实例视图的一部分。
+                 对视图中的灰度/正常服务实例数组分别构建：标签（key=value） -> 位图，位图的第i位表示数组中第i个服务实例带有该标签。
+                 因此“zone=a且tier=gold的服务实例”只需对两个位图做按位与，不需要遍历服务实例。
+                 注意：位图的下标与ServiceInstanceView.getInstances(gray)返回的数组下标一致。
+ */
+public final class TagIndex {
+    //空位图
+    private static final long[] EMPTY_BITMAP = new long[0];
+    //空索引
+    static final TagIndex EMPTY = new TagIndex(new ServiceInstance[0], Collections.emptyMap());
+    //被索引的服务实例数组
+    private final ServiceInstance[] instances;
+    //标签key -> 标签value -> 位图
+    private final Map<String, Map<String, long[]>> bitmapMap;
+    //位图的长度（long的个数）
+    private final int words;
+    /**
+     * @date: 2024-05-24 9:32
+     * @description: 有参构造器
+     * @Param instances:
+     * @Param bitmapMap:
+     * @return: null
+     */
+    private TagIndex(ServiceInstance[] instances, Map<String, Map<String, long[]>> bitmapMap) {
+        this.instances = instances;
+        this.bitmapMap = bitmapMap;
+        this.words = (instances.length + 63) >>> 6;
+    }
+    /**
+     * @date: 2024-05-24 9:35
+     * @description: 根据服务实例数组构建标签索引。所有服务实例都没有标签时，返回的索引不包含任何位图。
+     * @Param instances: 服务实例数组，索引会直接持有该数组
+     * @return: org.wyh.gateway.common.config.TagIndex
+     */
+    static TagIndex build(ServiceInstance[] instances) {
+        if (instances.length == 0) {
+            return EMPTY;
+        }
+        int words = (instances.length + 63) >>> 6;
+        Map<String, Map<String, long[]>> bitmapMap = new HashMap<>();
+        for (int i = 0; i < instances.length; i++) {
+            for (Map.Entry<String, String> tag : instances[i].parsedTags().asMap().entrySet()) {
+                long[] bitmap = bitmapMap.computeIfAbsent(tag.getKey(), k -> new HashMap<>(4))
+                        .computeIfAbsent(tag.getValue(), v -> new long[words]);
+                bitmap[i >>> 6] |= 1L << i;
+            }
+        }
+        return new TagIndex(instances, bitmapMap);
+    }
+    /**
+     * @date: 2024-05-24 9:40
+     * @description: 获取指定标签的位图。不存在时返回空数组。注意：返回的是内部数组，调用方不能修改它。
+     * @Param key:
+     * @Param value:
+     * @return: long[]
+     */
+    public long[] getBitmap(String key, String value) {
+        Map<String, long[]> valueMap = bitmapMap.get(key);
+        if (valueMap == null) {
+            return EMPTY_BITMAP;
+        }
+        long[] bitmap = valueMap.get(value);
+        return bitmap == null ? EMPTY_BITMAP : bitmap;
+    }
+    /**
+     * @date: 2024-05-24 9:45
+     * @description: 计算同时满足所有标签条件的服务实例位图，结果写入调用方提供的数组中（可复用，不会创建对象）。
+                     条件为空时，结果包含全部服务实例。
+     * @Param conditions: 标签条件，key为标签key，value为标签value
+     * @Param result: 结果位图，长度不能小于getWords()
+     * @return: int 满足条件的服务实例数
+     */
+    public int select(Map<String, String> conditions, long[] result) {
+        Arrays.fill(result, 0, words, -1L);
+        if (words > 0 && (instances.length & 63) != 0) {
+            result[words - 1] = (1L << instances.length) - 1;
+        }
+        for (Map.Entry<String, String> condition : conditions.entrySet()) {
+            long[] bitmap = getBitmap(condition.getKey(), condition.getValue());
+            if (bitmap.length == 0) {
+                Arrays.fill(result, 0, words, 0L);
+                return 0;
+            }
+            for (int i = 0; i < words; i++) {
+                result[i] &= bitmap[i];
+            }
+        }
+        int count = 0;
+        for (int i = 0; i < words; i++) {
+            count += Long.bitCount(result[i]);
+        }
+        return count;
+    }
+    /**
+     * @date: 2024-05-24 9:50
+     * @description: 获取同时满足所有标签条件的服务实例数组
+     * @Param conditions:
+     * @return: org.wyh.gateway.common.config.ServiceInstance[]
+     */
+    public ServiceInstance[] select(Map<String, String> conditions) {
+        long[] bitmap = new long[words];
+        ServiceInstance[] selected = new ServiceInstance[select(conditions, bitmap)];
+        int n = 0;
+        for (int i = 0; i < words; i++) {
+            long word = bitmap[i];
+            while (word != 0) {
+                selected[n++] = instances[(i << 6) + Long.numberOfTrailingZeros(word)];
+                word &= word - 1;
+            }
+        }
+        return selected;
+    }
+    /**
+     * @date: 2024-05-24 9:55
+     * @description: 获取位图中第position位对应的服务实例
+     * @Param position:
+     * @return: org.wyh.gateway.common.config.ServiceInstance
+     */
+    public ServiceInstance getInstance(int position) {
+        return instances[position];
+    }
+
+    public int getWords() {
+        return words;
+    }
+
+    public int size() {
+        return instances.length;
+    }
+}
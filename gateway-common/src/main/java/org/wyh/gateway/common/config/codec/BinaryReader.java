@@ -0,0 +1,139 @@
+package org.wyh.gateway.common.config.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.codec
+ * @Author: wyh
+ * @Date: 2024-06-03 9:40
+ * @Description: 二进制编码的读取器，按照BinaryWriter的格式依次读取字段。
+                 直接在ByteBuffer上读取（堆内存或内存映射文件均可），不会复制整条记录；不认识的字段可以通过skip跳过，
+                 从而兼容由更新版本的编码器写入的数据。
+ */
+public final class BinaryReader {
+    //被读取的缓冲区（独立的读取位置，不影响调用方的缓冲区）
+    private final ByteBuffer buffer;
+    //当前字段的值类型
+    private int wireType;
+
+    public BinaryReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+    /**
+     * @date: 2024-06-03 9:45
+     * @description: 读取下一个字段的编号，没有更多字段时返回0
+     * @return: int
+     */
+    public int nextField() {
+        if (!buffer.hasRemaining()) {
+            return 0;
+        }
+        long tag = readRawVarLong();
+        wireType = (int) (tag & 0x7);
+        int field = (int) (tag >>> 3);
+        if (field <= 0) {
+            throw new IllegalArgumentException("invalid field tag: " + tag);
+        }
+        return field;
+    }
+
+    public boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+    /*
+     * 字段值的读取方法
+     */
+    public String readString() {
+        expect(ConfigCodec.WIRE_BYTES);
+        int length = readLength();
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(buffer.position(), bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    public int readInt() {
+        return (int) readLong();
+    }
+
+    public long readLong() {
+        expect(ConfigCodec.WIRE_VARINT);
+        long value = readRawVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public boolean readBoolean() {
+        expect(ConfigCodec.WIRE_VARINT);
+        return readRawVarLong() != 0;
+    }
+    /**
+     * @date: 2024-06-03 9:50
+     * @description: 读取嵌套对象，返回只包含该对象内容的读取器
+     * @return: org.wyh.gateway.common.config.codec.BinaryReader
+     */
+    public BinaryReader readMessage() {
+        expect(ConfigCodec.WIRE_BYTES);
+        int length = readLength();
+        ByteBuffer message = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return new BinaryReader(message);
+    }
+    /**
+     * @date: 2024-06-03 9:55
+     * @description: 跳过当前字段（用于不认识的字段）
+     * @return: void
+     */
+    public void skip() {
+        switch (wireType) {
+            case ConfigCodec.WIRE_VARINT:
+                readRawVarLong();
+                break;
+            case ConfigCodec.WIRE_BYTES:
+                int length = readLength();
+                buffer.position(buffer.position() + length);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown wire type: " + wireType);
+        }
+    }
+    /*
+     * 底层的读取方法
+     */
+    byte readByte() {
+        return buffer.get();
+    }
+
+    private void expect(int expected) {
+        if (wireType != expected) {
+            throw new IllegalArgumentException("unexpected wire type: " + wireType + ", expected: " + expected);
+        }
+    }
+
+    private int readLength() {
+        long length = readRawVarLong();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("invalid length: " + length);
+        }
+        return (int) length;
+    }
+
+    private long readRawVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+}
@@ -0,0 +1,183 @@
+package org.wyh.gateway.common.config.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.codec
+ * @Author: wyh
+ * @Date: 2024-06-03 9:10
+ * @Description: 二进制编码的写入器，基于可自动扩容的字节数组。
+                 每个字段写为“标签 + 值”，标签由字段编号和值的类型（见ConfigCodec.WIRE_*）组成；
+                 整数采用zigzag变长编码，字符串采用“长度 + UTF-8字节”，嵌套对象采用“长度 + 内容”。
+                 值为null的字段直接省略。该类不是线程安全的，可以通过reset重复使用。
+ */
+public final class BinaryWriter {
+    //缓冲区
+    private byte[] buffer;
+    //已写入的字节数
+    private int size;
+
+    public BinaryWriter() {
+        this(256);
+    }
+
+    public BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+    /*
+     * 字段的写入方法（值为null时不写入）
+     */
+    public BinaryWriter writeString(int field, String value) {
+        if (value != null) {
+            writeTag(field, ConfigCodec.WIRE_BYTES);
+            writeRawString(value);
+        }
+        return this;
+    }
+
+    public BinaryWriter writeInt(int field, int value) {
+        writeTag(field, ConfigCodec.WIRE_VARINT);
+        writeRawVarLong(zigzag(value));
+        return this;
+    }
+
+    public BinaryWriter writeInt(int field, Integer value) {
+        return value == null ? this : writeInt(field, value.intValue());
+    }
+
+    public BinaryWriter writeLong(int field, long value) {
+        writeTag(field, ConfigCodec.WIRE_VARINT);
+        writeRawVarLong(zigzag(value));
+        return this;
+    }
+
+    public BinaryWriter writeBoolean(int field, boolean value) {
+        writeTag(field, ConfigCodec.WIRE_VARINT);
+        writeByte(value ? 1 : 0);
+        return this;
+    }
+    /**
+     * @date: 2024-06-03 9:20
+     * @description: 开始写入一个嵌套对象，返回其长度字段的位置（写完内容后调用endMessage回填长度）。
+                     长度先按最大的5个字节预留，回填时再把内容向前移动，因此不需要预先计算嵌套对象的大小。
+     * @Param field:
+     * @return: int
+     */
+    public int beginMessage(int field) {
+        writeTag(field, ConfigCodec.WIRE_BYTES);
+        ensureCapacity(5);
+        int mark = size;
+        size += 5;
+        return mark;
+    }
+    /**
+     * @date: 2024-06-03 9:25
+     * @description: 结束嵌套对象，回填其长度
+     * @Param mark: beginMessage的返回值
+     * @return: void
+     */
+    public void endMessage(int mark) {
+        int contentStart = mark + 5;
+        int length = size - contentStart;
+        int lengthSize = varIntSize(length);
+        System.arraycopy(buffer, contentStart, buffer, mark + lengthSize, length);
+        size = mark;
+        writeRawVarLong(length);
+        size = mark + lengthSize + length;
+    }
+    /*
+     * 底层的写入方法
+     */
+    void writeTag(int field, int wireType) {
+        writeRawVarLong(((long) field << 3) | wireType);
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    void writeRawVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+    /**
+     * @date: 2024-06-03 9:30
+     * @description: 写入字符串。纯ASCII字符串（配置中的绝大多数字符串）直接逐字节写入，不创建临时的字节数组。
+     * @Param value:
+     * @return: void
+     */
+    void writeRawString(String value) {
+        int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            writeRawVarLong(length);
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                buffer[size++] = (byte) value.charAt(i);
+            }
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeRawVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int varIntSize(int value) {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            bytes++;
+            value >>>= 7;
+        }
+        return bytes;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, size + extra));
+        }
+    }
+    /*
+     * 获取编码结果
+     */
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+    /**
+     * @date: 2024-06-03 9:35
+     * @description: 将编码结果写入目标缓冲区的当前位置。空间不足时抛出BufferOverflowException。
+     * @Param target:
+     * @return: void
+     */
+    public void writeTo(ByteBuffer target) {
+        target.put(buffer, 0, size);
+    }
+
+    public BinaryWriter reset() {
+        size = 0;
+        return this;
+    }
+}
@@ -0,0 +1,352 @@
+package org.wyh.gateway.common.config.codec;
+
+import org.wyh.gateway.common.config.HttpServiceInvoker;
+import org.wyh.gateway.common.config.Rule;
+import org.wyh.gateway.common.config.ServiceDefinition;
+import org.wyh.gateway.common.config.ServiceInstance;
+import org.wyh.gateway.common.config.ServiceInvoker;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.codec
+ * @Author: wyh
+ * @Date: 2024-06-03 10:00
+ * @Description: 配置模型（ServiceDefinition，ServiceInstance，Rule）的二进制编解码器，用于替代体积较大，解析较慢的JSON编码。
+                 编码格式：类型（1字节） | 格式版本（1字节） | 字段1 | 字段2 | ...
+                 每个字段都带有编号和值类型，值为null的字段直接省略，解码时不认识的字段会被跳过，
+                 因此新增字段（使用新的编号）不需要修改格式版本，新旧版本的网关可以互相读取对方写入的数据；
+                 只有不兼容的修改（例如改变已有字段的含义）才需要提高格式版本，解码器会拒绝更高版本的数据。
+                 注意：字段编号一旦使用就不能再改作他用。
+ */
+public final class ConfigCodec {
+    /*
+     * 字段的值类型
+     */
+    //变长整数（zigzag编码），也用于布尔值
+    static final int WIRE_VARINT = 0;
+    //长度 + 字节，用于字符串和嵌套对象
+    static final int WIRE_BYTES = 2;
+    //格式版本
+    public static final int FORMAT_VERSION = 1;
+    /*
+     * 记录类型
+     */
+    public static final byte TYPE_SERVICE_DEFINITION = 1;
+    public static final byte TYPE_SERVICE_INSTANCE = 2;
+    public static final byte TYPE_RULE = 3;
+    /*
+     * ServiceDefinition的字段编号
+     */
+    private static final int DEF_UNIQUE_ID = 1;
+    private static final int DEF_SERVICE_ID = 2;
+    private static final int DEF_VERSION = 3;
+    private static final int DEF_PROTOCOL = 4;
+    private static final int DEF_PATTERN_PATH = 5;
+    private static final int DEF_ENV_TYPE = 6;
+    private static final int DEF_ENABLE = 7;
+    private static final int DEF_DESC = 8;
+    //invokerMap中的一项（嵌套对象，可重复）
+    private static final int DEF_INVOKER = 9;
+    //invokerMap不为null时写入（值为其大小），用于区分null和空map
+    private static final int DEF_INVOKER_COUNT = 10;
+    /*
+     * ServiceInvoker的字段编号（嵌套在ServiceDefinition中）
+     */
+    private static final int INVOKER_KEY = 1;
+    private static final int INVOKER_PATH = 2;
+    private static final int INVOKER_RULE_ID = 3;
+    private static final int INVOKER_TIMEOUT = 4;
+    private static final int INVOKER_DESC = 5;
+    /*
+     * ServiceInstance的字段编号
+     */
+    private static final int INS_SERVICE_INSTANCE_ID = 1;
+    private static final int INS_UNIQUE_ID = 2;
+    private static final int INS_IP = 3;
+    private static final int INS_PORT = 4;
+    private static final int INS_TAGS = 5;
+    private static final int INS_WEIGHT = 6;
+    private static final int INS_WARM_UP_TIME = 7;
+    private static final int INS_REGISTER_TIME = 8;
+    private static final int INS_ENABLE = 9;
+    private static final int INS_VERSION = 10;
+    private static final int INS_GRAY = 11;
+    /*
+     * Rule的字段编号
+     */
+    private static final int RULE_ID = 1;
+    private static final int RULE_LAST_MODIFIED_TIME = 2;
+    private static final int RULE_NAME = 3;
+    private static final int RULE_PROTOCOL = 4;
+    private static final int RULE_ORDER = 5;
+    //过滤器配置（嵌套对象，可重复）
+    private static final int RULE_FILTER_CONFIG = 6;
+    /*
+     * FilterConfig的字段编号（嵌套在Rule中）
+     */
+    private static final int FILTER_ID = 1;
+    private static final int FILTER_CONFIG = 2;
+
+    private ConfigCodec() {
+    }
+    /*
+     * 编码
+     */
+    public static byte[] encode(ServiceDefinition definition) {
+        return encode(definition, new BinaryWriter()).toByteArray();
+    }
+
+    public static byte[] encode(ServiceInstance instance) {
+        return encode(instance, new BinaryWriter(64)).toByteArray();
+    }
+
+    public static byte[] encode(Rule rule) {
+        return encode(rule, new BinaryWriter()).toByteArray();
+    }
+    /**
+     * @date: 2024-06-03 10:10
+     * @description: 将服务定义编码到写入器中（写入器可以重复使用，以减少大批量编码时的内存分配）
+     * @Param definition:
+     * @Param writer:
+     * @return: org.wyh.gateway.common.config.codec.BinaryWriter
+     */
+    public static BinaryWriter encode(ServiceDefinition definition, BinaryWriter writer) {
+        writeHeader(writer, TYPE_SERVICE_DEFINITION);
+        writer.writeString(DEF_UNIQUE_ID, definition.getUniqueId())
+                .writeString(DEF_SERVICE_ID, definition.getServiceId())
+                .writeString(DEF_VERSION, definition.getVersion())
+                .writeString(DEF_PROTOCOL, definition.getProtocol())
+                .writeString(DEF_PATTERN_PATH, definition.getPatternPath())
+                .writeString(DEF_ENV_TYPE, definition.getEnvType())
+                .writeBoolean(DEF_ENABLE, definition.isEnable())
+                .writeString(DEF_DESC, definition.getDesc());
+        Map<String, ServiceInvoker> invokerMap = definition.getInvokerMap();
+        if (invokerMap != null) {
+            writer.writeInt(DEF_INVOKER_COUNT, invokerMap.size());
+            for (Map.Entry<String, ServiceInvoker> entry : invokerMap.entrySet()) {
+                ServiceInvoker invoker = entry.getValue();
+                int mark = writer.beginMessage(DEF_INVOKER);
+                writer.writeString(INVOKER_KEY, entry.getKey());
+                if (invoker != null) {
+                    writer.writeString(INVOKER_PATH, invoker.getInvokerPath())
+                            .writeString(INVOKER_RULE_ID, invoker.getRuleId())
+                            .writeInt(INVOKER_TIMEOUT, invoker.getTimeout())
+                            .writeString(INVOKER_DESC, invoker.getDesc());
+                }
+                writer.endMessage(mark);
+            }
+        }
+        return writer;
+    }
+
+    public static BinaryWriter encode(ServiceInstance instance, BinaryWriter writer) {
+        writeHeader(writer, TYPE_SERVICE_INSTANCE);
+        return writer.writeString(INS_SERVICE_INSTANCE_ID, instance.getServiceInstanceId())
+                .writeString(INS_UNIQUE_ID, instance.getUniqueId())
+                .writeString(INS_IP, instance.getIp())
+                .writeInt(INS_PORT, instance.getPort())
+                .writeString(INS_TAGS, instance.getTags())
+                .writeInt(INS_WEIGHT, instance.getWeight())
+                .writeInt(INS_WARM_UP_TIME, instance.getWarmUpTime())
+                .writeLong(INS_REGISTER_TIME, instance.getRegisterTime())
+                .writeBoolean(INS_ENABLE, instance.isEnable())
+                .writeString(INS_VERSION, instance.getVersion())
+                .writeBoolean(INS_GRAY, instance.isGray());
+    }
+
+    public static BinaryWriter encode(Rule rule, BinaryWriter writer) {
+        writeHeader(writer, TYPE_RULE);
+        writer.writeString(RULE_ID, rule.getRuleId())
+                .writeLong(RULE_LAST_MODIFIED_TIME, rule.getLastModifiedTime())
+                .writeString(RULE_NAME, rule.getName())
+                .writeString(RULE_PROTOCOL, rule.getProtocol())
+                .writeInt(RULE_ORDER, rule.getOrder());
+        if (rule.getFilterConfigs() != null) {
+            for (Rule.FilterConfig filterConfig : rule.getFilterConfigs()) {
+                int mark = writer.beginMessage(RULE_FILTER_CONFIG);
+                writer.writeString(FILTER_ID, filterConfig.getFilterId())
+                        .writeString(FILTER_CONFIG, filterConfig.getConfig());
+                writer.endMessage(mark);
+            }
+        }
+        return writer;
+    }
+
+    private static void writeHeader(BinaryWriter writer, byte type) {
+        writer.writeByte(type);
+        writer.writeByte(FORMAT_VERSION);
+    }
+    /*
+     * 解码。ByteBuffer版本从position读取到limit，不会改变传入缓冲区的position。
+     * 数据格式错误时抛出IllegalArgumentException。
+     */
+    public static ServiceDefinition decodeServiceDefinition(byte[] bytes) {
+        return decodeServiceDefinition(ByteBuffer.wrap(bytes));
+    }
+
+    public static ServiceInstance decodeServiceInstance(byte[] bytes) {
+        return decodeServiceInstance(ByteBuffer.wrap(bytes));
+    }
+
+    public static Rule decodeRule(byte[] bytes) {
+        return decodeRule(ByteBuffer.wrap(bytes));
+    }
+
+    public static ServiceDefinition decodeServiceDefinition(ByteBuffer buffer) {
+        try {
+            BinaryReader reader = readHeader(buffer, TYPE_SERVICE_DEFINITION);
+            ServiceDefinition definition = new ServiceDefinition();
+            //enable字段缺失时与无参构造器的默认值保持一致
+            definition.setEnable(true);
+            Map<String, ServiceInvoker> invokerMap = null;
+            for (int field = reader.nextField(); field != 0; field = reader.nextField()) {
+                switch (field) {
+                    case DEF_UNIQUE_ID: definition.setUniqueId(reader.readString()); break;
+                    case DEF_SERVICE_ID: definition.setServiceId(reader.readString()); break;
+                    case DEF_VERSION: definition.setVersion(reader.readString()); break;
+                    case DEF_PROTOCOL: definition.setProtocol(reader.readString()); break;
+                    case DEF_PATTERN_PATH: definition.setPatternPath(reader.readString()); break;
+                    case DEF_ENV_TYPE: definition.setEnvType(reader.readString()); break;
+                    case DEF_ENABLE: definition.setEnable(reader.readBoolean()); break;
+                    case DEF_DESC: definition.setDesc(reader.readString()); break;
+                    case DEF_INVOKER_COUNT:
+                        int count = reader.readInt();
+                        if (invokerMap == null) {
+                            invokerMap = new HashMap<>(Math.max(16, count * 2));
+                        }
+                        break;
+                    case DEF_INVOKER:
+                        if (invokerMap == null) {
+                            invokerMap = new HashMap<>();
+                        }
+                        readInvoker(reader.readMessage(), invokerMap);
+                        break;
+                    default: reader.skip(); break;
+                }
+            }
+            definition.setInvokerMap(invokerMap);
+            return definition;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("truncated service definition record", e);
+        }
+    }
+    /**
+     * @date: 2024-06-03 10:30
+     * @description: 解码invokerMap中的一项。目前只有HTTP一种方法调用类型。
+     * @Param reader:
+     * @Param invokerMap:
+     * @return: void
+     */
+    private static void readInvoker(BinaryReader reader, Map<String, ServiceInvoker> invokerMap) {
+        String key = null;
+        HttpServiceInvoker invoker = new HttpServiceInvoker();
+        for (int field = reader.nextField(); field != 0; field = reader.nextField()) {
+            switch (field) {
+                case INVOKER_KEY: key = reader.readString(); break;
+                case INVOKER_PATH: invoker.setInvokerPath(reader.readString()); break;
+                case INVOKER_RULE_ID: invoker.setRuleId(reader.readString()); break;
+                case INVOKER_TIMEOUT: invoker.setTimeout(reader.readInt()); break;
+                case INVOKER_DESC: invoker.setDesc(reader.readString()); break;
+                default: reader.skip(); break;
+            }
+        }
+        invokerMap.put(key, invoker);
+    }
+
+    public static ServiceInstance decodeServiceInstance(ByteBuffer buffer) {
+        try {
+            BinaryReader reader = readHeader(buffer, TYPE_SERVICE_INSTANCE);
+            ServiceInstance instance = new ServiceInstance();
+            //可以为null的字段以“缺失”表示null
+            instance.setWarmUpTime(null);
+            for (int field = reader.nextField(); field != 0; field = reader.nextField()) {
+                switch (field) {
+                    case INS_SERVICE_INSTANCE_ID: instance.setServiceInstanceId(reader.readString()); break;
+                    case INS_UNIQUE_ID: instance.setUniqueId(reader.readString()); break;
+                    case INS_IP: instance.setIp(reader.readString()); break;
+                    case INS_PORT: instance.setPort(reader.readInt()); break;
+                    case INS_TAGS: instance.setTags(reader.readString()); break;
+                    case INS_WEIGHT: instance.setWeight(reader.readInt()); break;
+                    case INS_WARM_UP_TIME: instance.setWarmUpTime(reader.readInt()); break;
+                    case INS_REGISTER_TIME: instance.setRegisterTime(reader.readLong()); break;
+                    case INS_ENABLE: instance.setEnable(reader.readBoolean()); break;
+                    case INS_VERSION: instance.setVersion(reader.readString()); break;
+                    case INS_GRAY: instance.setGray(reader.readBoolean()); break;
+                    default: reader.skip(); break;
+                }
+            }
+            return instance;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("truncated service instance record", e);
+        }
+    }
+
+    public static Rule decodeRule(ByteBuffer buffer) {
+        try {
+            BinaryReader reader = readHeader(buffer, TYPE_RULE);
+            Rule rule = new Rule();
+            HashSet<Rule.FilterConfig> filterConfigs = new HashSet<>();
+            for (int field = reader.nextField(); field != 0; field = reader.nextField()) {
+                switch (field) {
+                    case RULE_ID: rule.setRuleId(reader.readString()); break;
+                    case RULE_LAST_MODIFIED_TIME: rule.setLastModifiedTime(reader.readLong()); break;
+                    case RULE_NAME: rule.setName(reader.readString()); break;
+                    case RULE_PROTOCOL: rule.setProtocol(reader.readString()); break;
+                    case RULE_ORDER: rule.setOrder(reader.readInt()); break;
+                    case RULE_FILTER_CONFIG: filterConfigs.add(readFilterConfig(reader.readMessage())); break;
+                    default: reader.skip(); break;
+                }
+            }
+            rule.setFilterConfigs(filterConfigs);
+            return rule;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("truncated rule record", e);
+        }
+    }
+
+    private static Rule.FilterConfig readFilterConfig(BinaryReader reader) {
+        Rule.FilterConfig filterConfig = new Rule.FilterConfig();
+        for (int field = reader.nextField(); field != 0; field = reader.nextField()) {
+            switch (field) {
+                case FILTER_ID: filterConfig.setFilterId(reader.readString()); break;
+                case FILTER_CONFIG: filterConfig.setConfig(reader.readString()); break;
+                default: reader.skip(); break;
+            }
+        }
+        return filterConfig;
+    }
+    /**
+     * @date: 2024-06-03 10:40
+     * @description: 校验记录类型和格式版本，返回位于第一个字段处的读取器
+     * @Param buffer:
+     * @Param expectedType:
+     * @return: org.wyh.gateway.common.config.codec.BinaryReader
+     */
+    private static BinaryReader readHeader(ByteBuffer buffer, byte expectedType) {
+        BinaryReader reader = new BinaryReader(buffer.slice());
+        byte type = reader.readByte();
+        if (type != expectedType) {
+            throw new IllegalArgumentException("unexpected record type: " + type + ", expected: " + expectedType);
+        }
+        int version = reader.readByte() & 0xFF;
+        if (version > FORMAT_VERSION) {
+            throw new IllegalArgumentException("unsupported codec version: " + version);
+        }
+        return reader;
+    }
+    /**
+     * @date: 2024-06-03 10:45
+     * @description: 获取记录的类型（不改变缓冲区的position）
+     * @Param buffer:
+     * @return: byte
+     */
+    public static byte typeOf(ByteBuffer buffer) {
+        return buffer.get(buffer.position());
+    }
+}
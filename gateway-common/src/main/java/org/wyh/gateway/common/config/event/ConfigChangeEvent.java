@@ -0,0 +1,45 @@
+package org.wyh.gateway.common.config.event;
+
+import org.wyh.gateway.common.config.ConfigSnapshot;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.event
+ * @Author: wyh
+ * @Date: 2024-05-20 9:15
+ * @Description: 动态配置变更事件的基类。
+                 每个事件都带有变更后的配置快照及其版本号，监听器可以直接从该快照中读取与事件一致的其他配置信息。
+ */
+public abstract class ConfigChangeEvent {
+    //事件类型
+    private final ConfigChangeType type;
+    //变更后的配置快照
+    private final ConfigSnapshot snapshot;
+    /**
+     * @date: 2024-05-20 9:18
+     * @description: 有参构造器
+     * @Param type:
+     * @Param snapshot:
+     * @return: null
+     */
+    protected ConfigChangeEvent(ConfigChangeType type, ConfigSnapshot snapshot) {
+        this.type = type;
+        this.snapshot = snapshot;
+    }
+
+    public ConfigChangeType getType() {
+        return type;
+    }
+
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+    /**
+     * @date: 2024-05-20 9:20
+     * @description: 获取变更后的配置快照的版本号
+     * @return: long
+     */
+    public long getGeneration() {
+        return snapshot.getGeneration();
+    }
+}
@@ -0,0 +1,21 @@
+package org.wyh.gateway.common.config.event;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.event
+ * @Author: wyh
+ * @Date: 2024-05-20 9:50
+ * @Description: 动态配置变更监听器接口。
+                 依赖于动态配置的派生缓存（例如负载均衡表，过滤器配置，路由树等）可以实现该接口，只在配置真正发生变更时增量更新。
+                 注意：该方法由专门的通知线程调用，不在请求处理线程上执行；同一监听器收到的事件严格按照快照版本号递增的顺序到达。
+ */
+@FunctionalInterface
+public interface ConfigChangeListener {
+    /**
+     * @date: 2024-05-20 9:52
+     * @description: 处理配置变更事件
+     * @Param event:
+     * @return: void
+     */
+    void onConfigChange(ConfigChangeEvent event);
+}
@@ -0,0 +1,108 @@
+package org.wyh.gateway.common.config.event;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.event
+ * @Author: wyh
+ * @Date: 2024-05-20 10:00
+ * @Description: 动态配置变更通知器，负责管理监听器并异步分发变更事件。
+                 事件由一个单独的守护线程按发布顺序依次分发，因此不会占用请求处理线程，也不会阻塞写操作。
+                 某个监听器抛出的异常只会被记录，不会影响其他监听器。
+ */
+@Slf4j
+public class ConfigChangeNotifier {
+    //已注册的订阅信息列表。注册/注销很少发生，而分发很频繁，所以使用写时复制的列表。
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    //分发事件的单线程线程池，保证事件按顺序到达
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "config-change-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * @date: 2024-05-20 10:05
+     * @description: 注册监听器。若没有指定事件类型，则监听所有类型的事件。
+     * @Param listener:
+     * @Param types: 感兴趣的事件类型
+     * @return: void
+     */
+    public void addListener(ConfigChangeListener listener, ConfigChangeType... types) {
+        Set<ConfigChangeType> typeSet = types == null || types.length == 0
+                ? EnumSet.allOf(ConfigChangeType.class) : EnumSet.of(types[0], types);
+        subscriptions.add(new Subscription(listener, typeSet));
+    }
+    /**
+     * @date: 2024-05-20 10:07
+     * @description: 注销监听器
+     * @Param listener:
+     * @return: void
+     */
+    public void removeListener(ConfigChangeListener listener) {
+        subscriptions.removeIf(subscription -> subscription.listener == listener);
+    }
+    /**
+     * @date: 2024-05-20 10:08
+     * @description: 判断是否存在监听器。没有监听器时，调用方可以跳过事件的计算。
+     * @return: boolean
+     */
+    public boolean hasListeners() {
+        return !subscriptions.isEmpty();
+    }
+    /**
+     * @date: 2024-05-20 10:10
+     * @description: 异步发布一组变更事件（通常是同一版本快照产生的所有事件）
+     * @Param events:
+     * @return: void
+     */
+    public void publish(List<ConfigChangeEvent> events) {
+        if (events.isEmpty() || subscriptions.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> dispatch(events));
+    }
+    /**
+     * @date: 2024-05-20 10:12
+     * @description: 将事件分发给对该类型感兴趣的监听器
+     * @Param events:
+     * @return: void
+     */
+    private void dispatch(List<ConfigChangeEvent> events) {
+        for (ConfigChangeEvent event : events) {
+            for (Subscription subscription : subscriptions) {
+                if (!subscription.types.contains(event.getType())) {
+                    continue;
+                }
+                try {
+                    subscription.listener.onConfigChange(event);
+                } catch (Throwable e) {
+                    log.error("【动态配置】监听器处理变更事件异常, event: {}", event, e);
+                }
+            }
+        }
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.config.event
+     * @Author: wyh
+     * @Date: 2024-05-20 10:15
+     * @Description: 订阅信息，即监听器及其感兴趣的事件类型
+     */
+    private static class Subscription {
+        private final ConfigChangeListener listener;
+        private final Set<ConfigChangeType> types;
+
+        private Subscription(ConfigChangeListener listener, Set<ConfigChangeType> types) {
+            this.listener = listener;
+            this.types = types;
+        }
+    }
+}
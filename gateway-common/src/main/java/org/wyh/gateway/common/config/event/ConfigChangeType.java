@@ -0,0 +1,21 @@
+package org.wyh.gateway.common.config.event;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.event
+ * @Author: wyh
+ * @Date: 2024-05-20 9:10
+ * @Description: 动态配置变更事件的类型
+ */
+public enum ConfigChangeType {
+    //新增服务定义
+    SERVICE_DEFINITION_ADDED,
+    //服务定义被替换/更新
+    SERVICE_DEFINITION_UPDATED,
+    //移除服务定义
+    SERVICE_DEFINITION_REMOVED,
+    //某一uniqueId对应的服务实例集合发生变更
+    SERVICE_INSTANCES_CHANGED,
+    //规则集合发生变更
+    RULES_CHANGED
+}
@@ -0,0 +1,68 @@
+package org.wyh.gateway.common.config.event;
+
+import org.wyh.gateway.common.config.ConfigSnapshot;
+import org.wyh.gateway.common.config.Rule;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.event
+ * @Author: wyh
+ * @Date: 2024-05-20 9:40
+ * @Description: 规则变更事件。一次规则加载/修改只会产生一个事件，其中包含所有发生变更的ruleId。
+                 新增的规则在oldRules中不存在，被移除的规则在newRules中不存在。
+ */
+public class RuleChangeEvent extends ConfigChangeEvent {
+    //发生变更的ruleId集合
+    private final Set<String> changedRuleIds;
+    //发生变更的规则的旧值。key为ruleId
+    private final Map<String, Rule> oldRules;
+    //发生变更的规则的新值。key为ruleId
+    private final Map<String, Rule> newRules;
+    /**
+     * @date: 2024-05-20 9:45
+     * @description: 有参构造器
+     * @Param snapshot:
+     * @Param changedRuleIds:
+     * @Param oldRules:
+     * @Param newRules:
+     * @return: null
+     */
+    public RuleChangeEvent(ConfigSnapshot snapshot, Set<String> changedRuleIds,
+                           Map<String, Rule> oldRules, Map<String, Rule> newRules) {
+        super(ConfigChangeType.RULES_CHANGED, snapshot);
+        this.changedRuleIds = changedRuleIds;
+        this.oldRules = oldRules;
+        this.newRules = newRules;
+    }
+
+    public Set<String> getChangedRuleIds() {
+        return changedRuleIds;
+    }
+
+    public Map<String, Rule> getOldRules() {
+        return oldRules;
+    }
+
+    public Map<String, Rule> getNewRules() {
+        return newRules;
+    }
+
+    public Rule getOldRule(String ruleId) {
+        return oldRules.get(ruleId);
+    }
+
+    public Rule getNewRule(String ruleId) {
+        return newRules.get(ruleId);
+    }
+
+    @Override
+    public String toString() {
+        return "RuleChangeEvent{" +
+                "generation=" + getGeneration() +
+                ", changedRuleIds=" + changedRuleIds +
+                '}';
+    }
+}
@@ -0,0 +1,59 @@
+package org.wyh.gateway.common.config.event;
+
+import org.wyh.gateway.common.config.ConfigSnapshot;
+import org.wyh.gateway.common.config.ServiceDefinition;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.event
+ * @Author: wyh
+ * @Date: 2024-05-20 9:25
+ * @Description: 服务定义变更事件。新增时旧值为null，移除时新值为null。
+ */
+public class ServiceDefinitionChangeEvent extends ConfigChangeEvent {
+    //服务定义的唯一id
+    private final String uniqueId;
+    //变更前的服务定义
+    private final ServiceDefinition oldDefinition;
+    //变更后的服务定义
+    private final ServiceDefinition newDefinition;
+    /**
+     * @date: 2024-05-20 9:28
+     * @description: 有参构造器，事件类型由新旧值是否为null推导而来
+     * @Param snapshot:
+     * @Param uniqueId:
+     * @Param oldDefinition:
+     * @Param newDefinition:
+     * @return: null
+     */
+    public ServiceDefinitionChangeEvent(ConfigSnapshot snapshot, String uniqueId,
+                                        ServiceDefinition oldDefinition, ServiceDefinition newDefinition) {
+        super(oldDefinition == null ? ConfigChangeType.SERVICE_DEFINITION_ADDED
+                : newDefinition == null ? ConfigChangeType.SERVICE_DEFINITION_REMOVED
+                : ConfigChangeType.SERVICE_DEFINITION_UPDATED, snapshot);
+        this.uniqueId = uniqueId;
+        this.oldDefinition = oldDefinition;
+        this.newDefinition = newDefinition;
+    }
+
+    public String getUniqueId() {
+        return uniqueId;
+    }
+
+    public ServiceDefinition getOldDefinition() {
+        return oldDefinition;
+    }
+
+    public ServiceDefinition getNewDefinition() {
+        return newDefinition;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceDefinitionChangeEvent{" +
+                "type=" + getType() +
+                ", generation=" + getGeneration() +
+                ", uniqueId='" + uniqueId + '\'' +
+                '}';
+    }
+}
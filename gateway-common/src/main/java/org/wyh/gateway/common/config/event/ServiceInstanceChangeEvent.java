@@ -0,0 +1,58 @@
+package org.wyh.gateway.common.config.event;
+
+import org.wyh.gateway.common.config.ConfigSnapshot;
+import org.wyh.gateway.common.config.ServiceInstanceView;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.event
+ * @Author: wyh
+ * @Date: 2024-05-20 9:32
+ * @Description: 服务实例集合变更事件。新旧值都是服务实例视图，视图不存在时为ServiceInstanceView.EMPTY。
+ */
+public class ServiceInstanceChangeEvent extends ConfigChangeEvent {
+    //服务实例所属的服务定义的唯一id
+    private final String uniqueId;
+    //变更前的服务实例视图
+    private final ServiceInstanceView oldView;
+    //变更后的服务实例视图
+    private final ServiceInstanceView newView;
+    /**
+     * @date: 2024-05-20 9:35
+     * @description: 有参构造器
+     * @Param snapshot:
+     * @Param uniqueId:
+     * @Param oldView:
+     * @Param newView:
+     * @return: null
+     */
+    public ServiceInstanceChangeEvent(ConfigSnapshot snapshot, String uniqueId,
+                                      ServiceInstanceView oldView, ServiceInstanceView newView) {
+        super(ConfigChangeType.SERVICE_INSTANCES_CHANGED, snapshot);
+        this.uniqueId = uniqueId;
+        this.oldView = oldView;
+        this.newView = newView;
+    }
+
+    public String getUniqueId() {
+        return uniqueId;
+    }
+
+    public ServiceInstanceView getOldView() {
+        return oldView;
+    }
+
+    public ServiceInstanceView getNewView() {
+        return newView;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceInstanceChangeEvent{" +
+                "generation=" + getGeneration() +
+                ", uniqueId='" + uniqueId + '\'' +
+                ", oldView=" + oldView +
+                ", newView=" + newView +
+                '}';
+    }
+}
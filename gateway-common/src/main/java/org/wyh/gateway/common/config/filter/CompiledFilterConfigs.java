@@ -0,0 +1,50 @@
+package org.wyh.gateway.common.config.filter;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.filter
+ * @Author: wyh
+ * @Date: 2024-06-01 9:20
+ * @Description: 某一规则编译后的过滤器配置（不可变），filterId -> 类型化的配置对象。
+                 只包含注册了解析器的过滤器；同时记录了编译时解析器注册表的版本号，
+                 注册表发生变化（注册了新的解析器）后，规则会在下一次访问时重新编译。
+ */
+public final class CompiledFilterConfigs {
+    //编译时解析器注册表的版本号
+    private final long registryVersion;
+    //filterId（小写） -> 类型化的配置对象
+    private final Map<String, Object> configMap;
+
+    CompiledFilterConfigs(long registryVersion, Map<String, Object> configMap) {
+        this.registryVersion = registryVersion;
+        this.configMap = Collections.unmodifiableMap(configMap);
+    }
+
+    public long getRegistryVersion() {
+        return registryVersion;
+    }
+    /**
+     * @date: 2024-06-01 9:25
+     * @description: 获取某一过滤器的类型化配置（忽略大小写），不存在（该规则没有配置该过滤器或该过滤器没有注册解析器）时返回null。
+                     filterId通常就是FilterConst中的小写常量，此时只需要一次map查找。
+     * @Param filterId:
+     * @return: java.lang.Object
+     */
+    public Object get(String filterId) {
+        if (filterId == null) {
+            return null;
+        }
+        Object value = configMap.get(filterId);
+        if (value == null && !configMap.isEmpty()) {
+            value = configMap.get(FilterConfigRegistry.normalize(filterId));
+        }
+        return value;
+    }
+
+    public Map<String, Object> asMap() {
+        return configMap;
+    }
+}
@@ -0,0 +1,145 @@
+package org.wyh.gateway.common.config.filter;
+
+import org.wyh.gateway.common.config.Rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.filter
+ * @Author: wyh
+ * @Date: 2024-06-02 9:40
+ * @Description: 某一规则预先排好序的过滤器链（不可变）。
+                 过滤器配置按执行顺序（见FilterOrdinals.orderOf，与FilterConst中的*_ORDER一致）升序排列，顺序相同时按filterId排序；
+                 同时以filterId的序号为下标构建位图，判断过滤器是否存在只需要测试一位，获取过滤器配置也不需要比较字符串。
+                 过滤器链在规则对象上只构建一次，规则的过滤器配置集合被修改时才会重新构建（见Rule.filterChain）。
+ */
+public final class FilterChain {
+    //空过滤器链
+    public static final FilterChain EMPTY = new FilterChain(new Rule.FilterConfig[0], new int[0], new long[0]);
+    //按执行顺序排列的过滤器配置
+    private final Rule.FilterConfig[] filterConfigs;
+    //各过滤器配置对应的filterId序号
+    private final int[] ordinals;
+    //filterId序号的位图
+    private final long[] bits;
+    //过滤器配置的只读列表视图
+    private final List<Rule.FilterConfig> filterConfigList;
+
+    private FilterChain(Rule.FilterConfig[] filterConfigs, int[] ordinals, long[] bits) {
+        this.filterConfigs = filterConfigs;
+        this.ordinals = ordinals;
+        this.bits = bits;
+        this.filterConfigList = Collections.unmodifiableList(Arrays.asList(filterConfigs));
+    }
+    /**
+     * @date: 2024-06-02 9:50
+     * @description: 根据过滤器配置集合构建过滤器链。filterId为空的配置会被忽略；filterId相同（忽略大小写）的配置只保留第一个。
+     * @Param configs:
+     * @return: org.wyh.gateway.common.config.filter.FilterChain
+     */
+    public static FilterChain of(Collection<Rule.FilterConfig> configs) {
+        if (configs == null || configs.isEmpty()) {
+            return EMPTY;
+        }
+        List<Rule.FilterConfig> list = new ArrayList<>(configs.size());
+        for (Rule.FilterConfig config : configs) {
+            if (config != null && config.getFilterId() != null) {
+                list.add(config);
+            }
+        }
+        list.sort(Comparator.comparingInt((Rule.FilterConfig config) -> FilterOrdinals.orderOf(config.getFilterId()))
+                .thenComparing(Rule.FilterConfig::getFilterId));
+        Rule.FilterConfig[] sorted = new Rule.FilterConfig[list.size()];
+        int[] ordinals = new int[list.size()];
+        long[] bits = new long[0];
+        int n = 0;
+        for (Rule.FilterConfig config : list) {
+            int ordinal = FilterOrdinals.ordinalOrAssign(config.getFilterId());
+            int word = ordinal >>> 6;
+            if (word >= bits.length) {
+                bits = Arrays.copyOf(bits, word + 1);
+            }
+            if ((bits[word] & (1L << ordinal)) != 0) {
+                continue;
+            }
+            bits[word] |= 1L << ordinal;
+            sorted[n] = config;
+            ordinals[n] = ordinal;
+            n++;
+        }
+        return new FilterChain(Arrays.copyOf(sorted, n), Arrays.copyOf(ordinals, n), bits);
+    }
+    /**
+     * @date: 2024-06-02 10:00
+     * @description: 判断过滤器链中是否存在序号为ordinal的过滤器
+     * @Param ordinal:
+     * @return: boolean
+     */
+    public boolean contains(int ordinal) {
+        int word = ordinal >>> 6;
+        return ordinal >= 0 && word < bits.length && (bits[word] & (1L << ordinal)) != 0;
+    }
+    /**
+     * @date: 2024-06-02 10:02
+     * @description: 判断过滤器链中是否存在filterId对应的过滤器（忽略大小写）
+     * @Param filterId:
+     * @return: boolean
+     */
+    public boolean contains(String filterId) {
+        return contains(FilterOrdinals.ordinalOf(filterId));
+    }
+    /**
+     * @date: 2024-06-02 10:05
+     * @description: 根据filterId获取过滤器配置（忽略大小写），不存在时返回null
+     * @Param filterId:
+     * @return: org.wyh.gateway.common.config.Rule.FilterConfig
+     */
+    public Rule.FilterConfig get(String filterId) {
+        int ordinal = FilterOrdinals.ordinalOf(filterId);
+        if (!contains(ordinal)) {
+            return null;
+        }
+        for (int i = 0; i < ordinals.length; i++) {
+            if (ordinals[i] == ordinal) {
+                return filterConfigs[i];
+            }
+        }
+        return null;
+    }
+    /**
+     * @date: 2024-06-02 10:08
+     * @description: 获取第i个（按执行顺序）过滤器配置
+     * @Param i:
+     * @return: org.wyh.gateway.common.config.Rule.FilterConfig
+     */
+    public Rule.FilterConfig get(int i) {
+        return filterConfigs[i];
+    }
+
+    public int getOrdinal(int i) {
+        return ordinals[i];
+    }
+
+    public int size() {
+        return filterConfigs.length;
+    }
+    /**
+     * @date: 2024-06-02 10:10
+     * @description: 获取按执行顺序排列的过滤器配置（只读列表）
+     * @return: java.util.List<org.wyh.gateway.common.config.Rule.FilterConfig>
+     */
+    public List<Rule.FilterConfig> asList() {
+        return filterConfigList;
+    }
+
+    @Override
+    public String toString() {
+        return "FilterChain" + filterConfigList;
+    }
+}
@@ -0,0 +1,41 @@
+package org.wyh.gateway.common.config.filter;
+
+import org.wyh.gateway.common.utils.JSONUtil;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.filter
+ * @Author: wyh
+ * @Date: 2024-06-01 9:10
+ * @Description: 过滤器配置解析器接口，负责将规则中某一过滤器的原始配置（通常是json串）解析并校验为类型化的配置对象。
+                 解析器在规则被加载时调用，而不是在请求路径上调用，因此可以在这里完成所有耗时的解析和预处理工作。
+                 解析得到的对象会被多个请求线程共享，应当是不可变的（或者至少是线程安全的）。
+ */
+@FunctionalInterface
+public interface FilterConfigParser<T> {
+    /**
+     * @date: 2024-06-01 9:12
+     * @description: 解析并校验过滤器配置。配置不合法时直接抛出异常，该规则会在加载时被拒绝。
+     * @Param config: 原始配置，可能为null
+     * @return: T 类型化的配置对象，不能为null
+     */
+    T parse(String config) throws Exception;
+    /**
+     * @date: 2024-06-01 9:15
+     * @description: 创建一个将json配置直接反序列化为指定类型的解析器（配置为空时使用无参构造器创建默认配置）
+     * @Param type:
+     * @return: org.wyh.gateway.common.config.filter.FilterConfigParser<T>
+     */
+    static <T> FilterConfigParser<T> json(Class<T> type) {
+        return config -> {
+            if (config == null || config.isBlank()) {
+                return type.getDeclaredConstructor().newInstance();
+            }
+            T value = JSONUtil.parse(config, type);
+            if (value == null) {
+                throw new IllegalArgumentException("filter config is not a " + type.getSimpleName() + ": " + config);
+            }
+            return value;
+        };
+    }
+}
@@ -0,0 +1,139 @@
+package org.wyh.gateway.common.config.filter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.wyh.gateway.common.config.Rule;
+import org.wyh.gateway.common.enumeration.ResponseCode;
+import org.wyh.gateway.common.exception.FilterConfigParseException;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.filter
+ * @Author: wyh
+ * @Date: 2024-06-01 9:30
+ * @Description: 过滤器配置解析器的注册表（单例），filterId -> 解析器。
+                 过滤器在初始化时注册自己的解析器；规则被加载到DynamicConfigManager时，
+                 会通过compile方法一次性解析并校验其全部过滤器配置，结果缓存在Rule对象上（见Rule.getParsedFilterConfig）。
+                 由于putAllRule会沿用内容没有变化的Rule对象，缓存只会在规则内容真正发生变化时失效。
+                 没有注册解析器的过滤器不做处理，其配置仍然以原始字符串的形式提供。
+                 与FilterOrdinals一致，filterId忽略大小写（统一转换为小写后作为key）。
+ */
+@Slf4j
+public class FilterConfigRegistry {
+    //filterId（小写） -> 解析器
+    private final Map<String, FilterConfigParser<?>> parserMap = new ConcurrentHashMap<>();
+    //注册表的版本号，每次注册或注销解析器时加一
+    private final AtomicLong version = new AtomicLong();
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.config.filter
+     * @Author: wyh
+     * @Date: 2024-06-01 9:32
+     * @Description: 静态内部类，用于实现单例模式
+     */
+    private static class SingletonHolder {
+        private static final FilterConfigRegistry INSTANCE = new FilterConfigRegistry();
+    }
+
+    private FilterConfigRegistry() {
+    }
+
+    public static FilterConfigRegistry getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+    /**
+     * @date: 2024-06-01 9:35
+     * @description: 注册过滤器配置解析器（同一filterId后注册的会覆盖先注册的）。
+                     已经加载的规则会在下一次访问其类型化配置时重新编译。
+     * @Param filterId:
+     * @Param parser:
+     * @return: void
+     */
+    public void register(String filterId, FilterConfigParser<?> parser) {
+        parserMap.put(normalize(filterId), parser);
+        version.incrementAndGet();
+        log.info("【过滤器配置】注册解析器: {}", filterId);
+    }
+    /**
+     * @date: 2024-06-01 9:37
+     * @description: 注销过滤器配置解析器
+     * @Param filterId:
+     * @return: void
+     */
+    public void unregister(String filterId) {
+        if (parserMap.remove(normalize(filterId)) != null) {
+            version.incrementAndGet();
+        }
+    }
+
+    public FilterConfigParser<?> getParser(String filterId) {
+        return filterId == null ? null : parserMap.get(normalize(filterId));
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+    /**
+     * @date: 2024-06-01 9:40
+     * @description: 解析并校验规则中的全部过滤器配置，不修改规则本身。
+                     任一过滤器配置不合法时抛出FilterConfigParseException（FILTER_CONFIG_PARSE_ERROR）。
+     * @Param rule:
+     * @return: org.wyh.gateway.common.config.filter.CompiledFilterConfigs
+     */
+    public CompiledFilterConfigs compile(Rule rule) {
+        //先读取版本号，保证编译期间发生的注册一定会导致重新编译
+        long currentVersion = version.get();
+        if (rule.getFilterConfigs() == null || rule.getFilterConfigs().isEmpty() || parserMap.isEmpty()) {
+            return new CompiledFilterConfigs(currentVersion, new HashMap<>());
+        }
+        Map<String, Object> configMap = new HashMap<>(rule.getFilterConfigs().size() * 2);
+        for (Rule.FilterConfig filterConfig : rule.getFilterConfigs()) {
+            if (filterConfig.getFilterId() == null) {
+                continue;
+            }
+            String key = normalize(filterConfig.getFilterId());
+            FilterConfigParser<?> parser = parserMap.get(key);
+            if (parser == null) {
+                continue;
+            }
+            Object value;
+            try {
+                value = parser.parse(filterConfig.getConfig());
+            } catch (Exception e) {
+                throw new FilterConfigParseException(e, rule.getRuleId(), filterConfig.getFilterId(),
+                        ResponseCode.FILTER_CONFIG_PARSE_ERROR);
+            }
+            if (value == null) {
+                throw new FilterConfigParseException(rule.getRuleId(), filterConfig.getFilterId(),
+                        ResponseCode.FILTER_CONFIG_PARSE_ERROR);
+            }
+            configMap.put(key, value);
+        }
+        return new CompiledFilterConfigs(currentVersion, configMap);
+    }
+    /**
+     * @date: 2024-06-01 9:45
+     * @description: 编译规则的过滤器配置，并将结果缓存到规则上（规则加载时调用）。
+                     同时预先构建规则的过滤器链，使请求路径上不再需要排序。
+     * @Param rule:
+     * @return: void
+     */
+    public void compileAndCache(Rule rule) {
+        rule.cacheCompiledFilterConfigs(compile(rule));
+        rule.filterChain();
+    }
+    /**
+     * @date: 2024-06-01 9:50
+     * @description: 规范化filterId（转换为小写），与FilterOrdinals的处理方式保持一致
+     * @Param filterId:
+     * @return: java.lang.String
+     */
+    static String normalize(String filterId) {
+        return filterId.toLowerCase(Locale.ROOT);
+    }
+}
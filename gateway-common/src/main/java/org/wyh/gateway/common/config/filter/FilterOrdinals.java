@@ -0,0 +1,98 @@
+package org.wyh.gateway.common.config.filter;
+
+import org.wyh.gateway.common.constant.FilterConst;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.filter
+ * @Author: wyh
+ * @Date: 2024-06-02 9:10
+ * @Description: 过滤器序号表，为每个filterId分配一个较小的整数序号（忽略大小写），并记录其执行顺序。
+                 FilterConst中定义的过滤器在类加载时按固定的序号注册；其他过滤器在第一次出现在规则中时分配新的序号，
+                 执行顺序可以通过register指定，未指定时排在路由过滤器之前（见DEFAULT_ORDER）。
+                 有了序号之后，判断规则中是否存在某一过滤器只需要测试位图中的一位。
+ */
+public final class FilterOrdinals {
+    //未指定执行顺序的过滤器的默认顺序：排在其他已知过滤器之后，路由过滤器和统计过滤器之前
+    public static final int DEFAULT_ORDER = FilterConst.ROUTE_FILTER_ORDER - 1;
+    //filterId（小写） -> 序号
+    private static final Map<String, Integer> ORDINAL_MAP = new ConcurrentHashMap<>();
+    //filterId（小写） -> 执行顺序
+    private static final Map<String, Integer> ORDER_MAP = new ConcurrentHashMap<>();
+    //下一个可分配的序号
+    private static final AtomicInteger NEXT_ORDINAL = new AtomicInteger();
+
+    static {
+        register(FilterConst.GRAY_FILTER_ID, FilterConst.GRAY_FILTER_ORDER);
+        register(FilterConst.USER_AUTH_FILTER_ID, FilterConst.USER_AUTH_FILTER_ORDER);
+        register(FilterConst.DEFAULT_ERROR_FILTER_ID, FilterConst.DEFAULT_ERROR_FILTER_ORDER);
+        register(FilterConst.FLOW_CTRL_FILTER_ID, FilterConst.FLOW_CTRL_FILTER_ORDER);
+        register(FilterConst.LOAD_BALANCE_FILTER_ID, FilterConst.LOAD_BALANCE_FILTER_ORDER);
+        register(FilterConst.ROUTE_FILTER_ID, FilterConst.ROUTE_FILTER_ORDER);
+        register(FilterConst.STATISTIC_FILTER_ID, FilterConst.STATISTIC_FILTER_ORDER);
+    }
+
+    private FilterOrdinals() {
+    }
+    /**
+     * @date: 2024-06-02 9:15
+     * @description: 注册过滤器及其执行顺序，返回其序号（已注册的过滤器保持原序号，只更新执行顺序）。
+                     执行顺序的变化只影响之后构建的过滤器链。
+     * @Param filterId:
+     * @Param order:
+     * @return: int
+     */
+    public static int register(String filterId, int order) {
+        String key = filterId.toLowerCase(Locale.ROOT);
+        ORDER_MAP.put(key, order);
+        return ORDINAL_MAP.computeIfAbsent(key, k -> NEXT_ORDINAL.getAndIncrement());
+    }
+    /**
+     * @date: 2024-06-02 9:20
+     * @description: 获取filterId的序号，不存在时分配新的序号（构建过滤器链时调用）
+     * @Param filterId:
+     * @return: int
+     */
+    static int ordinalOrAssign(String filterId) {
+        int ordinal = ordinalOf(filterId);
+        if (ordinal >= 0) {
+            return ordinal;
+        }
+        return ORDINAL_MAP.computeIfAbsent(filterId.toLowerCase(Locale.ROOT), k -> NEXT_ORDINAL.getAndIncrement());
+    }
+    /**
+     * @date: 2024-06-02 9:25
+     * @description: 获取filterId的序号（忽略大小写），从未出现过的filterId返回-1。
+                     filterId通常就是FilterConst中的小写常量，此时只需要一次map查找。
+     * @Param filterId:
+     * @return: int
+     */
+    public static int ordinalOf(String filterId) {
+        if (filterId == null) {
+            return -1;
+        }
+        Integer ordinal = ORDINAL_MAP.get(filterId);
+        if (ordinal == null) {
+            ordinal = ORDINAL_MAP.get(filterId.toLowerCase(Locale.ROOT));
+        }
+        return ordinal == null ? -1 : ordinal;
+    }
+    /**
+     * @date: 2024-06-02 9:30
+     * @description: 获取过滤器的执行顺序（忽略大小写），没有注册执行顺序时返回DEFAULT_ORDER
+     * @Param filterId:
+     * @return: int
+     */
+    public static int orderOf(String filterId) {
+        Integer order = ORDER_MAP.get(filterId);
+        if (order == null) {
+            order = ORDER_MAP.get(filterId.toLowerCase(Locale.ROOT));
+        }
+        return order == null ? DEFAULT_ORDER : order;
+    }
+}
@@ -0,0 +1,297 @@
+package org.wyh.gateway.common.config.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.wyh.gateway.common.config.ConfigSnapshot;
+import org.wyh.gateway.common.config.Rule;
+import org.wyh.gateway.common.config.ServiceDefinition;
+import org.wyh.gateway.common.config.ServiceInstanceView;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.metrics
+ * @Author: wyh
+ * @Date: 2024-05-28 9:40
+ * @Description: DynamicConfigManager的指标类。
+                 计数器（查找次数，未命中次数，更新次数）采用LongAdder实现，读路径上只有一次无锁的累加；
+                 配置规模相关的指标（服务数，服务实例数，内存估算等）在被读取时才根据当前快照计算；
+                 更新操作的耗时记录在延迟直方图中。
+                 指标通过JMX（ConfigMetricsMXBean）和拉取式的文本导出（exportText，Prometheus文本格式）对外暴露。
+ */
+@Slf4j
+public class ConfigMetrics implements ConfigMetricsMXBean {
+    //JMX对象名
+    public static final String OBJECT_NAME = "org.wyh.gateway:type=DynamicConfigManager";
+    /*
+     * 内存估算使用的近似值（字节），只用于观察趋势，并不精确
+     */
+    //每个服务定义（不含方法调用）
+    private static final long DEFINITION_BYTES = 256;
+    //每个方法调用
+    private static final long INVOKER_BYTES = 160;
+    //每个服务实例视图的固定开销
+    private static final long VIEW_BYTES = 256;
+    //每个服务实例在紧凑存储表中的列
+    private static final long INSTANCE_ROW_BYTES = 48;
+    //每个服务实例在视图中的索引开销（查找表，标志位等）
+    private static final long INSTANCE_INDEX_BYTES = 16;
+    //每个参与路由的服务实例对象（对象本身及其字符串，在视图创建时构建，只包含已启用的服务实例）
+    private static final long ROUTING_INSTANCE_BYTES = 240;
+    //每个规则（不含过滤器配置）
+    private static final long RULE_BYTES = 200;
+    //每个过滤器配置
+    private static final long FILTER_CONFIG_BYTES = 120;
+    //提供当前快照
+    private final Supplier<ConfigSnapshot> snapshotSupplier;
+    private final LongAdder serviceDefinitionLookups = new LongAdder();
+    private final LongAdder serviceDefinitionMisses = new LongAdder();
+    private final LongAdder serviceInstanceLookups = new LongAdder();
+    private final LongAdder serviceInstanceMisses = new LongAdder();
+    private final LongAdder ruleLookups = new LongAdder();
+    private final LongAdder ruleMisses = new LongAdder();
+    //更新操作（发布了新快照的写操作）的耗时
+    private final LatencyHistogram updateLatency = new LatencyHistogram();
+    /**
+     * @date: 2024-05-28 9:50
+     * @description: 有参构造器
+     * @Param snapshotSupplier: 提供当前快照
+     * @return: null
+     */
+    public ConfigMetrics(Supplier<ConfigSnapshot> snapshotSupplier) {
+        this.snapshotSupplier = snapshotSupplier;
+    }
+    /**
+     * @date: 2024-05-28 9:52
+     * @description: 将指标注册到平台MBeanServer中。注册失败（例如重复注册）时只记录日志。
+     * @return: void
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (Exception e) {
+            log.warn("【配置指标】JMX注册失败: {}", OBJECT_NAME, e);
+        }
+    }
+    /*
+     * 供DynamicConfigManager调用的记录方法
+     */
+    public void recordServiceDefinitionLookup(boolean hit) {
+        serviceDefinitionLookups.increment();
+        if (!hit) {
+            serviceDefinitionMisses.increment();
+        }
+    }
+
+    public void recordServiceInstanceLookup(boolean hit) {
+        serviceInstanceLookups.increment();
+        if (!hit) {
+            serviceInstanceMisses.increment();
+        }
+    }
+
+    public void recordRuleLookup(boolean hit) {
+        ruleLookups.increment();
+        if (!hit) {
+            ruleMisses.increment();
+        }
+    }
+
+    public void recordUpdate(long nanos) {
+        updateLatency.record(nanos);
+    }
+    /*
+     * 配置规模相关的指标
+     */
+    @Override
+    public long getGeneration() {
+        return snapshotSupplier.get().getGeneration();
+    }
+
+    @Override
+    public int getServiceDefinitionCount() {
+        return snapshotSupplier.get().getServiceDefinitionMap().size();
+    }
+
+    @Override
+    public int getServiceCount() {
+        return snapshotSupplier.get().getServiceInstanceViewMap().size();
+    }
+
+    @Override
+    public long getServiceInstanceCount() {
+        long count = 0;
+        for (ServiceInstanceView view : snapshotSupplier.get().getServiceInstanceViewMap().values()) {
+            count += view.size();
+        }
+        return count;
+    }
+
+    @Override
+    public int getRuleCount() {
+        return snapshotSupplier.get().getRuleMap().size();
+    }
+
+    @Override
+    public Map<String, Integer> getServiceInstanceCounts() {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Map.Entry<String, ServiceInstanceView> entry : snapshotSupplier.get().getServiceInstanceViewMap().entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().size());
+        }
+        return counts;
+    }
+    /**
+     * @date: 2024-05-28 10:00
+     * @description: 根据当前快照估算配置占用的内存（字节）。该值是按对象个数乘以经验值得到的，只能用于观察趋势。
+     * @return: long
+     */
+    @Override
+    public long getEstimatedMemoryBytes() {
+        ConfigSnapshot snapshot = snapshotSupplier.get();
+        long bytes = 0;
+        for (ServiceDefinition definition : snapshot.getServiceDefinitionMap().values()) {
+            bytes += DEFINITION_BYTES;
+            if (definition.getInvokerMap() != null) {
+                bytes += INVOKER_BYTES * definition.getInvokerMap().size();
+            }
+        }
+        for (ServiceInstanceView view : snapshot.getServiceInstanceViewMap().values()) {
+            bytes += VIEW_BYTES + (INSTANCE_ROW_BYTES + INSTANCE_INDEX_BYTES) * view.size()
+                    + ROUTING_INSTANCE_BYTES * view.getEnabledCount();
+        }
+        for (Rule rule : snapshot.getRuleMap().values()) {
+            bytes += RULE_BYTES;
+            if (rule.getFilterConfigs() != null) {
+                bytes += FILTER_CONFIG_BYTES * rule.getFilterConfigs().size();
+            }
+        }
+        return bytes;
+    }
+    /*
+     * 计数器和延迟指标
+     */
+    @Override
+    public long getServiceDefinitionLookups() {
+        return serviceDefinitionLookups.sum();
+    }
+
+    @Override
+    public long getServiceDefinitionMisses() {
+        return serviceDefinitionMisses.sum();
+    }
+
+    @Override
+    public long getServiceInstanceLookups() {
+        return serviceInstanceLookups.sum();
+    }
+
+    @Override
+    public long getServiceInstanceMisses() {
+        return serviceInstanceMisses.sum();
+    }
+
+    @Override
+    public long getRuleLookups() {
+        return ruleLookups.sum();
+    }
+
+    @Override
+    public long getRuleMisses() {
+        return ruleMisses.sum();
+    }
+
+    @Override
+    public long getUpdateCount() {
+        return updateLatency.getCount();
+    }
+
+    @Override
+    public double getUpdateLatencyMeanMicros() {
+        long count = updateLatency.getCount();
+        return count == 0 ? 0.0 : updateLatency.getSumNanos() / 1000.0 / count;
+    }
+
+    @Override
+    public long getUpdateLatencyP50Micros() {
+        return updateLatency.quantileMicros(0.5);
+    }
+
+    @Override
+    public long getUpdateLatencyP99Micros() {
+        return updateLatency.quantileMicros(0.99);
+    }
+
+    public LatencyHistogram getUpdateLatency() {
+        return updateLatency;
+    }
+    /**
+     * @date: 2024-05-28 10:10
+     * @description: 以Prometheus文本格式导出全部指标（供拉取式的监控系统使用）
+     * @return: java.lang.String
+     */
+    @Override
+    public String exportText() {
+        StringBuilder sb = new StringBuilder(1024);
+        gauge(sb, "gateway_config_generation", "Current config snapshot generation", getGeneration());
+        gauge(sb, "gateway_config_service_definitions", "Number of service definitions", getServiceDefinitionCount());
+        gauge(sb, "gateway_config_rules", "Number of rules", getRuleCount());
+        gauge(sb, "gateway_config_estimated_memory_bytes", "Estimated heap used by config", getEstimatedMemoryBytes());
+        sb.append("# HELP gateway_config_service_instances Number of instances per service\n")
+                .append("# TYPE gateway_config_service_instances gauge\n");
+        for (Map.Entry<String, Integer> entry : getServiceInstanceCounts().entrySet()) {
+            sb.append("gateway_config_service_instances{uniqueId=\"").append(escape(entry.getKey())).append("\"} ")
+                    .append(entry.getValue()).append('\n');
+        }
+        counter(sb, "gateway_config_service_definition_lookups_total", "getServiceDefinition calls",
+                getServiceDefinitionLookups());
+        counter(sb, "gateway_config_service_definition_misses_total", "getServiceDefinition misses",
+                getServiceDefinitionMisses());
+        counter(sb, "gateway_config_service_instance_lookups_total", "getServiceInstanceByUniqueId calls",
+                getServiceInstanceLookups());
+        counter(sb, "gateway_config_service_instance_misses_total", "getServiceInstanceByUniqueId empty results",
+                getServiceInstanceMisses());
+        counter(sb, "gateway_config_rule_lookups_total", "getRule calls", getRuleLookups());
+        counter(sb, "gateway_config_rule_misses_total", "getRule misses", getRuleMisses());
+        sb.append("# HELP gateway_config_update_latency_seconds Latency of applying a config update\n")
+                .append("# TYPE gateway_config_update_latency_seconds histogram\n");
+        long cumulative = 0;
+        for (int i = 0; i < LatencyHistogram.bucketCount(); i++) {
+            cumulative += updateLatency.getBucket(i);
+            long bound = LatencyHistogram.upperBoundMicros(i);
+            sb.append("gateway_config_update_latency_seconds_bucket{le=\"")
+                    .append(bound == Long.MAX_VALUE ? "+Inf" : Double.toString(bound / 1_000_000.0))
+                    .append("\"} ").append(cumulative).append('\n');
+        }
+        sb.append("gateway_config_update_latency_seconds_sum ").append(updateLatency.getSumNanos() / 1e9).append('\n')
+                .append("gateway_config_update_latency_seconds_count ").append(updateLatency.getCount()).append('\n');
+        return sb.toString();
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, long value) {
+        metric(sb, name, help, "gauge", value);
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, long value) {
+        metric(sb, name, help, "counter", value);
+    }
+
+    private static void metric(StringBuilder sb, String name, String help, String type, long value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(' ').append(type).append('\n')
+                .append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,49 @@
+package org.wyh.gateway.common.config.metrics;
+
+import java.util.Map;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.metrics
+ * @Author: wyh
+ * @Date: 2024-05-28 9:30
+ * @Description: DynamicConfigManager指标的JMX接口，注册在“org.wyh.gateway:type=DynamicConfigManager”下
+ */
+public interface ConfigMetricsMXBean {
+
+    long getGeneration();
+
+    int getServiceDefinitionCount();
+
+    int getServiceCount();
+
+    long getServiceInstanceCount();
+
+    int getRuleCount();
+
+    Map<String, Integer> getServiceInstanceCounts();
+
+    long getEstimatedMemoryBytes();
+
+    long getServiceDefinitionLookups();
+
+    long getServiceDefinitionMisses();
+
+    long getServiceInstanceLookups();
+
+    long getServiceInstanceMisses();
+
+    long getRuleLookups();
+
+    long getRuleMisses();
+
+    long getUpdateCount();
+
+    double getUpdateLatencyMeanMicros();
+
+    long getUpdateLatencyP50Micros();
+
+    long getUpdateLatencyP99Micros();
+
+    String exportText();
+}
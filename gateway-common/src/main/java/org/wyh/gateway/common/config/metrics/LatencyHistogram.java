@@ -0,0 +1,99 @@
+package org.wyh.gateway.common.config.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config.metrics
+ * @Author: wyh
+ * @Date: 2024-05-28 9:10
+ * @Description: 延迟直方图。桶的上界按2的幂划分（1us，2us，4us，...，约1s），最后一个桶保存超过上界的样本。
+                 每个桶都是一个LongAdder，记录样本时不需要加锁，适合在写操作中高频调用。
+ */
+public final class LatencyHistogram {
+    //有上界的桶的个数，最大上界为2^20us（约1s）
+    private static final int BOUNDED_BUCKETS = 21;
+    //各个桶的计数，最后一个桶为溢出桶
+    private final LongAdder[] buckets = new LongAdder[BOUNDED_BUCKETS + 1];
+    //样本总数
+    private final LongAdder count = new LongAdder();
+    //样本延迟之和（ns）
+    private final LongAdder sumNanos = new LongAdder();
+    /**
+     * @date: 2024-05-28 9:12
+     * @description: 无参构造器
+     * @return: null
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+    /**
+     * @date: 2024-05-28 9:15
+     * @description: 记录一个样本
+     * @Param nanos: 延迟（ns）
+     * @return: void
+     */
+    public void record(long nanos) {
+        //向上取整到us，保证样本不会落入上界小于其实际延迟的桶（例如1999ns属于上界为2us的桶，而不是1us）
+        long positive = Math.max(nanos, 0L);
+        long micros = positive / 1000L + (positive % 1000L == 0 ? 0 : 1);
+        //上界为2^i us的桶保存(2^(i-1), 2^i]us的样本
+        int index = micros <= 1L ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+        buckets[Math.min(index, BOUNDED_BUCKETS)].increment();
+        count.increment();
+        sumNanos.add(nanos);
+    }
+    /**
+     * @date: 2024-05-28 9:20
+     * @description: 获取第i个桶的上界（us），溢出桶返回Long.MAX_VALUE
+     * @Param i:
+     * @return: long
+     */
+    public static long upperBoundMicros(int i) {
+        return i >= BOUNDED_BUCKETS ? Long.MAX_VALUE : 1L << i;
+    }
+
+    public static int bucketCount() {
+        return BOUNDED_BUCKETS + 1;
+    }
+
+    public long getBucket(int i) {
+        return buckets[i].sum();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+    /**
+     * @date: 2024-05-28 9:25
+     * @description: 根据桶估算分位数，返回该分位数所在桶的上界（us）。没有样本时返回0。
+     * @Param quantile: 0到1之间的分位数
+     * @return: long
+     */
+    public long quantileMicros(double quantile) {
+        long[] snapshot = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            snapshot[i] = buckets[i].sum();
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBoundMicros(i);
+            }
+        }
+        return upperBoundMicros(snapshot.length - 1);
+    }
+}
@@ -18,6 +18,14 @@ public interface FilterConst {
     int LOAD_BALANCE_FILTER_ORDER = 100;
     String LOAD_BALANCE_STRATEGY_RANDOM = "Random";
     String LOAD_BALANCE_STRATEGY_ROUND_ROBIN = "RoundRobin";
+    //P2C策略：随机选两个实例，选择in-flight请求数和响应时间EWMA综合代价较小的那个
+    String LOAD_BALANCE_STRATEGY_P2C = "P2C";
+    //一致性哈希策略：根据请求中的key（请求头，cookie或查询参数）将请求固定转发到同一个实例
+    String LOAD_BALANCE_STRATEGY_CONSISTENT_HASH = "ConsistentHash";
+    //一致性哈希key的来源类型
+    String LOAD_BALANCE_HASH_KEY_HEADER = "header";
+    String LOAD_BALANCE_HASH_KEY_COOKIE = "cookie";
+    String LOAD_BALANCE_HASH_KEY_QUERY = "query";
     /*
      * 流量控制过滤器相关常量
      */
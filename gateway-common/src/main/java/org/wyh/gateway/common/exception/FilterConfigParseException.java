@@ -0,0 +1,35 @@
+package org.wyh.gateway.common.exception;
+
+import lombok.Getter;
+import org.wyh.gateway.common.enumeration.ResponseCode;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.exception
+ * @Author: wyh
+ * @Date: 2024-06-01 9:50
+ * @Description: 过滤器配置解析异常，在规则加载时发现过滤器配置不合法时抛出
+ */
+public class FilterConfigParseException extends BaseException{
+    private static final long serialVersionUID = 1L;
+    //配置所属的规则id
+    @Getter
+    private String ruleId;
+    //配置不合法的过滤器id
+    @Getter
+    private String filterId;
+    /*
+     * 以下是一系列不同参数的构造函数
+     */
+    public FilterConfigParseException(String ruleId, String filterId, ResponseCode code) {
+        super(code.getMessage() + ": ruleId=" + ruleId + ", filterId=" + filterId, code);
+        this.ruleId = ruleId;
+        this.filterId = filterId;
+    }
+
+    public FilterConfigParseException(Throwable cause, String ruleId, String filterId, ResponseCode code) {
+        super(code.getMessage() + ": ruleId=" + ruleId + ", filterId=" + filterId, cause, code);
+        this.ruleId = ruleId;
+        this.filterId = filterId;
+    }
+}
@@ -0,0 +1,42 @@
+package org.wyh.gateway.common.loadbalance;
+
+import org.wyh.gateway.common.config.ServiceInstance;
+import org.wyh.gateway.common.constant.FilterConst;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.loadbalance
+ * @Author: wyh
+ * @Date: 2024-05-23 10:30
+ * @Description: 一致性哈希负载均衡策略，基于Maglev查找表实现。
+                 相同key的请求总是被转发到同一个服务实例，适用于在本地缓存大量用户数据的后台服务。
+                 key由HashKeyExtractor从请求头，cookie或查询参数中提取；请求中没有key时退化为加权随机。
+ */
+public class ConsistentHashLoadBalanceStrategy implements LoadBalanceStrategy {
+
+    @Override
+    public String getName() {
+        return FilterConst.LOAD_BALANCE_STRATEGY_CONSISTENT_HASH;
+    }
+
+    @Override
+    public ServiceInstance choose(WeightedInstanceTable table) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return table.pickRandom(random.nextDouble(), random.nextDouble());
+    }
+
+    @Override
+    public ServiceInstance choose(WeightedInstanceTable table, long keyHash) {
+        if (keyHash == HashKeyExtractor.NO_KEY) {
+            return choose(table);
+        }
+        return table.getMaglevTable().lookup(keyHash);
+    }
+
+    @Override
+    public boolean requiresMaglevTable() {
+        return true;
+    }
+}
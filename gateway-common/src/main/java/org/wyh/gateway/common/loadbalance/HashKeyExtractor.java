@@ -0,0 +1,123 @@
+package org.wyh.gateway.common.loadbalance;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
+import org.wyh.gateway.common.constant.FilterConst;
+
+import java.util.Locale;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.loadbalance
+ * @Author: wyh
+ * @Date: 2024-05-23 10:00
+ * @Description: 一致性哈希key的提取器，根据配置从请求头，cookie或查询参数中取出key并计算哈希值。
+                 cookie和查询参数都是直接在原始字符串上按下标扫描的，不会解码或创建子串，因此提取过程不会创建任何对象。
+                 注意：查询参数的值不做URL解码，同一个值只要编码方式一致，就会得到相同的哈希值。
+ */
+public final class HashKeyExtractor {
+    //请求中不存在key时返回该值
+    public static final long NO_KEY = -1L;
+    //key的来源类型，见FilterConst.LOAD_BALANCE_HASH_KEY_*
+    private final String source;
+    //请求头/cookie/查询参数的名称
+    private final String name;
+    /**
+     * @date: 2024-05-23 10:05
+     * @description: 有参构造器
+     * @Param source: key的来源类型：header，cookie或query
+     * @Param name: 请求头/cookie/查询参数的名称
+     * @return: null
+     */
+    public HashKeyExtractor(String source, String name) {
+        if (!FilterConst.LOAD_BALANCE_HASH_KEY_HEADER.equalsIgnoreCase(source)
+                && !FilterConst.LOAD_BALANCE_HASH_KEY_COOKIE.equalsIgnoreCase(source)
+                && !FilterConst.LOAD_BALANCE_HASH_KEY_QUERY.equalsIgnoreCase(source)) {
+            throw new IllegalArgumentException("unsupported hash key source: " + source);
+        }
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("hash key name must not be empty");
+        }
+        this.source = source.toLowerCase(Locale.ROOT);
+        this.name = name;
+    }
+    /**
+     * @date: 2024-05-23 10:10
+     * @description: 从请求中提取key，并返回其哈希值（非负）。请求中不存在key时返回NO_KEY。
+     * @Param request:
+     * @return: long
+     */
+    public long extractHash(HttpRequest request) {
+        switch (source) {
+            case FilterConst.LOAD_BALANCE_HASH_KEY_HEADER: {
+                String value = request.headers().get(name);
+                return value == null ? NO_KEY : toKeyHash(value, 0, value.length());
+            }
+            case FilterConst.LOAD_BALANCE_HASH_KEY_COOKIE: {
+                String cookie = request.headers().get(HttpHeaderNames.COOKIE);
+                return cookie == null ? NO_KEY : scan(cookie, ';', true);
+            }
+            default: {
+                String uri = request.uri();
+                int question = uri.indexOf('?');
+                return question < 0 ? NO_KEY : scanFrom(uri, question + 1, '&', false);
+            }
+        }
+    }
+    /**
+     * @date: 2024-05-23 10:15
+     * @description: 在形如“k1=v1<sep>k2=v2”的字符串中查找名称为name的值，并返回其哈希值
+     * @Param chars:
+     * @Param separator: 键值对之间的分隔符
+     * @Param trim: 是否忽略键名前的空格（cookie中分号后通常跟着一个空格）
+     * @return: long
+     */
+    private long scan(CharSequence chars, char separator, boolean trim) {
+        return scanFrom(chars, 0, separator, trim);
+    }
+
+    private long scanFrom(CharSequence chars, int from, char separator, boolean trim) {
+        int length = chars.length();
+        int pos = from;
+        while (pos < length) {
+            int end = pos;
+            while (end < length && chars.charAt(end) != separator) {
+                end++;
+            }
+            int keyStart = pos;
+            if (trim) {
+                while (keyStart < end && chars.charAt(keyStart) == ' ') {
+                    keyStart++;
+                }
+            }
+            int keyEnd = keyStart + name.length();
+            if (keyEnd < end && chars.charAt(keyEnd) == '=' && regionMatches(chars, keyStart, name)) {
+                return toKeyHash(chars, keyEnd + 1, end);
+            }
+            pos = end + 1;
+        }
+        return NO_KEY;
+    }
+
+    private static boolean regionMatches(CharSequence chars, int start, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (chars.charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long toKeyHash(CharSequence chars, int start, int end) {
+        //取非负值，与NO_KEY区分开
+        return MaglevTable.hash(chars, start, end, 0L) >>> 1;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,111 @@
+package org.wyh.gateway.common.loadbalance;
+
+import org.wyh.gateway.common.config.DynamicConfigManager;
+import org.wyh.gateway.common.config.ServiceInstance;
+import org.wyh.gateway.common.config.ServiceInstanceView;
+import org.wyh.gateway.common.config.event.ConfigChangeEvent;
+import org.wyh.gateway.common.config.event.ConfigChangeType;
+import org.wyh.gateway.common.config.event.ServiceInstanceChangeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.loadbalance
+ * @Author: wyh
+ * @Date: 2024-05-22 9:40
+ * @Description: 服务实例负载跟踪器，负责维护每个服务实例的负载统计信息（in-flight请求数和响应时间EWMA）。
+                 使用方式：选出服务实例后调用track得到统计对象，转发前调用其start方法记录开始时间，请求结束时再调用finish方法。
+                 统计信息按服务（uniqueId）和服务实例（serviceInstanceId）两级保存：同一个实例注册在多个服务下时，
+                 各个服务的in-flight请求数和EWMA相互独立，某个服务下线该实例也不会影响其他服务的统计信息。
+                 服务实例下线时，对应的统计信息会随服务实例变更事件一起被清理。
+ */
+public class InstanceLoadTracker {
+    //服务实例的负载统计信息。外层key为服务定义的uniqueId，内层key为serviceInstanceId
+    private final Map<String, Map<String, InstanceStats>> statsMap = new ConcurrentHashMap<>();
+    /**
+     * @date: 2024-05-22 9:45
+     * @description: private修饰的无参构造器，订阅服务实例变更事件，用于清理下线实例的统计信息
+     * @return: null
+     */
+    private InstanceLoadTracker() {
+        DynamicConfigManager.getInstance().addConfigChangeListener(this::onConfigChange,
+                ConfigChangeType.SERVICE_INSTANCES_CHANGED);
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.loadbalance
+     * @Author: wyh
+     * @Date: 2024-05-22 9:46
+     * @Description: 静态内部类，用于实现单例模式
+     */
+    private static class SingletonHolder {
+        private static final InstanceLoadTracker INSTANCE = new InstanceLoadTracker();
+    }
+    /**
+     * @date: 2024-05-22 9:47
+     * @description: 获取该类的单例对象
+     * @return: org.wyh.gateway.common.loadbalance.InstanceLoadTracker
+     */
+    public static InstanceLoadTracker getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+    /**
+     * @date: 2024-05-22 9:48
+     * @description: 获取服务实例的统计信息，不存在时创建
+     * @Param uniqueId:
+     * @Param serviceInstanceId:
+     * @return: org.wyh.gateway.common.loadbalance.InstanceStats
+     */
+    public InstanceStats getStats(String uniqueId, String serviceInstanceId) {
+        Map<String, InstanceStats> serviceStats = statsMap.get(uniqueId);
+        if (serviceStats == null) {
+            serviceStats = statsMap.computeIfAbsent(uniqueId, key -> new ConcurrentHashMap<>());
+        }
+        InstanceStats stats = serviceStats.get(serviceInstanceId);
+        if (stats == null) {
+            stats = serviceStats.computeIfAbsent(serviceInstanceId, InstanceStats::new);
+        }
+        return stats;
+    }
+    /**
+     * @date: 2024-05-22 9:50
+     * @description: 获取服务实例的统计信息，不存在时返回null（不会创建新对象）
+     * @Param uniqueId:
+     * @Param serviceInstanceId:
+     * @return: org.wyh.gateway.common.loadbalance.InstanceStats
+     */
+    public InstanceStats peekStats(String uniqueId, String serviceInstanceId) {
+        Map<String, InstanceStats> serviceStats = statsMap.get(uniqueId);
+        return serviceStats == null ? null : serviceStats.get(serviceInstanceId);
+    }
+    /**
+     * @date: 2024-05-22 9:52
+     * @description: 请求转发到服务实例之前调用。返回的统计对象需要在请求结束时调用finish方法。
+     * @Param instance:
+     * @return: org.wyh.gateway.common.loadbalance.InstanceStats
+     */
+    public InstanceStats track(ServiceInstance instance) {
+        return getStats(instance.getUniqueId(), instance.getServiceInstanceId());
+    }
+    /**
+     * @date: 2024-05-22 9:55
+     * @description: 处理服务实例变更事件，清理该服务下已经下线的服务实例的统计信息（不影响其他服务）
+     * @Param event:
+     * @return: void
+     */
+    private void onConfigChange(ConfigChangeEvent event) {
+        ServiceInstanceChangeEvent instanceEvent = (ServiceInstanceChangeEvent) event;
+        Map<String, InstanceStats> serviceStats = statsMap.get(instanceEvent.getUniqueId());
+        if (serviceStats == null) {
+            return;
+        }
+        ServiceInstanceView newView = instanceEvent.getNewView();
+        if (newView.size() == 0) {
+            statsMap.remove(instanceEvent.getUniqueId());
+            return;
+        }
+        serviceStats.keySet().removeIf(serviceInstanceId -> !newView.contains(serviceInstanceId));
+    }
+}
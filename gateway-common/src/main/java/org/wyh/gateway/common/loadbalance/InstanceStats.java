@@ -0,0 +1,155 @@
+package org.wyh.gateway.common.loadbalance;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.loadbalance
+ * @Author: wyh
+ * @Date: 2024-05-22 9:10
+ * @Description: 单个服务实例的负载统计信息，包括正在处理中的请求数（in-flight）和响应时间的EWMA（指数加权移动平均）。
+                 in-flight计数使用分段的LongAdder，多个事件循环线程同时增减时不会竞争同一个变量；
+                 EWMA字段前后做了缓存行填充，避免不同实例的统计信息因位于同一缓存行而产生伪共享。
+                 填充字段放在父类中（InstanceStatsLeftPad/InstanceStatsRightPad）：JVM可以任意重排同一个类中的字段，
+                 但父类的字段总是排在子类字段之前，因此只有这种方式才能保证EWMA字段前后都有填充。
+                 EWMA的值和最近一次样本的时间保存在同一个不可变对象（EwmaState）中，通过一次CAS整体替换，
+                 并发的样本总是基于同一个状态计算衰减。
+                 EWMA采用peak EWMA：新样本大于当前值时直接取新样本，否则按时间衰减，这样能对变慢的实例快速做出反应。
+ */
+public final class InstanceStats extends InstanceStatsRightPad {
+    //EWMA的时间衰减常数（纳秒），即10秒
+    private static final double DECAY_NANOS = 10_000_000_000d;
+    //还没有响应时间样本时使用的默认响应时间（纳秒），即50毫秒。取一个偏保守的值，避免新实例一上线就被大量请求淹没
+    static final long DEFAULT_LATENCY_NANOS = 50_000_000L;
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(InstanceStatsState.class, "state", EwmaState.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    //服务实例id
+    private final String serviceInstanceId;
+    //正在处理中的请求数
+    private final LongAdder inflight = new LongAdder();
+    /**
+     * @date: 2024-05-22 9:20
+     * @description: 有参构造器
+     * @Param serviceInstanceId:
+     * @return: null
+     */
+    InstanceStats(String serviceInstanceId) {
+        this.serviceInstanceId = serviceInstanceId;
+    }
+    /**
+     * @date: 2024-05-22 9:22
+     * @description: 请求开始时调用，in-flight计数加一，并返回开始时间（纳秒），供请求结束时计算响应时间
+     * @return: long
+     */
+    public long start() {
+        inflight.increment();
+        return System.nanoTime();
+    }
+    /**
+     * @date: 2024-05-22 9:25
+     * @description: 请求结束时调用（无论成功与否），in-flight计数减一，并用本次响应时间更新EWMA
+     * @Param startNanos: start方法返回的开始时间
+     * @return: void
+     */
+    public void finish(long startNanos) {
+        inflight.decrement();
+        long now = System.nanoTime();
+        updateEwma(Math.max(now - startNanos, 0), now);
+    }
+    /**
+     * @date: 2024-05-22 9:28
+     * @description: 用新的响应时间样本更新EWMA（CAS，无锁）
+     * @Param latencyNanos:
+     * @Param now:
+     * @return: void
+     */
+    private void updateEwma(long latencyNanos, long now) {
+        EwmaState previous;
+        EwmaState next;
+        do {
+            previous = state;
+            long ewma;
+            if (previous == null || latencyNanos > previous.ewmaNanos) {
+                ewma = latencyNanos;
+            } else {
+                double elapsed = Math.max(now - previous.sampleNanos, 0);
+                double weight = Math.exp(-elapsed / DECAY_NANOS);
+                ewma = (long) (previous.ewmaNanos * weight + latencyNanos * (1 - weight));
+            }
+            //并发的样本可能晚于本次样本完成CAS，时间取两者中较晚的一个，保证时间不会倒退
+            next = new EwmaState(ewma, previous == null ? now : Math.max(now, previous.sampleNanos));
+        } while (!STATE.compareAndSet(this, previous, next));
+    }
+
+    public String getServiceInstanceId() {
+        return serviceInstanceId;
+    }
+    /**
+     * @date: 2024-05-22 9:32
+     * @description: 获取正在处理中的请求数
+     * @return: long
+     */
+    public long getInflight() {
+        return inflight.sum();
+    }
+    /**
+     * @date: 2024-05-22 9:33
+     * @description: 获取响应时间的EWMA（纳秒）。还没有样本时返回默认响应时间
+     * @return: long
+     */
+    public long getEwmaNanos() {
+        EwmaState current = state;
+        return current == null ? DEFAULT_LATENCY_NANOS : current.ewmaNanos;
+    }
+    /**
+     * @date: 2024-05-22 9:35
+     * @description: 计算该实例的负载代价：EWMA * (in-flight + 1) / 权重。代价越小，越应该被选中。
+     * @Param weight: 实例的有效权重（已考虑预热）
+     * @return: double
+     */
+    double cost(int weight) {
+        return (double) getEwmaNanos() * (getInflight() + 1) / Math.max(weight, 1);
+    }
+}
+/*
+ * 缓存行填充：EWMA状态字段（InstanceStatsState.state）前后各有至少64字节的填充字段。
+ * 父类的字段总是排在子类字段之前，因此填充字段的相对位置不受JVM字段重排的影响。
+ */
+abstract class InstanceStatsLeftPad {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class InstanceStatsState extends InstanceStatsLeftPad {
+    //响应时间的EWMA以及最近一次样本的时间。null表示还没有样本
+    volatile EwmaState state;
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.loadbalance
+     * @Author: wyh
+     * @Date: 2024-06-09 14:00
+     * @Description: （不可变）EWMA的值（纳秒）及最近一次更新的时间（System.nanoTime），两者总是一起被替换
+     */
+    static final class EwmaState {
+        final long ewmaNanos;
+        final long sampleNanos;
+
+        EwmaState(long ewmaNanos, long sampleNanos) {
+            this.ewmaNanos = ewmaNanos;
+            this.sampleNanos = sampleNanos;
+        }
+    }
+}
+
+abstract class InstanceStatsRightPad extends InstanceStatsState {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
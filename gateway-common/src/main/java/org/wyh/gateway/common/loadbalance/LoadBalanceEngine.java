@@ -0,0 +1,242 @@
+package org.wyh.gateway.common.loadbalance;
+
+import org.wyh.gateway.common.config.DynamicConfigManager;
+import org.wyh.gateway.common.config.ServiceInstance;
+import org.wyh.gateway.common.config.ServiceInstanceView;
+import org.wyh.gateway.common.config.event.ConfigChangeEvent;
+import org.wyh.gateway.common.config.event.ConfigChangeType;
+import org.wyh.gateway.common.config.event.ServiceInstanceChangeEvent;
+import org.wyh.gateway.common.utils.TimeUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.loadbalance
+ * @Author: wyh
+ * @Date: 2024-05-21 10:40
+ * @Description: 负载均衡引擎，负责为每个uniqueId的灰度/正常服务实例维护预编译的加权服务实例表，并按策略选择服务实例。
+                 加权表在第一次被使用时构建（在map的锁之外构建，不会阻塞其他服务的查找），
+                 之后通过监听DynamicConfigManager的服务实例变更事件，在配置变更的通知线程上重建；
+                 预热等级变化时，由后台线程在表的过期时间（expireTime）定时重建，请求线程始终直接使用当前的表。
+                 使用一致性哈希策略的服务，其Maglev查找表与加权表一起构建（变更事件和预热重建时都在后台线程上完成）。
+                 因此选择过程只涉及map查找和原子操作，多个事件循环线程可以同时使用，不会互相阻塞。
+ */
+public class LoadBalanceEngine {
+    //灰度服务实例的加权表。key为uniqueId
+    private final Map<String, WeightedInstanceTable> grayTables = new ConcurrentHashMap<>();
+    //正常服务实例的加权表。key为uniqueId
+    private final Map<String, WeightedInstanceTable> normalTables = new ConcurrentHashMap<>();
+    //已注册的负载均衡策略。key为策略名称
+    private final Map<String, LoadBalanceStrategy> strategyMap = new ConcurrentHashMap<>();
+    //默认的负载均衡策略（策略名称为空或不存在时使用）
+    private final LoadBalanceStrategy defaultStrategy = new RandomLoadBalanceStrategy();
+    //负责按预热等级定时重建加权表的线程
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "load-balance-table-rebuilder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * @date: 2024-05-21 10:45
+     * @description: private修饰的无参构造器。注册内置策略，并订阅服务实例的变更事件。
+     * @return: null
+     */
+    private LoadBalanceEngine() {
+        registerStrategy(defaultStrategy);
+        registerStrategy(new RoundRobinLoadBalanceStrategy());
+        registerStrategy(new P2CLoadBalanceStrategy(InstanceLoadTracker.getInstance()));
+        registerStrategy(new ConsistentHashLoadBalanceStrategy());
+        DynamicConfigManager.getInstance().addConfigChangeListener(this::onConfigChange,
+                ConfigChangeType.SERVICE_INSTANCES_CHANGED);
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.loadbalance
+     * @Author: wyh
+     * @Date: 2024-05-21 10:46
+     * @Description: 静态内部类，用于实现单例模式
+     */
+    private static class SingletonHolder {
+        private static final LoadBalanceEngine INSTANCE = new LoadBalanceEngine();
+    }
+    /**
+     * @date: 2024-05-21 10:47
+     * @description: 获取该类的单例对象
+     * @return: org.wyh.gateway.common.loadbalance.LoadBalanceEngine
+     */
+    public static LoadBalanceEngine getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+    /**
+     * @date: 2024-05-21 10:48
+     * @description: 注册（或覆盖）负载均衡策略
+     * @Param strategy:
+     * @return: void
+     */
+    public void registerStrategy(LoadBalanceStrategy strategy) {
+        strategyMap.put(strategy.getName(), strategy);
+    }
+    /**
+     * @date: 2024-05-21 10:50
+     * @description: 根据策略名称获取负载均衡策略。名称为空或不存在时，返回默认的随机策略。
+     * @Param strategyName:
+     * @return: org.wyh.gateway.common.loadbalance.LoadBalanceStrategy
+     */
+    public LoadBalanceStrategy getStrategy(String strategyName) {
+        LoadBalanceStrategy strategy = strategyName == null ? null : strategyMap.get(strategyName);
+        return strategy == null ? defaultStrategy : strategy;
+    }
+    /**
+     * @date: 2024-05-21 10:52
+     * @description: 按照指定策略，从uniqueId对应的灰度/正常服务实例中选择一个。没有可用实例时返回null。
+     * @Param uniqueId:
+     * @Param gray:
+     * @Param strategyName: 负载均衡策略名称，见FilterConst.LOAD_BALANCE_STRATEGY_*
+     * @return: org.wyh.gateway.common.config.ServiceInstance
+     */
+    public ServiceInstance choose(String uniqueId, boolean gray, String strategyName) {
+        LoadBalanceStrategy strategy = getStrategy(strategyName);
+        WeightedInstanceTable table = getTable(uniqueId, gray, strategy.requiresMaglevTable());
+        if (table.isEmpty()) {
+            return null;
+        }
+        return strategy.choose(table);
+    }
+    /**
+     * @date: 2024-05-23 10:45
+     * @description: 按照指定策略和key的哈希值选择服务实例（用于一致性哈希等基于key的策略）。没有可用实例时返回null。
+     * @Param uniqueId:
+     * @Param gray:
+     * @Param strategyName:
+     * @Param keyHash: key的哈希值，见HashKeyExtractor.extractHash
+     * @return: org.wyh.gateway.common.config.ServiceInstance
+     */
+    public ServiceInstance choose(String uniqueId, boolean gray, String strategyName, long keyHash) {
+        LoadBalanceStrategy strategy = getStrategy(strategyName);
+        WeightedInstanceTable table = getTable(uniqueId, gray, strategy.requiresMaglevTable());
+        if (table.isEmpty()) {
+            return null;
+        }
+        return strategy.choose(table, keyHash);
+    }
+    /**
+     * @date: 2024-05-21 10:55
+     * @description: 获取uniqueId对应的加权表，不存在时构建
+     * @Param uniqueId:
+     * @Param gray:
+     * @return: org.wyh.gateway.common.loadbalance.WeightedInstanceTable
+     */
+    public WeightedInstanceTable getTable(String uniqueId, boolean gray) {
+        return getTable(uniqueId, gray, false);
+    }
+    /**
+     * @date: 2024-06-09 13:30
+     * @description: 获取uniqueId对应的加权表，不存在时构建
+     * @Param uniqueId:
+     * @Param gray:
+     * @Param withMaglev: 构建时是否同时构建一致性哈希查找表
+     * @return: org.wyh.gateway.common.loadbalance.WeightedInstanceTable
+     */
+    private WeightedInstanceTable getTable(String uniqueId, boolean gray, boolean withMaglev) {
+        Map<String, WeightedInstanceTable> tables = gray ? grayTables : normalTables;
+        WeightedInstanceTable table = tables.get(uniqueId);
+        return table == null ? buildTable(tables, uniqueId, gray, withMaglev) : table;
+    }
+    /**
+     * @date: 2024-06-09 11:20
+     * @description: 第一次使用时构建加权表。表在map的锁之外构建，再通过putIfAbsent发布（并发构建时只保留第一个）。
+                     发布之后若视图已经变化，说明对应的变更事件可能在发布之前就已经处理完（当时还没有这张表），
+                     此时撤回这张表并根据最新的视图重新构建，保证保存的表不会落后于最新的视图。
+     * @Param tables:
+     * @Param uniqueId:
+     * @Param gray:
+     * @Param withMaglev:
+     * @return: org.wyh.gateway.common.loadbalance.WeightedInstanceTable
+     */
+    private WeightedInstanceTable buildTable(Map<String, WeightedInstanceTable> tables, String uniqueId, boolean gray,
+                                             boolean withMaglev) {
+        DynamicConfigManager configManager = DynamicConfigManager.getInstance();
+        while (true) {
+            ServiceInstanceView view = configManager.getServiceInstanceView(uniqueId);
+            WeightedInstanceTable table = new WeightedInstanceTable(view.getInstances(gray),
+                    TimeUtil.currentTimeMillis(), 0L, withMaglev);
+            WeightedInstanceTable existing = tables.putIfAbsent(uniqueId, table);
+            if (existing != null) {
+                return existing;
+            }
+            if (configManager.getServiceInstanceView(uniqueId) == view) {
+                scheduleRebuild(tables, uniqueId, table);
+                return table;
+            }
+            tables.remove(uniqueId, table);
+        }
+    }
+    /**
+     * @date: 2024-06-09 11:25
+     * @description: 若表中有预热中的实例，则在表的过期时间安排一次重建
+     * @Param tables:
+     * @Param uniqueId:
+     * @Param table:
+     * @return: void
+     */
+    private void scheduleRebuild(Map<String, WeightedInstanceTable> tables, String uniqueId,
+                                 WeightedInstanceTable table) {
+        if (table.getExpireTime() == Long.MAX_VALUE) {
+            return;
+        }
+        long delay = Math.max(table.getExpireTime() - TimeUtil.currentTimeMillis(), 1L);
+        rebuilder.schedule(() -> rebuildExpired(tables, uniqueId, table), delay, TimeUnit.MILLISECONDS);
+    }
+    /**
+     * @date: 2024-06-09 11:30
+     * @description: 预热等级变化后重建加权表（后台线程执行）。若表已经被变更事件替换，则放弃本次重建，
+                     替换它的新表会安排自己的重建。
+     * @Param tables:
+     * @Param uniqueId:
+     * @Param table:
+     * @return: void
+     */
+    private void rebuildExpired(Map<String, WeightedInstanceTable> tables, String uniqueId,
+                                WeightedInstanceTable table) {
+        if (tables.get(uniqueId) != table) {
+            return;
+        }
+        WeightedInstanceTable newTable = table.rebuild(TimeUtil.currentTimeMillis());
+        if (tables.replace(uniqueId, table, newTable)) {
+            scheduleRebuild(tables, uniqueId, newTable);
+        }
+    }
+    /**
+     * @date: 2024-05-21 11:00
+     * @description: 处理服务实例变更事件：已经构建过的加权表会根据最新视图重建（旧表有一致性哈希查找表时，新表同时构建），
+                     视图为空时直接移除。
+                     这里读取的是DynamicConfigManager中的最新视图，而不是事件中的视图，以免排队中的旧事件覆盖掉更新的表。
+     * @Param event:
+     * @return: void
+     */
+    private void onConfigChange(ConfigChangeEvent event) {
+        String uniqueId = ((ServiceInstanceChangeEvent) event).getUniqueId();
+        ServiceInstanceView newView = DynamicConfigManager.getInstance().getServiceInstanceView(uniqueId);
+        long now = TimeUtil.currentTimeMillis();
+        if (newView.size() == 0) {
+            grayTables.remove(uniqueId);
+            normalTables.remove(uniqueId);
+            return;
+        }
+        WeightedInstanceTable grayTable = grayTables.computeIfPresent(uniqueId, (key, old) ->
+                new WeightedInstanceTable(newView.getInstances(true), now, 0L, old.hasMaglevTable()));
+        WeightedInstanceTable normalTable = normalTables.computeIfPresent(uniqueId, (key, old) ->
+                new WeightedInstanceTable(newView.getInstances(false), now, 0L, old.hasMaglevTable()));
+        if (grayTable != null) {
+            scheduleRebuild(grayTables, uniqueId, grayTable);
+        }
+        if (normalTable != null) {
+            scheduleRebuild(normalTables, uniqueId, normalTable);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.wyh.gateway.common.loadbalance;
+
+import org.wyh.gateway.common.config.ServiceInstance;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.loadbalance
+ * @Author: wyh
+ * @Date: 2024-05-21 10:20
+ * @Description: 负载均衡策略接口。实现类必须是线程安全的，并且不能在选择过程中加锁。
+ */
+public interface LoadBalanceStrategy {
+    /**
+     * @date: 2024-05-21 10:22
+     * @description: 获取策略名称，对应load_balance_filter配置中的策略字符串（见FilterConst）
+     * @return: java.lang.String
+     */
+    String getName();
+    /**
+     * @date: 2024-05-21 10:24
+     * @description: 从加权服务实例表中选择一个服务实例
+     * @Param table: 非空的加权服务实例表
+     * @return: org.wyh.gateway.common.config.ServiceInstance
+     */
+    ServiceInstance choose(WeightedInstanceTable table);
+    /**
+     * @date: 2024-05-23 10:40
+     * @description: 根据key的哈希值从加权服务实例表中选择一个服务实例。
+                     只有基于key的策略（例如一致性哈希）才需要重写该方法，其他策略直接忽略key。
+     * @Param table: 非空的加权服务实例表
+     * @Param keyHash: key的哈希值，见HashKeyExtractor
+     * @return: org.wyh.gateway.common.config.ServiceInstance
+     */
+    default ServiceInstance choose(WeightedInstanceTable table, long keyHash) {
+        return choose(table);
+    }
+    /**
+     * @date: 2024-06-09 13:10
+     * @description: 是否需要加权表的一致性哈希查找表。返回true时，查找表会与加权表一起构建（而不是在请求线程上第一次使用时构建）。
+     * @return: boolean
+     */
+    default boolean requiresMaglevTable() {
+        return false;
+    }
+}
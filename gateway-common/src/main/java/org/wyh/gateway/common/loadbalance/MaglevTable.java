@@ -0,0 +1,119 @@
+package org.wyh.gateway.common.loadbalance;
+
+import org.wyh.gateway.common.config.ServiceInstance;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.loadbalance
+ * @Author: wyh
+ * @Date: 2024-05-23 9:10
+ * @Description: Maglev一致性哈希查找表（参考Google Maglev论文）。
+                 每个服务实例根据自身id的哈希值得到一个槽位排列（offset + k * skip），各实例轮流按排列填充长度为M（质数）的表。
+                 查找时只需计算一次key的哈希并取模，时间复杂度为O(1)，不会创建任何对象。
+                 表的大小M固定为65537，不随实例数变化，排列只取决于实例id和M，且实例在构建前会按id排序，
+                 所以增删一个实例时只有约1/n的槽位会改变归属，不同网关节点对同一组实例构建出的表也完全相同。
+                 M远大于实际的实例数，各实例占用的槽位数最多相差约1%；实例数超过M时，多出的实例不会分到槽位。
+                 为了保证缓存亲和性，该表不考虑权重和预热。
+ */
+public final class MaglevTable {
+    //表的大小（质数）。固定不变，实例数变化时不会导致全部key重新映射
+    static final int TABLE_SIZE = 65537;
+    //计算offset和skip时使用的两个哈希种子
+    private static final long OFFSET_SEED = 0x9E3779B97F4A7C15L;
+    private static final long SKIP_SEED = 0xC2B2AE3D27D4EB4FL;
+    //按serviceInstanceId排序后的实例数组
+    private final ServiceInstance[] instances;
+    //查找表，元素为instances数组的下标
+    private final int[] lookup;
+    /**
+     * @date: 2024-05-23 9:20
+     * @description: 有参构造器，根据服务实例数组构建查找表
+     * @Param source: 服务实例数组（不会被修改）
+     * @return: null
+     */
+    MaglevTable(ServiceInstance[] source) {
+        this.instances = source.clone();
+        Arrays.sort(this.instances, Comparator.comparing(ServiceInstance::getServiceInstanceId,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        int n = instances.length;
+        if (n == 0) {
+            this.lookup = new int[0];
+            return;
+        }
+        int m = TABLE_SIZE;
+        long[] offset = new long[n];
+        long[] skip = new long[n];
+        long[] next = new long[n];
+        for (int i = 0; i < n; i++) {
+            String id = String.valueOf(instances[i].getServiceInstanceId());
+            offset[i] = Long.remainderUnsigned(hash(id, 0, id.length(), OFFSET_SEED), m);
+            skip[i] = Long.remainderUnsigned(hash(id, 0, id.length(), SKIP_SEED), m - 1) + 1;
+        }
+        int[] entry = new int[m];
+        Arrays.fill(entry, -1);
+        int filled = 0;
+        while (true) {
+            for (int i = 0; i < n; i++) {
+                //找到实例i的排列中下一个空槽位
+                int slot = (int) ((offset[i] + next[i] * skip[i]) % m);
+                while (entry[slot] >= 0) {
+                    next[i]++;
+                    slot = (int) ((offset[i] + next[i] * skip[i]) % m);
+                }
+                entry[slot] = i;
+                next[i]++;
+                if (++filled == m) {
+                    this.lookup = entry;
+                    return;
+                }
+            }
+        }
+    }
+    /**
+     * @date: 2024-05-23 9:35
+     * @description: 根据key的哈希值查找服务实例（O(1)，无对象创建）
+     * @Param keyHash: key的哈希值，见hash方法
+     * @return: org.wyh.gateway.common.config.ServiceInstance
+     */
+    public ServiceInstance lookup(long keyHash) {
+        return instances[lookup[(int) Long.remainderUnsigned(keyHash, lookup.length)]];
+    }
+
+    public int size() {
+        return lookup.length;
+    }
+    /**
+     * @date: 2024-05-23 9:40
+     * @description: 计算字符序列中[start, end)部分的64位哈希值（FNV-1a + murmur3的fmix64），不会创建任何对象
+     * @Param chars:
+     * @Param start:
+     * @Param end:
+     * @Param seed:
+     * @return: long
+     */
+    public static long hash(CharSequence chars, int start, int end, long seed) {
+        long h = 0xCBF29CE484222325L ^ seed;
+        for (int i = start; i < end; i++) {
+            h ^= chars.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    /**
+     * @date: 2024-05-23 9:42
+     * @description: 计算整个字符序列的哈希值（默认种子）
+     * @Param chars:
+     * @return: long
+     */
+    public static long hash(CharSequence chars) {
+        return hash(chars, 0, chars.length(), 0L);
+    }
+}
@@ -0,0 +1,63 @@
+package org.wyh.gateway.common.loadbalance;
+
+import org.wyh.gateway.common.config.ServiceInstance;
+import org.wyh.gateway.common.constant.FilterConst;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.loadbalance
+ * @Author: wyh
+ * @Date: 2024-05-22 10:00
+ * @Description: P2C（Power of Two Choices）负载均衡策略。
+                 每次随机选出两个不同的实例，比较它们的负载代价（响应时间EWMA * (in-flight请求数 + 1) / 权重），选择代价较小的那个。
+                 与随机和轮询策略不同，它能感知后端的实际负载，让变慢的实例自动分到更少的请求。
+                 负载统计信息由InstanceLoadTracker维护，因此调用方需要在请求前后调用InstanceStats的start/finish方法。
+ */
+public class P2CLoadBalanceStrategy implements LoadBalanceStrategy {
+    //负载跟踪器
+    private final InstanceLoadTracker tracker;
+
+    public P2CLoadBalanceStrategy(InstanceLoadTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    public String getName() {
+        return FilterConst.LOAD_BALANCE_STRATEGY_P2C;
+    }
+
+    @Override
+    public ServiceInstance choose(WeightedInstanceTable table) {
+        ServiceInstance[] instances = table.getInstances();
+        int n = instances.length;
+        if (n == 1) {
+            return instances[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(n);
+        //在剩下的n-1个实例中选择第二个，保证两个实例不同
+        int second = random.nextInt(n - 1);
+        if (second >= first) {
+            second++;
+        }
+        double firstCost = cost(instances[first], table.getWeight(first));
+        double secondCost = cost(instances[second], table.getWeight(second));
+        return firstCost <= secondCost ? instances[first] : instances[second];
+    }
+    /**
+     * @date: 2024-05-22 10:10
+     * @description: 计算实例的负载代价。没有统计信息（从未被跟踪过）的实例，按照默认响应时间和0个in-flight请求计算
+     * @Param instance:
+     * @Param weight:
+     * @return: double
+     */
+    private double cost(ServiceInstance instance, int weight) {
+        InstanceStats stats = tracker.peekStats(instance.getUniqueId(), instance.getServiceInstanceId());
+        if (stats == null) {
+            return (double) InstanceStats.DEFAULT_LATENCY_NANOS / Math.max(weight, 1);
+        }
+        return stats.cost(weight);
+    }
+}
@@ -0,0 +1,28 @@
+package org.wyh.gateway.common.loadbalance;
+
+import org.wyh.gateway.common.config.ServiceInstance;
+import org.wyh.gateway.common.constant.FilterConst;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.loadbalance
+ * @Author: wyh
+ * @Date: 2024-05-21 10:30
+ * @Description: 加权随机负载均衡策略，基于预编译的别名表实现，每次选择的时间复杂度为O(1)
+ */
+public class RandomLoadBalanceStrategy implements LoadBalanceStrategy {
+
+    @Override
+    public String getName() {
+        return FilterConst.LOAD_BALANCE_STRATEGY_RANDOM;
+    }
+
+    @Override
+    public ServiceInstance choose(WeightedInstanceTable table) {
+        //ThreadLocalRandom没有线程间竞争，适合在多个事件循环线程中同时使用
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return table.pickRandom(random.nextDouble(), random.nextDouble());
+    }
+}
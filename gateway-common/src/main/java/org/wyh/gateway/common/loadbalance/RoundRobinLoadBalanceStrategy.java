@@ -0,0 +1,24 @@
+package org.wyh.gateway.common.loadbalance;
+
+import org.wyh.gateway.common.config.ServiceInstance;
+import org.wyh.gateway.common.constant.FilterConst;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.loadbalance
+ * @Author: wyh
+ * @Date: 2024-05-21 10:35
+ * @Description: 平滑加权轮询负载均衡策略，基于预编译的轮询序列和原子计数器实现，不需要加锁
+ */
+public class RoundRobinLoadBalanceStrategy implements LoadBalanceStrategy {
+
+    @Override
+    public String getName() {
+        return FilterConst.LOAD_BALANCE_STRATEGY_ROUND_ROBIN;
+    }
+
+    @Override
+    public ServiceInstance choose(WeightedInstanceTable table) {
+        return table.pickRoundRobin();
+    }
+}
@@ -0,0 +1,350 @@
+package org.wyh.gateway.common.loadbalance;
+
+import org.wyh.gateway.common.config.ServiceInstance;
+import org.wyh.gateway.common.constant.GatewayConst;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.loadbalance
+ * @Author: wyh
+ * @Date: 2024-05-21 9:10
+ * @Description: 预编译的加权服务实例表，对应某一服务（uniqueId）的灰度或正常服务实例。
+                 表在构建时就已经根据权重和预热时间算出了每个实例的有效权重，并生成了两种选择结构：
+                 1.别名表（Alias Method），用于O(1)的加权随机选择；
+                 2.平滑加权轮询（Smooth Weighted Round-Robin）序列，配合原子计数器实现无锁的加权轮询。
+                 预热权重被量化为WARM_UP_STEPS个等级，只有当某个实例跨入下一个预热等级时（expireTime），表才需要重建，
+                 重建由LoadBalanceEngine的后台线程按expireTime定时执行，因此请求路径上既不会计算权重，也不会重建表。
+ */
+public final class WeightedInstanceTable {
+    //预热权重的量化等级数。预热期间，实例的权重会分WARM_UP_STEPS次逐步提升到配置的权重。
+    static final int WARM_UP_STEPS = 10;
+    //平滑加权轮询序列的最大长度（实例数更多时，以实例数为准）
+    private static final int MAX_SEQUENCE_LENGTH = 4096;
+    //服务实例数组（只包含已启用的实例）
+    private final ServiceInstance[] instances;
+    //每个实例的有效权重（已考虑预热）
+    private final int[] weights;
+    //别名表中每一列的概率
+    private final double[] aliasProbability;
+    //别名表中每一列的别名
+    private final int[] alias;
+    //平滑加权轮询序列，元素为实例下标
+    private final int[] roundRobinSequence;
+    //轮询计数器，所有线程共享，通过原子自增实现无锁轮询
+    private final AtomicLong roundRobinCursor;
+    //表的过期时间，即最早一个预热中的实例跨入下一个预热等级的时间。没有预热中的实例时为Long.MAX_VALUE
+    private final long expireTime;
+    //一致性哈希查找表（只为使用一致性哈希策略的服务构建）。它只取决于实例集合，因此预热重建时会直接沿用
+    private volatile MaglevTable maglevTable;
+    /**
+     * @date: 2024-05-21 9:20
+     * @description: 有参构造器，根据服务实例数组和当前时间构建加权表
+     * @Param instances:
+     * @Param now: 当前时间戳，用于计算预热权重
+     * @Param roundRobinStart: 轮询计数器的初始值（表重建时沿用旧表的计数，避免轮询重新从头开始）
+     * @Param withMaglev: 是否同时构建一致性哈希查找表
+     * @return: null
+     */
+    WeightedInstanceTable(ServiceInstance[] instances, long now, long roundRobinStart, boolean withMaglev) {
+        int n = instances.length;
+        this.instances = instances;
+        this.weights = new int[n];
+        long nextExpireTime = Long.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            ServiceInstance instance = instances[i];
+            int weight = instance.getWeight() == null ? GatewayConst.DEFAULT_WEIGHT : instance.getWeight();
+            weight = Math.max(weight, 0);
+            int warmUpTime = instance.getWarmUpTime() == null ? 0 : instance.getWarmUpTime();
+            long uptime = now - instance.getRegisterTime();
+            if (weight > 0 && warmUpTime > 0 && instance.getRegisterTime() > 0 && uptime < warmUpTime) {
+                //预热中的实例：按照已运行时间所处的等级，线性提升权重（至少为1）
+                long step = Math.max(warmUpTime / WARM_UP_STEPS, 1);
+                long level = Math.max(uptime, 0) / step + 1;
+                weight = (int) Math.max(1, weight * Math.min(level, WARM_UP_STEPS) / WARM_UP_STEPS);
+                if (level < WARM_UP_STEPS) {
+                    nextExpireTime = Math.min(nextExpireTime, instance.getRegisterTime() + level * step);
+                }
+            }
+            weights[i] = weight;
+        }
+        this.expireTime = nextExpireTime;
+        this.aliasProbability = new double[n];
+        this.alias = new int[n];
+        buildAliasTable(effectiveWeights(weights), aliasProbability, alias);
+        this.roundRobinSequence = buildRoundRobinSequence(effectiveWeights(weights));
+        this.roundRobinCursor = new AtomicLong(roundRobinStart);
+        this.maglevTable = withMaglev ? new MaglevTable(instances) : null;
+    }
+    /**
+     * @date: 2024-05-21 9:35
+     * @description: 获取参与选择的权重。若所有实例的权重都为0，则退化为等权重。
+     * @Param weights:
+     * @return: int[]
+     */
+    private static int[] effectiveWeights(int[] weights) {
+        for (int weight : weights) {
+            if (weight > 0) {
+                return weights;
+            }
+        }
+        int[] equal = new int[weights.length];
+        Arrays.fill(equal, 1);
+        return equal;
+    }
+    /**
+     * @date: 2024-05-21 9:40
+     * @description: 使用Vose算法构建别名表。构建完成后，加权随机选择只需要一次随机列号和一次随机概率比较。
+     * @Param weights:
+     * @Param probability:
+     * @Param alias:
+     * @return: void
+     */
+    private static void buildAliasTable(int[] weights, double[] probability, int[] alias) {
+        int n = weights.length;
+        if (n == 0) {
+            return;
+        }
+        long total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        double[] scaled = new double[n];
+        Deque<Integer> small = new ArrayDeque<>();
+        Deque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            scaled[i] = (double) weights[i] * n / total;
+            if (scaled[i] < 1.0) {
+                small.push(i);
+            } else {
+                large.push(i);
+            }
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int less = small.pop();
+            int more = large.pop();
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            if (scaled[more] < 1.0) {
+                small.push(more);
+            } else {
+                large.push(more);
+            }
+        }
+        //剩余的列（受浮点误差影响）概率都视为1
+        while (!large.isEmpty()) {
+            int i = large.pop();
+            probability[i] = 1.0;
+            alias[i] = i;
+        }
+        while (!small.isEmpty()) {
+            int i = small.pop();
+            probability[i] = 1.0;
+            alias[i] = i;
+        }
+    }
+    /**
+     * @date: 2024-05-21 9:50
+     * @description: 生成一个完整周期的平滑加权轮询序列。
+                     权重会先除以最大公约数；若总权重超过序列的最大长度，则按比例缩小（每个实例至少保留1）。
+                     每个实例的第s次（从0开始）选择安排在(2s + 1) / (2 * weight)时刻，按时刻从早到晚（相同时按下标）排列，
+                     一个周期（总权重次）内每个实例恰好被选择weight次，且同一实例的选择均匀地分散在整个周期中（与nginx的平滑加权轮询一样，不会连续集中选择权重大的实例）。
+                     用最小堆维护每个实例的下一次选择时刻，构建的时间复杂度为O(len * log n)，
+                     而nginx的算法每一步都要遍历所有实例（O(len * n)）。
+     * @Param weights:
+     * @return: int[]
+     */
+    private static int[] buildRoundRobinSequence(int[] weights) {
+        int n = weights.length;
+        if (n == 0) {
+            return new int[0];
+        }
+        int[] reduced = weights.clone();
+        int gcd = 0;
+        long total = 0;
+        for (int weight : reduced) {
+            gcd = gcd(gcd, weight);
+        }
+        for (int i = 0; i < n; i++) {
+            reduced[i] = gcd > 0 ? reduced[i] / gcd : reduced[i];
+            total += reduced[i];
+        }
+        int maxLength = Math.max(MAX_SEQUENCE_LENGTH, n);
+        if (total > maxLength) {
+            long scaledTotal = 0;
+            for (int i = 0; i < n; i++) {
+                if (reduced[i] > 0) {
+                    reduced[i] = (int) Math.max(1, (long) reduced[i] * maxLength / total);
+                }
+                scaledTotal += reduced[i];
+            }
+            total = scaledTotal;
+        }
+        int[] sequence = new int[(int) total];
+        //已选择的次数，以及按下一次选择时刻排列的最小堆（元素为实例下标，权重为0的实例不参与选择）
+        int[] picked = new int[n];
+        int[] heap = new int[n];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (reduced[i] > 0) {
+                heap[size] = i;
+                siftUp(heap, size++, picked, reduced);
+            }
+        }
+        for (int k = 0; k < sequence.length; k++) {
+            int best = heap[0];
+            sequence[k] = best;
+            picked[best]++;
+            siftDown(heap, 0, size, picked, reduced);
+        }
+        return sequence;
+    }
+    /**
+     * @date: 2024-06-09 11:00
+     * @description: 比较两个实例的下一次选择时刻：(2 * picked[i] + 1) / (2 * weights[i])，时刻相同时下标小的优先
+     * @Param i:
+     * @Param j:
+     * @Param picked:
+     * @Param weights:
+     * @return: boolean 实例i是否排在实例j之前
+     */
+    private static boolean earlier(int i, int j, int[] picked, int[] weights) {
+        long left = (2L * picked[i] + 1) * weights[j];
+        long right = (2L * picked[j] + 1) * weights[i];
+        return left < right || (left == right && i < j);
+    }
+
+    private static void siftUp(int[] heap, int k, int[] picked, int[] weights) {
+        int item = heap[k];
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (!earlier(item, heap[parent], picked, weights)) {
+                break;
+            }
+            heap[k] = heap[parent];
+            k = parent;
+        }
+        heap[k] = item;
+    }
+
+    private static void siftDown(int[] heap, int k, int size, int[] picked, int[] weights) {
+        int item = heap[k];
+        while (true) {
+            int child = 2 * k + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && earlier(heap[child + 1], heap[child], picked, weights)) {
+                child++;
+            }
+            if (!earlier(heap[child], item, picked, weights)) {
+                break;
+            }
+            heap[k] = heap[child];
+            k = child;
+        }
+        heap[k] = item;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+    /**
+     * @date: 2024-05-21 10:00
+     * @description: 加权随机选择一个实例（别名表，O(1)）
+     * @Param random1: [0, 1)之间的随机数，用于选择列
+     * @Param random2: [0, 1)之间的随机数，用于在列与别名之间选择
+     * @return: org.wyh.gateway.common.config.ServiceInstance
+     */
+    ServiceInstance pickRandom(double random1, double random2) {
+        int column = (int) (random1 * instances.length);
+        return random2 < aliasProbability[column] ? instances[column] : instances[alias[column]];
+    }
+    /**
+     * @date: 2024-05-21 10:03
+     * @description: 平滑加权轮询选择一个实例（原子计数器+预计算序列，无锁）
+     * @return: org.wyh.gateway.common.config.ServiceInstance
+     */
+    ServiceInstance pickRoundRobin() {
+        long cursor = roundRobinCursor.getAndIncrement();
+        return instances[roundRobinSequence[(int) Math.floorMod(cursor, (long) roundRobinSequence.length)]];
+    }
+    /**
+     * @date: 2024-05-21 10:05
+     * @description: 获取表的过期时间（最早一个预热中的实例跨入下一个预热等级的时间），没有预热中的实例时为Long.MAX_VALUE
+     * @return: long
+     */
+    long getExpireTime() {
+        return expireTime;
+    }
+    /**
+     * @date: 2024-05-21 10:08
+     * @description: 基于当前时间重建一张新表（实例不变，只重新计算预热权重）
+     * @Param now:
+     * @return: org.wyh.gateway.common.loadbalance.WeightedInstanceTable
+     */
+    WeightedInstanceTable rebuild(long now) {
+        WeightedInstanceTable table = new WeightedInstanceTable(instances, now, roundRobinCursor.get(), false);
+        table.maglevTable = this.maglevTable;
+        return table;
+    }
+    /**
+     * @date: 2024-05-23 10:50
+     * @description: 获取一致性哈希查找表。通常它已经与加权表一起构建；
+                     只有加权表构建时还不知道该服务会使用一致性哈希策略时，才会在第一次使用时构建，
+                     此时加锁保证只由一个线程构建（查找表有65537个槽位，不应被并发的请求重复构建）。
+     * @return: org.wyh.gateway.common.loadbalance.MaglevTable
+     */
+    MaglevTable getMaglevTable() {
+        MaglevTable table = maglevTable;
+        if (table == null) {
+            synchronized (this) {
+                table = maglevTable;
+                if (table == null) {
+                    table = new MaglevTable(instances);
+                    maglevTable = table;
+                }
+            }
+        }
+        return table;
+    }
+    /**
+     * @date: 2024-06-09 13:20
+     * @description: 是否已经构建了一致性哈希查找表（重建加权表时据此决定是否同时构建查找表）
+     * @return: boolean
+     */
+    boolean hasMaglevTable() {
+        return maglevTable != null;
+    }
+
+    public ServiceInstance[] getInstances() {
+        return instances;
+    }
+
+    public int size() {
+        return instances.length;
+    }
+
+    public boolean isEmpty() {
+        return instances.length == 0;
+    }
+    /**
+     * @date: 2024-05-21 10:10
+     * @description: 获取下标为index的实例的有效权重
+     * @Param index:
+     * @return: int
+     */
+    public int getWeight(int index) {
+        return weights[index];
+    }
+}
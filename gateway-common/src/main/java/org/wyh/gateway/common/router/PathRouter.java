@@ -0,0 +1,97 @@
+package org.wyh.gateway.common.router;
+
+import lombok.extern.slf4j.Slf4j;
+import org.wyh.gateway.common.config.DynamicConfigManager;
+import org.wyh.gateway.common.config.ServiceDefinition;
+import org.wyh.gateway.common.config.ServiceInvoker;
+import org.wyh.gateway.common.config.event.ConfigChangeType;
+
+import java.util.Map;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.router
+ * @Author: wyh
+ * @Date: 2024-06-04 10:50
+ * @Description: 路径路由器，根据请求路径找到对应的服务定义和方法调用，不需要逐个执行AntPathMatcher.match。
+                 路由器持有一个编译好的不可变路由表（RouteTable），服务定义发生变更时，
+                 由配置变更的通知线程根据最新的服务定义集合重新构建，然后通过volatile字段整体替换；
+                 请求线程总是读到一个完整的路由表，匹配过程不需要加锁。
+ */
+@Slf4j
+public class PathRouter {
+    //当前的路由表
+    private volatile RouteTable routeTable;
+    /**
+     * @date: 2024-06-04 10:55
+     * @description: private修饰的无参构造器。订阅服务定义的变更事件，并根据当前的服务定义构建路由表。
+     * @return: null
+     */
+    private PathRouter() {
+        this.routeTable = RouteTable.EMPTY;
+        DynamicConfigManager.getInstance().addConfigChangeListener(event -> refresh(),
+                ConfigChangeType.SERVICE_DEFINITION_ADDED, ConfigChangeType.SERVICE_DEFINITION_UPDATED,
+                ConfigChangeType.SERVICE_DEFINITION_REMOVED);
+        //先订阅再构建，保证订阅之前发生的变更也包含在路由表中
+        refresh();
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.router
+     * @Author: wyh
+     * @Date: 2024-06-04 10:56
+     * @Description: 静态内部类，用于实现单例模式
+     */
+    private static class SingletonHolder {
+        private static final PathRouter INSTANCE = new PathRouter();
+    }
+    /**
+     * @date: 2024-06-04 10:57
+     * @description: 获取该类的单例对象
+     * @return: org.wyh.gateway.common.router.PathRouter
+     */
+    public static PathRouter getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+    /**
+     * @date: 2024-06-04 11:00
+     * @description: 根据请求路径（不含查询参数）进行路由，不存在匹配的服务时返回null。
+                     匹配到的是patternPath时，方法调用通过服务定义的invokerMap按路径精确查找（可能为null）。
+     * @Param path:
+     * @return: org.wyh.gateway.common.router.RouteMatch
+     */
+    public RouteMatch route(String path) {
+        Route route = routeTable.match(path);
+        if (route == null) {
+            return null;
+        }
+        ServiceInvoker invoker = route.getServiceInvoker();
+        if (invoker == null) {
+            Map<String, ServiceInvoker> invokerMap = route.getServiceDefinition().getInvokerMap();
+            invoker = invokerMap == null ? null : invokerMap.get(path);
+        }
+        return new RouteMatch(path, route, invoker);
+    }
+    /**
+     * @date: 2024-06-04 11:05
+     * @description: 根据最新的服务定义集合重新构建路由表（服务定义发生变更时调用）。
+                     一次批量变更会产生多个事件，服务定义集合没有变化（同一个map对象）时不会重复构建。
+                     加锁保证后读取服务定义集合的线程后发布路由表，旧的路由表不会覆盖新的路由表。
+     * @return: void
+     */
+    private synchronized void refresh() {
+        Map<String, ServiceDefinition> definitions = DynamicConfigManager.getInstance().getServiceDefinitionMap();
+        if (definitions == routeTable.getSource()) {
+            return;
+        }
+        long start = System.nanoTime();
+        RouteTable newTable = RouteTable.build(definitions);
+        routeTable = newTable;
+        log.debug("【路由表】重新构建完成，服务定义: {}，路由: {}，耗时: {}us", definitions.size(), newTable.size(),
+                (System.nanoTime() - start) / 1000);
+    }
+
+    public RouteTable getRouteTable() {
+        return routeTable;
+    }
+}
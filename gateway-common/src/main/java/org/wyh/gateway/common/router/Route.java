@@ -0,0 +1,88 @@
+package org.wyh.gateway.common.router;
+
+import org.wyh.gateway.common.config.ServiceDefinition;
+import org.wyh.gateway.common.config.ServiceInvoker;
+
+import java.util.Arrays;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.router
+ * @Author: wyh
+ * @Date: 2024-06-04 9:10
+ * @Description: 路由条目（不可变），由服务定义的patternPath或invokerMap中的某个key生成。
+                 rank是构建路由表时按AntPatternComparator排出的名次，数值越小越具体，匹配时名次最小的路由胜出。
+ */
+public final class Route {
+    //路由的ANT表达式（patternPath或方法调用路径）
+    private final String pattern;
+    //路由所属的服务定义
+    private final ServiceDefinition serviceDefinition;
+    //由方法调用路径生成的路由对应的方法调用；由patternPath生成的路由为null
+    private final ServiceInvoker serviceInvoker;
+    //以路径分隔符切分后的表达式
+    final String[] segments;
+    //表达式是否以路径分隔符开头/结尾
+    final boolean leadingSlash;
+    final boolean trailingSlash;
+    //表达式是否含有“**”（此时不需要比较路径结尾的分隔符，与AntPathMatcher一致）
+    final boolean hasDoubleWildcard;
+    //表达式是否以“*”结尾（此时可以匹配以分隔符结尾的路径，与AntPathMatcher一致）
+    final boolean endsWithSingleWildcard;
+    //路由的名次
+    int rank;
+
+    Route(String pattern, String[] segments, ServiceDefinition serviceDefinition, ServiceInvoker serviceInvoker) {
+        this.pattern = pattern;
+        this.segments = segments;
+        this.serviceDefinition = serviceDefinition;
+        this.serviceInvoker = serviceInvoker;
+        this.leadingSlash = pattern.startsWith(RouteTable.SEPARATOR);
+        this.trailingSlash = pattern.endsWith(RouteTable.SEPARATOR);
+        String last = segments.length == 0 ? null : segments[segments.length - 1];
+        this.hasDoubleWildcard = Arrays.asList(segments).contains(RouteTable.DOUBLE_WILDCARD);
+        this.endsWithSingleWildcard = RouteTable.SINGLE_WILDCARD.equals(last);
+    }
+    /**
+     * @date: 2024-06-04 9:20
+     * @description: 路径的所有段都已匹配完成后，检查路径开头和结尾的分隔符（规则与AntPathMatcher.match一致）
+     * @Param path:
+     * @Param emptyLastSegment: 表达式的最后一段“*”是否匹配的是路径结尾分隔符之后的空段
+     * @return: boolean
+     */
+    boolean accepts(String path, boolean emptyLastSegment) {
+        if (leadingSlash != path.startsWith(RouteTable.SEPARATOR)) {
+            return false;
+        }
+        if (emptyLastSegment) {
+            return endsWithSingleWildcard && !hasDoubleWildcard && path.endsWith(RouteTable.SEPARATOR);
+        }
+        return hasDoubleWildcard || trailingSlash == path.endsWith(RouteTable.SEPARATOR);
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public ServiceDefinition getServiceDefinition() {
+        return serviceDefinition;
+    }
+
+    public ServiceInvoker getServiceInvoker() {
+        return serviceInvoker;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    @Override
+    public String toString() {
+        return "Route{" +
+                "pattern='" + pattern + '\'' +
+                ", uniqueId='" + serviceDefinition.getUniqueId() + '\'' +
+                ", invoker=" + (serviceInvoker != null) +
+                ", rank=" + rank +
+                '}';
+    }
+}
@@ -0,0 +1,60 @@
+package org.wyh.gateway.common.router;
+
+import org.wyh.gateway.common.config.ServiceDefinition;
+import org.wyh.gateway.common.config.ServiceInvoker;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.router
+ * @Author: wyh
+ * @Date: 2024-06-04 10:40
+ * @Description: 路由结果（不可变）：匹配到的路由，以及请求路径对应的服务定义和方法调用
+ */
+public final class RouteMatch {
+    //请求路径
+    private final String path;
+    //匹配到的路由
+    private final Route route;
+    //请求路径对应的方法调用，服务定义中不存在该路径的方法调用时为null
+    private final ServiceInvoker serviceInvoker;
+
+    RouteMatch(String path, Route route, ServiceInvoker serviceInvoker) {
+        this.path = path;
+        this.route = route;
+        this.serviceInvoker = serviceInvoker;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Route getRoute() {
+        return route;
+    }
+
+    public String getPattern() {
+        return route.getPattern();
+    }
+
+    public ServiceDefinition getServiceDefinition() {
+        return route.getServiceDefinition();
+    }
+
+    public String getUniqueId() {
+        return route.getServiceDefinition().getUniqueId();
+    }
+
+    public ServiceInvoker getServiceInvoker() {
+        return serviceInvoker;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteMatch{" +
+                "path='" + path + '\'' +
+                ", pattern='" + route.getPattern() + '\'' +
+                ", uniqueId='" + getUniqueId() + '\'' +
+                ", invoker=" + (serviceInvoker == null ? null : serviceInvoker.getInvokerPath()) +
+                '}';
+    }
+}
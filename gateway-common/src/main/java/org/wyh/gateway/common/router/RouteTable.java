@@ -0,0 +1,394 @@
+package org.wyh.gateway.common.router;
+
+import org.wyh.gateway.common.config.ServiceDefinition;
+import org.wyh.gateway.common.config.ServiceInvoker;
+import org.wyh.gateway.common.constant.GatewayConst;
+import org.wyh.gateway.common.utils.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.router
+ * @Author: wyh
+ * @Date: 2024-06-04 9:30
+ * @Description: 编译后的路由表（不可变），由全部服务定义的patternPath和invokerMap的key构建而成。
+                 表达式按路径分隔符切分成段，插入到一棵按段组织的前缀树中，每个节点最多有四类子节点：
+                 普通段（精确匹配，HashMap查找），“*”（匹配一段），“{var}”（匹配一段），“**”（匹配零或多段）。
+                 所有路由在构建时按AntPatternComparator排序得到名次，匹配时只保留名次最小的路由，
+                 并利用每个节点记录的子树最小名次进行剪枝，因此匹配的开销只与路径的段数有关，与服务的数量无关。
+                 不含通配符的表达式另外放在一个以完整路径为key的map中，命中时直接返回（与路径完全相同的表达式总是最具体的）。
+                 同一段中混合了普通字符和通配符的表达式（例如“*.html”，“{id}.json”，“?”）无法放入前缀树，
+                 这类表达式会逐个用AntPathMatcher匹配，再与前缀树的结果比较名次。
+                 AntPatternComparator只在“**”出现在表达式末尾（前缀表达式，例如“/a/**”）时使用前缀规则，
+                 “**”出现在中间的表达式（例如“/**\/c”）与前缀表达式同时存在时，比较结果不满足传递性，无法排出一致的名次。
+                 此时“**”出现在中间的路由不参与前缀树的排名，单独按名次排序（它们之间的比较满足传递性），
+                 匹配时取其中第一个匹配的路由，再用针对该路径的比较器与前缀树的结果比较，结果与路由的插入顺序无关。
+ */
+public final class RouteTable {
+    /*
+     * 表达式中的特殊段
+     */
+    static final String SEPARATOR = AntPathMatcher.DEFAULT_PATH_SEPARATOR;
+    static final String SINGLE_WILDCARD = "*";
+    static final String DOUBLE_WILDCARD = "**";
+    /*
+     * 表达式的分类：不含通配符，可以放入前缀树，需要逐个匹配
+     */
+    private static final int LITERAL = 0;
+    private static final int TRIE = 1;
+    private static final int FALLBACK = 2;
+    //用于按名次排序以及匹配无法放入前缀树的表达式
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+    //构建路由表时排名使用的比较器
+    private static final Comparator<Route> RANK_COMPARATOR = routeComparator(null);
+    //空路由表
+    public static final RouteTable EMPTY = build(Collections.emptyMap());
+    //构建该路由表的服务定义集合（用于判断服务定义是否发生了变化）
+    private final Map<String, ServiceDefinition> source;
+    //不含通配符的表达式 -> 路由（按名次排序）
+    private final Map<String, Route[]> literalRoutes;
+    //前缀树的根节点
+    private final Node root;
+    //无法放入前缀树的路由（按名次排序）
+    private final Route[] fallbackRoutes;
+    //不参与排名的路由（“**”出现在中间，且存在前缀表达式时），按名次排序
+    private final Route[] unrankedRoutes;
+    //路由总数
+    private final int size;
+
+    private RouteTable(Map<String, ServiceDefinition> source, Map<String, Route[]> literalRoutes, Node root,
+                       Route[] fallbackRoutes, Route[] unrankedRoutes, int size) {
+        this.source = source;
+        this.literalRoutes = literalRoutes;
+        this.root = root;
+        this.fallbackRoutes = fallbackRoutes;
+        this.unrankedRoutes = unrankedRoutes;
+        this.size = size;
+    }
+    /**
+     * @date: 2024-06-04 9:40
+     * @description: 根据服务定义集合构建路由表。
+                     名次的比较顺序：AntPatternComparator；方法调用路径生成的路由优先于patternPath生成的路由；
+                     默认版本（GatewayConst.DEFAULT_VERSION）的服务优先；最后按uniqueId排序，保证结果是确定的。
+                     存在前缀表达式时，“**”出现在中间的路由单独排序（见类注释），其余路由的比较满足传递性。
+     * @Param serviceDefinitionMap:
+     * @return: org.wyh.gateway.common.router.RouteTable
+     */
+    public static RouteTable build(Map<String, ServiceDefinition> serviceDefinitionMap) {
+        List<Route> routes = new ArrayList<>();
+        for (ServiceDefinition definition : serviceDefinitionMap.values()) {
+            if (definition == null || !definition.isEnable()) {
+                continue;
+            }
+            if (definition.getPatternPath() != null && !definition.getPatternPath().isEmpty()) {
+                routes.add(newRoute(definition.getPatternPath(), definition, null));
+            }
+            if (definition.getInvokerMap() != null) {
+                for (Map.Entry<String, ServiceInvoker> entry : definition.getInvokerMap().entrySet()) {
+                    if (entry.getKey() != null && !entry.getKey().isEmpty() && entry.getValue() != null) {
+                        routes.add(newRoute(entry.getKey(), definition, entry.getValue()));
+                    }
+                }
+            }
+        }
+        boolean hasPrefixRoute = routes.stream().anyMatch(route -> isPrefixPattern(route.getPattern()));
+        List<Route> unrankedList = new ArrayList<>();
+        if (hasPrefixRoute) {
+            List<Route> rankedList = new ArrayList<>(routes.size());
+            for (Route route : routes) {
+                (hasInnerDoubleWildcard(route.getPattern()) ? unrankedList : rankedList).add(route);
+            }
+            routes = rankedList;
+        }
+        routes.sort(RANK_COMPARATOR);
+        unrankedList.sort(RANK_COMPARATOR);
+        Map<String, List<Route>> literalMap = new HashMap<>();
+        List<Route> fallbackList = new ArrayList<>();
+        Node root = new Node();
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            route.rank = i;
+            switch (classify(route.segments)) {
+                case LITERAL:
+                    literalMap.computeIfAbsent(route.getPattern(), key -> new ArrayList<>()).add(route);
+                    //同时放入前缀树，以便匹配多余的分隔符（例如“/a//b”）
+                    root.insert(route, 0);
+                    break;
+                case TRIE:
+                    root.insert(route, 0);
+                    break;
+                default:
+                    fallbackList.add(route);
+                    break;
+            }
+        }
+        Map<String, Route[]> literalRoutes = new HashMap<>(literalMap.size() * 2);
+        for (Map.Entry<String, List<Route>> entry : literalMap.entrySet()) {
+            literalRoutes.put(entry.getKey(), entry.getValue().toArray(new Route[0]));
+        }
+        for (int i = 0; i < unrankedList.size(); i++) {
+            unrankedList.get(i).rank = routes.size() + i;
+        }
+        return new RouteTable(serviceDefinitionMap, literalRoutes, root, fallbackList.toArray(new Route[0]),
+                unrankedList.toArray(new Route[0]), routes.size() + unrankedList.size());
+    }
+    /**
+     * @date: 2024-06-09 9:10
+     * @description: 路由的比较器：AntPatternComparator（针对给定的路径，为null时不考虑与路径完全相同的表达式），
+                     之后依次比较是否为方法调用路径，是否为默认版本，uniqueId和表达式本身
+     * @Param path:
+     * @return: java.util.Comparator<org.wyh.gateway.common.router.Route>
+     */
+    private static Comparator<Route> routeComparator(String path) {
+        return Comparator.comparing(Route::getPattern, PATH_MATCHER.getPatternComparator(path))
+                .thenComparing(route -> route.getServiceInvoker() == null)
+                .thenComparing(route -> !GatewayConst.DEFAULT_VERSION.equals(route.getServiceDefinition().getVersion()))
+                .thenComparing(route -> String.valueOf(route.getServiceDefinition().getUniqueId()))
+                .thenComparing(Route::getPattern);
+    }
+    /*
+     * 与AntPatternComparator.PatternInfo的判断方式一致：前缀表达式以“/**”结尾（“/**”本身除外），
+     * “**”出现在其他位置的表达式不适用前缀规则
+     */
+    private static boolean isPrefixPattern(String pattern) {
+        return pattern.endsWith(SEPARATOR + DOUBLE_WILDCARD) && !pattern.equals(SEPARATOR + DOUBLE_WILDCARD);
+    }
+
+    private static boolean hasInnerDoubleWildcard(String pattern) {
+        return pattern.contains(DOUBLE_WILDCARD) && !pattern.endsWith(SEPARATOR + DOUBLE_WILDCARD);
+    }
+
+    private static Route newRoute(String pattern, ServiceDefinition definition, ServiceInvoker invoker) {
+        return new Route(pattern, split(pattern), definition, invoker);
+    }
+    private static int classify(String[] segments) {
+        int result = LITERAL;
+        for (String segment : segments) {
+            if (SINGLE_WILDCARD.equals(segment) || DOUBLE_WILDCARD.equals(segment) || isVariable(segment)) {
+                result = TRIE;
+            } else if (hasWildcard(segment)) {
+                return FALLBACK;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isVariable(String segment) {
+        return segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}'
+                && segment.indexOf('{', 1) < 0 && segment.indexOf('}') == segment.length() - 1;
+    }
+
+    private static boolean hasWildcard(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '*' || c == '?' || c == '{') {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * @date: 2024-06-04 9:50
+     * @description: 按路径分隔符切分，忽略空段（与AntPathMatcher的切分方式一致）
+     * @Param path:
+     * @return: java.lang.String[]
+     */
+    static String[] split(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int length = path.length();
+        for (int i = 0; i <= length; i++) {
+            if (i == length || path.charAt(i) == '/') {
+                if (i > start) {
+                    segments.add(path.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+    /**
+     * @date: 2024-06-04 10:00
+     * @description: 查找与路径匹配的最具体的路由，不存在时返回null
+     * @Param path:
+     * @return: org.wyh.gateway.common.router.Route
+     */
+    public Route match(String path) {
+        if (path == null || size == 0) {
+            return null;
+        }
+        //与路径完全相同的表达式总是最具体的
+        Route[] literal = literalRoutes.get(path);
+        if (literal != null) {
+            return literal[0];
+        }
+        Matcher matcher = new Matcher(path, split(path));
+        matcher.match(root, 0);
+        for (Route route : fallbackRoutes) {
+            if (matcher.best != null && matcher.best.rank <= route.rank) {
+                break;
+            }
+            if (PATH_MATCHER.match(route.getPattern(), path)) {
+                matcher.best = route;
+                break;
+            }
+        }
+        //不参与排名的路由之间按名次有序，第一个匹配的即为其中最具体的，再与其余路由的结果比较
+        for (Route route : unrankedRoutes) {
+            if (PATH_MATCHER.match(route.getPattern(), path)) {
+                if (matcher.best == null || routeComparator(path).compare(route, matcher.best) < 0) {
+                    matcher.best = route;
+                }
+                break;
+            }
+        }
+        return matcher.best;
+    }
+
+    public Map<String, ServiceDefinition> getSource() {
+        return source;
+    }
+
+    public int size() {
+        return size;
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.router
+     * @Author: wyh
+     * @Date: 2024-06-04 10:10
+     * @Description: （内部类）一次匹配的状态：路径的段以及目前找到的最具体的路由
+     */
+    private static final class Matcher {
+        private final String path;
+        private final String[] segments;
+        private Route best;
+
+        private Matcher(String path, String[] segments) {
+            this.path = path;
+            this.segments = segments;
+        }
+
+        private boolean better(int rank) {
+            return best == null || rank < best.rank;
+        }
+
+        private void offer(Route[] terminals, boolean emptyLastSegment) {
+            //终止路由按名次排好序，第一个通过检查的就是该节点上最具体的路由
+            for (Route route : terminals) {
+                if (!better(route.rank)) {
+                    return;
+                }
+                if (route.accepts(path, emptyLastSegment)) {
+                    best = route;
+                    return;
+                }
+            }
+        }
+
+        private void match(Node node, int i) {
+            if (node == null || !better(node.minRank)) {
+                return;
+            }
+            if (i == segments.length) {
+                offer(node.terminals, false);
+                //“**”可以匹配零段，“*”可以匹配路径结尾分隔符之后的空段
+                if (node.doubleWildcard != null) {
+                    match(node.doubleWildcard, i);
+                }
+                if (node.singleWildcard != null && better(node.singleWildcard.minRank)) {
+                    offer(node.singleWildcard.terminals, true);
+                }
+                return;
+            }
+            if (node.exact != null) {
+                match(node.exact.get(segments[i]), i + 1);
+            }
+            match(node.variable, i + 1);
+            match(node.singleWildcard, i + 1);
+            if (node.doubleWildcard != null) {
+                //“**”依次尝试匹配零段，一段，……，直到路径结束
+                for (int j = i; j <= segments.length; j++) {
+                    matchAfterDoubleWildcard(node.doubleWildcard, j);
+                }
+            }
+        }
+        /**
+         * @date: 2024-06-04 10:20
+         * @description: 从“**”节点继续匹配第i段及之后的路径（“**”已经消耗了之前的段）
+         * @Param node: “**”节点
+         * @Param i:
+         * @return: void
+         */
+        private void matchAfterDoubleWildcard(Node node, int i) {
+            if (!better(node.minRank)) {
+                return;
+            }
+            if (i == segments.length) {
+                offer(node.terminals, false);
+                if (node.doubleWildcard != null) {
+                    matchAfterDoubleWildcard(node.doubleWildcard, i);
+                }
+                return;
+            }
+            if (node.exact != null) {
+                match(node.exact.get(segments[i]), i + 1);
+            }
+            match(node.variable, i + 1);
+            match(node.singleWildcard, i + 1);
+            if (node.doubleWildcard != null) {
+                matchAfterDoubleWildcard(node.doubleWildcard, i);
+            }
+        }
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.router
+     * @Author: wyh
+     * @Date: 2024-06-04 10:30
+     * @Description: （内部类）前缀树节点。路由表构建完成后不再修改。
+     */
+    private static final class Node {
+        //普通段 -> 子节点
+        private Map<String, Node> exact;
+        //“*”，“{var}”和“**”对应的子节点
+        private Node singleWildcard;
+        private Node variable;
+        private Node doubleWildcard;
+        //在该节点结束的路由（路由按名次顺序插入，因此天然有序）
+        private Route[] terminals = new Route[0];
+        //子树（含该节点）中所有路由的最小名次，用于剪枝
+        private int minRank = Integer.MAX_VALUE;
+
+        private void insert(Route route, int i) {
+            minRank = Math.min(minRank, route.rank);
+            if (i == route.segments.length) {
+                terminals = Arrays.copyOf(terminals, terminals.length + 1);
+                terminals[terminals.length - 1] = route;
+                return;
+            }
+            String segment = route.segments[i];
+            Node child;
+            if (DOUBLE_WILDCARD.equals(segment)) {
+                child = doubleWildcard == null ? (doubleWildcard = new Node()) : doubleWildcard;
+            } else if (SINGLE_WILDCARD.equals(segment)) {
+                child = singleWildcard == null ? (singleWildcard = new Node()) : singleWildcard;
+            } else if (isVariable(segment)) {
+                child = variable == null ? (variable = new Node()) : variable;
+            } else {
+                if (exact == null) {
+                    exact = new HashMap<>();
+                }
+                child = exact.computeIfAbsent(segment, key -> new Node());
+            }
+            child.insert(route, i + 1);
+        }
+    }
+}
@@ -3,7 +3,6 @@ package org.wyh.gateway.common.utils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,7 +29,10 @@ public class AntPathMatcher {
      */
     public static final String DEFAULT_PATH_SEPARATOR = "/";
 
-    private static final int CACHE_TURNOFF_THRESHOLD = 65536;
+    /**
+     * Default maximum number of entries in each pattern cache.
+     */
+    public static final int DEFAULT_CACHE_MAXIMUM_SIZE = 65536;
 
     private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{[^/]+?}");
 
@@ -45,11 +47,17 @@ public class AntPathMatcher {
 
     private boolean trimTokens = false;
 
-    private volatile Boolean cachePatterns;
+    private volatile boolean cachePatterns = true;
+
+    //match(String, CharSequence)使用的线程本地的片段边界缓冲区
+    private static final ThreadLocal<PathSegments> PATH_SEGMENTS = ThreadLocal.withInitial(PathSegments::new);
 
-    private final Map<String, String[]> tokenizedPatternCache = new ConcurrentHashMap<>(256);
+    //有界的模式缓存，超出容量时按访问频率淘汰（而不是关闭缓存）
+    private volatile TinyLfuCache<String, String[]> tokenizedPatternCache =
+            new TinyLfuCache<>(DEFAULT_CACHE_MAXIMUM_SIZE);
 
-    final Map<String, AntPathStringMatcher> stringMatcherCache = new ConcurrentHashMap<>(256);
+    volatile TinyLfuCache<String, AntPathStringMatcher> stringMatcherCache =
+            new TinyLfuCache<>(DEFAULT_CACHE_MAXIMUM_SIZE);
 
 
     /**
@@ -92,6 +100,10 @@ public class AntPathMatcher {
         this.caseSensitive = caseSensitive;
     }
 
+    boolean isCaseSensitive() {
+        return this.caseSensitive;
+    }
+
     /**
      * Specify whether to trim tokenized paths and patterns.
      * <p>Default is {@code false}.
@@ -103,12 +115,12 @@ public class AntPathMatcher {
     /**
      * Specify whether to cache parsed pattern metadata for patterns passed
      * into this matcher's {@link #match} method. A value of {@code true}
-     * activates an unlimited pattern cache; a value of {@code false} turns
+     * activates the pattern cache; a value of {@code false} turns
      * the pattern cache off completely.
-     * <p>Default is for the cache to be on, but with the variant to automatically
-     * turn it off when encountering too many patterns to cache at runtime
-     * (the threshold is 65536), assuming that arbitrary permutations of patterns
-     * are coming in, with little chance for encountering a recurring pattern.
+     * <p>Default is for the cache to be on. The caches are bounded (see
+     * {@link #setCacheMaximumSize}): when too many patterns come in, rarely used
+     * entries are evicted based on their access frequency, instead of turning
+     * the cache off, so a burst of one-off patterns cannot disable caching for good.
      *
      * @see #getStringMatcher(String)
      * @since 4.0.1
@@ -117,10 +129,33 @@ public class AntPathMatcher {
         this.cachePatterns = cachePatterns;
     }
 
-    private void deactivatePatternCache() {
-        this.cachePatterns = false;
-        this.tokenizedPatternCache.clear();
-        this.stringMatcherCache.clear();
+    /**
+     * @date: 2024-06-06 11:00
+     * @description: 设置每个模式缓存的最大条目数（默认为65536），已缓存的内容会被清空
+     * @Param maximumSize:
+     * @return: void
+     */
+    public void setCacheMaximumSize(int maximumSize) {
+        this.tokenizedPatternCache = new TinyLfuCache<>(maximumSize);
+        this.stringMatcherCache = new TinyLfuCache<>(maximumSize);
+    }
+
+    /**
+     * @date: 2024-06-06 11:05
+     * @description: 获取路径规则分词缓存的统计信息（命中，未命中和淘汰次数）
+     * @return: org.wyh.gateway.common.utils.CacheStats
+     */
+    public CacheStats getTokenizedPatternCacheStats() {
+        return this.tokenizedPatternCache.stats();
+    }
+
+    /**
+     * @date: 2024-06-06 11:06
+     * @description: 获取片段匹配器缓存的统计信息（命中，未命中和淘汰次数）
+     * @return: org.wyh.gateway.common.utils.CacheStats
+     */
+    public CacheStats getStringMatcherCacheStats() {
+        return this.stringMatcherCache.stats();
     }
 
 
@@ -191,11 +226,92 @@ public class AntPathMatcher {
             return false;
         }
 
-        String[] pathDirs = tokenizePath(path);
+        UriVariables variables = (uriTemplateVariables != null ? new UriVariables(0) : null);
+        boolean matched = doMatch(pattern, pattDirs, path, new StringPathDirs(tokenizePath(path)), fullMatch, variables);
+        if (variables != null) {
+            variables.copyTo(uriTemplateVariables);
+        }
+        return matched;
+    }
+
+    /**
+     * @date: 2024-06-08 9:30
+     * @description: 与match(String, String)相同的匹配，但路径可以是任意CharSequence（例如Netty的AsciiString，
+     *               或通过ByteBufCharSequence包装的ByteBuf）。路径不会被分词成字符串数组，而是在原路径上按下标记录片段的边界
+     *               （记录在线程本地的缓冲区中），片段通过下标直接与片段匹配器比较。
+     *               路径规则的分词结果和片段匹配器仍然来自缓存，因此对于不含正则表达式片段的路径规则，匹配过程不创建任何对象。
+     * @Param pattern: 匹配规则
+     * @Param path: 匹配路径
+     * @return: boolean
+     */
+    public boolean match(String pattern, CharSequence path) {
+        return doMatch(pattern, path, null);
+    }
+
+    /**
+     * @date: 2024-06-09 10:30
+     * @description: 提取路径变量到可重复使用的容器中（容器会先被清空）。与extractUriTemplateVariables(String, String)不同，
+     *               路径不匹配时不抛出异常，而是返回false（此时容器为空）。
+     *               变量名在片段匹配器编译时就已经确定，变量值只记录其在路径中的位置，读取时才创建字符串（见UriVariables），
+     *               因此对于不含正则表达式片段的路径规则，提取过程不创建任何对象。
+     * @Param pattern: 匹配规则
+     * @Param path: 匹配路径
+     * @Param variables: 用于保存路径变量的容器
+     * @return: boolean
+     */
+    public boolean extractUriTemplateVariables(String pattern, CharSequence path, UriVariables variables) {
+        variables.clear();
+        if (!doMatch(pattern, path, variables)) {
+            variables.clear();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean doMatch(String pattern, CharSequence path, UriVariables uriTemplateVariables) {
+        if (path == null || startsWith(path, 0, this.pathSeparator) != pattern.startsWith(this.pathSeparator)) {
+            return false;
+        }
+        String[] pattDirs = tokenizePattern(pattern);
+        if (this.caseSensitive && !isPotentialMatch(path, pattDirs)) {
+            return false;
+        }
+        PathSegments segments = PATH_SEGMENTS.get();
+        segments.split(path, this.pathSeparator, this.trimTokens);
+        try {
+            return doMatch(pattern, pattDirs, path, segments, true, uriTemplateVariables);
+        } finally {
+            segments.clear();
+        }
+    }
+
+    /**
+     * @date: 2024-06-07 9:30
+     * @description: 对已经分词的路径规则和路径做完整匹配（供PatternSet使用，同一路径只分词一次）
+     * @Param pattern: 匹配规则
+     * @Param pattDirs: 分词后的匹配规则
+     * @Param path: 匹配路径
+     * @Param pathDirs: 分词后的匹配路径
+     * @Param uriTemplateVariables: 用于保存路径变量，不需要时为null
+     * @return: boolean
+     */
+    boolean matchTokenized(String pattern, String[] pattDirs, String path, String[] pathDirs,
+                           UriVariables uriTemplateVariables) {
+        if (path.startsWith(this.pathSeparator) != pattern.startsWith(this.pathSeparator)) {
+            return false;
+        }
+        if (this.caseSensitive && !isPotentialMatch(path, pattDirs)) {
+            return false;
+        }
+        return doMatch(pattern, pattDirs, path, new StringPathDirs(pathDirs), true, uriTemplateVariables);
+    }
+
+    private boolean doMatch(String pattern, String[] pattDirs, CharSequence path, PathDirs pathDirs, boolean fullMatch,
+                            UriVariables uriTemplateVariables) {
         int pattIdxStart = 0;
         int pattIdxEnd = pattDirs.length - 1;
         int pathIdxStart = 0;
-        int pathIdxEnd = pathDirs.length - 1;
+        int pathIdxEnd = pathDirs.size() - 1;
 
         // Match all elements up to the first **
         while (pattIdxStart <= pattIdxEnd && pathIdxStart <= pathIdxEnd) {
@@ -203,7 +319,7 @@ public class AntPathMatcher {
             if ("**".equals(pattDir)) {
                 break;
             }
-            if (!matchStrings(pattDir, pathDirs[pathIdxStart], uriTemplateVariables)) {
+            if (!matchSegment(pattDir, pathDirs, pathIdxStart, uriTemplateVariables)) {
                 return false;
             }
             pattIdxStart++;
@@ -213,12 +329,12 @@ public class AntPathMatcher {
         if (pathIdxStart > pathIdxEnd) {
             // Path is exhausted, only match if rest of pattern is * or **'s
             if (pattIdxStart > pattIdxEnd) {
-                return (pattern.endsWith(this.pathSeparator) == path.endsWith(this.pathSeparator));
+                return (pattern.endsWith(this.pathSeparator) == endsWith(path, this.pathSeparator));
             }
             if (!fullMatch) {
                 return true;
             }
-            if (pattIdxStart == pattIdxEnd && pattDirs[pattIdxStart].equals("*") && path.endsWith(this.pathSeparator)) {
+            if (pattIdxStart == pattIdxEnd && pattDirs[pattIdxStart].equals("*") && endsWith(path, this.pathSeparator)) {
                 return true;
             }
             for (int i = pattIdxStart; i <= pattIdxEnd; i++) {
@@ -241,7 +357,7 @@ public class AntPathMatcher {
             if (pattDir.equals("**")) {
                 break;
             }
-            if (!matchStrings(pattDir, pathDirs[pathIdxEnd], uriTemplateVariables)) {
+            if (!matchSegment(pattDir, pathDirs, pathIdxEnd, uriTemplateVariables)) {
                 return false;
             }
             pattIdxEnd--;
@@ -280,8 +396,7 @@ public class AntPathMatcher {
             for (int i = 0; i <= strLength - patLength; i++) {
                 for (int j = 0; j < patLength; j++) {
                     String subPat = pattDirs[pattIdxStart + j + 1];
-                    String subStr = pathDirs[pathIdxStart + i + j];
-                    if (!matchStrings(subPat, subStr, uriTemplateVariables)) {
+                    if (!matchSegment(subPat, pathDirs, pathIdxStart + i + j, uriTemplateVariables)) {
                         continue strLoop;
                     }
                 }
@@ -306,7 +421,7 @@ public class AntPathMatcher {
         return true;
     }
 
-    private boolean isPotentialMatch(String path, String[] pattDirs) {
+    private boolean isPotentialMatch(CharSequence path, String[] pattDirs) {
         if (!this.trimTokens) {
             int pos = 0;
             for (String pattDir : pattDirs) {
@@ -322,7 +437,7 @@ public class AntPathMatcher {
         return true;
     }
 
-    private int skipSegment(String path, int pos, String prefix) {
+    private int skipSegment(CharSequence path, int pos, String prefix) {
         int skipped = 0;
         for (int i = 0; i < prefix.length(); i++) {
             char c = prefix.charAt(i);
@@ -340,14 +455,42 @@ public class AntPathMatcher {
         return skipped;
     }
 
-    private int skipSeparator(String path, int pos, String separator) {
+    private int skipSeparator(CharSequence path, int pos, String separator) {
         int skipped = 0;
-        while (path.startsWith(separator, pos + skipped)) {
+        while (startsWith(path, pos + skipped, separator)) {
             skipped += separator.length();
         }
         return skipped;
     }
 
+    /**
+     * @date: 2024-06-08 9:40
+     * @description: 判断CharSequence从offset开始是否以prefix开头（与String.startsWith(prefix, offset)一致）
+     * @Param str:
+     * @Param offset:
+     * @Param prefix:
+     * @return: boolean
+     */
+    static boolean startsWith(CharSequence str, int offset, String prefix) {
+        if (str instanceof String) {
+            return ((String) str).startsWith(prefix, offset);
+        }
+        int length = prefix.length();
+        if (offset < 0 || offset > str.length() - length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (str.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean endsWith(CharSequence str, String suffix) {
+        return startsWith(str, str.length() - suffix.length(), suffix);
+    }
+
     private boolean isWildcardChar(char c) {
         for (char candidate : WILDCARD_CHARS) {
             if (c == candidate) {
@@ -366,25 +509,13 @@ public class AntPathMatcher {
      * @return the tokenized pattern parts
      */
     protected String[] tokenizePattern(String pattern) {
-        String[] tokenized = null;
-        Boolean cachePatterns = this.cachePatterns;
-        if (cachePatterns == null || cachePatterns.booleanValue()) {
-            tokenized = this.tokenizedPatternCache.get(pattern);
-        }
-        if (tokenized == null) {
-            tokenized = tokenizePath(pattern);
-            if (cachePatterns == null && this.tokenizedPatternCache.size() >= CACHE_TURNOFF_THRESHOLD) {
-                // Try to adapt to the runtime situation that we're encountering:
-                // There are obviously too many different patterns coming in here...
-                // So let's turn off the cache since the patterns are unlikely to be reoccurring.
-                deactivatePatternCache();
-                return tokenized;
-            }
-            if (cachePatterns == null || cachePatterns.booleanValue()) {
-                this.tokenizedPatternCache.put(pattern, tokenized);
-            }
+        if (!this.cachePatterns) {
+            return tokenizePath(pattern);
         }
-        return tokenized;
+        //先get再putIfAbsent，命中时不创建lambda对象
+        TinyLfuCache<String, String[]> cache = this.tokenizedPatternCache;
+        String[] tokenized = cache.get(pattern);
+        return tokenized != null ? tokenized : cache.putIfAbsent(pattern, tokenizePath(pattern));
     }
 
     /**
@@ -398,16 +529,17 @@ public class AntPathMatcher {
     }
 
     /**
-     * Test whether or not a string matches against a pattern.
+     * Test whether or not a path segment matches against a pattern.
      *
-     * @param pattern the pattern to match against (never {@code null})
-     * @param str     the String which must be matched against the pattern (never {@code null})
-     * @return {@code true} if the string matches against the pattern, or {@code false} otherwise
+     * @param pattern  the pattern to match against (never {@code null})
+     * @param pathDirs the tokenized path
+     * @param index    the index of the segment which must be matched against the pattern
+     * @return {@code true} if the segment matches against the pattern, or {@code false} otherwise
      */
-    private boolean matchStrings(String pattern, String str,
-                                 Map<String, String> uriTemplateVariables) {
+    private boolean matchSegment(String pattern, PathDirs pathDirs, int index,
+                                 UriVariables uriTemplateVariables) {
 
-        return getStringMatcher(pattern).matchStrings(str, uriTemplateVariables);
+        return pathDirs.matches(getStringMatcher(pattern), index, uriTemplateVariables);
     }
 
     /**
@@ -415,9 +547,8 @@ public class AntPathMatcher {
      * <p>The default implementation checks this AntPathMatcher's internal cache
      * (see {@link #setCachePatterns}), creating a new AntPathStringMatcher instance
      * if no cached copy is found.
-     * <p>When encountering too many patterns to cache at runtime (the threshold is 65536),
-     * it turns the default cache off, assuming that arbitrary permutations of patterns
-     * are coming in, with little chance for encountering a recurring pattern.
+     * <p>The cache is bounded: when encountering too many patterns to cache at runtime,
+     * rarely used matchers are evicted based on their access frequency.
      * <p>This method may be overridden to implement a custom cache strategy.
      *
      * @param pattern the pattern to match against (never {@code null})
@@ -425,25 +556,12 @@ public class AntPathMatcher {
      * @see #setCachePatterns
      */
     protected AntPathStringMatcher getStringMatcher(String pattern) {
-        AntPathStringMatcher matcher = null;
-        Boolean cachePatterns = this.cachePatterns;
-        if (cachePatterns == null || cachePatterns.booleanValue()) {
-            matcher = this.stringMatcherCache.get(pattern);
-        }
-        if (matcher == null) {
-            matcher = new AntPathStringMatcher(pattern, this.caseSensitive);
-            if (cachePatterns == null && this.stringMatcherCache.size() >= CACHE_TURNOFF_THRESHOLD) {
-                // Try to adapt to the runtime situation that we're encountering:
-                // There are obviously too many different patterns coming in here...
-                // So let's turn off the cache since the patterns are unlikely to be reoccurring.
-                deactivatePatternCache();
-                return matcher;
-            }
-            if (cachePatterns == null || cachePatterns.booleanValue()) {
-                this.stringMatcherCache.put(pattern, matcher);
-            }
+        if (!this.cachePatterns) {
+            return new AntPathStringMatcher(pattern, this.caseSensitive);
         }
-        return matcher;
+        TinyLfuCache<String, AntPathStringMatcher> cache = this.stringMatcherCache;
+        AntPathStringMatcher matcher = cache.get(pattern);
+        return matcher != null ? matcher : cache.putIfAbsent(pattern, new AntPathStringMatcher(pattern, this.caseSensitive));
     }
 
     /**
@@ -607,27 +725,106 @@ public class AntPathMatcher {
         return new AntPatternComparator(path);
     }
 
+    /**
+     * @date: 2024-06-07 10:10
+     * @description: 将多个路径规则编译为PatternSet，之后可以将一个路径与全部路径规则一次性匹配，
+     *               得到按AntPatternComparator排序的最佳匹配及其路径变量。
+     *               PatternSet使用当前设置的副本，之后修改本匹配器的设置不会影响已编译的集合。
+     * @Param patterns:
+     * @return: org.wyh.gateway.common.utils.PatternSet
+     */
+    public PatternSet compilePatterns(Collection<String> patterns) {
+        return new PatternSet(copySettings(), patterns);
+    }
+
+    /**
+     * @date: 2024-06-07 10:15
+     * @description: 创建一个设置（分隔符，大小写敏感，去除空白，是否缓存）与当前匹配器相同的新匹配器。
+     *               新匹配器使用自己的模式缓存：片段匹配器与大小写设置有关，不能与当前匹配器共享。
+     * @return: org.wyh.gateway.common.utils.AntPathMatcher
+     */
+    private AntPathMatcher copySettings() {
+        AntPathMatcher copy = new AntPathMatcher(this.pathSeparator);
+        copy.caseSensitive = this.caseSensitive;
+        copy.trimTokens = this.trimTokens;
+        copy.cachePatterns = this.cachePatterns;
+        return copy;
+    }
+
 
     /**
      * Tests whether or not a string matches against a pattern via a {@link Pattern}.
      * <p>The pattern may contain special characters: '*' means zero or more characters; '?' means one and
      * only one character; '{' and '}' indicate a URI template pattern. For example <tt>/users/{user}</tt>.
+     * <p>常见的简单片段（不含通配符的字面量，{@code *}，{@code prefix*}，{@code *.json}，{@code {id}}，{@code {id}.json}等，
+     * 即“前缀 + 至多一个*或{var} + 后缀”的形式）不会编译成正则表达式，而是直接逐字符比较前缀和后缀；
+     * 只有包含?，多个通配符，带正则约束的变量（{var:regex}）或转义字符的片段才使用正则表达式。
+     * 两种方式的匹配结果（包括大小写不敏感时只忽略ASCII字母大小写，以及*和{var}不匹配换行符）保持一致。
      */
     protected static class AntPathStringMatcher {
 
         private static final Pattern GLOB_PATTERN = Pattern.compile("\\?|\\*|\\{((?:\\{[^/]+?}|[^/{}]|\\\\[{}])+?)}");
 
         private static final String DEFAULT_VARIABLE_PATTERN = "(.*)";
-
+        //原始的片段规则
+        private final String rawPattern;
+        //是否区分大小写
+        private final boolean caseSensitive;
+        //正则表达式，只有不属于简单形式的片段才不为null
         private final Pattern pattern;
+        //简单形式：片段是否不含通配符（此时prefix就是整个片段）
+        private final boolean literal;
+        //简单形式：通配符之前和之后的字面量
+        private final String prefix;
+        private final String suffix;
+        //简单形式：唯一的变量名，通配符为*时为null
+        private final String variableName;
 
-        private final List<String> variableNames = new LinkedList<>();
+        private final List<String> variableNames = new ArrayList<>();
 
         public AntPathStringMatcher(String pattern) {
             this(pattern, true);
         }
 
         public AntPathStringMatcher(String pattern, boolean caseSensitive) {
+            this(pattern, caseSensitive, false);
+        }
+        /**
+         * @date: 2024-06-05 9:30
+         * @description: 有参构造器
+         * @Param pattern: 片段规则
+         * @Param caseSensitive: 是否区分大小写
+         * @Param useRegex: 为true时不使用逐字符比较，总是编译成正则表达式（用于对比测试）
+         * @return: null
+         */
+        public AntPathStringMatcher(String pattern, boolean caseSensitive, boolean useRegex) {
+            this.rawPattern = pattern;
+            this.caseSensitive = caseSensitive;
+            int wildcard = useRegex ? -2 : simpleWildcardIndex(pattern);
+            if (wildcard >= -1) {
+                this.pattern = null;
+                this.literal = wildcard == -1;
+                if (this.literal) {
+                    this.prefix = pattern;
+                    this.suffix = "";
+                    this.variableName = null;
+                } else if (pattern.charAt(wildcard) == '*') {
+                    this.prefix = pattern.substring(0, wildcard);
+                    this.suffix = pattern.substring(wildcard + 1);
+                    this.variableName = null;
+                } else {
+                    int close = pattern.indexOf('}', wildcard);
+                    this.prefix = pattern.substring(0, wildcard);
+                    this.suffix = pattern.substring(close + 1);
+                    this.variableName = pattern.substring(wildcard + 1, close);
+                    this.variableNames.add(this.variableName);
+                }
+                return;
+            }
+            this.literal = false;
+            this.prefix = null;
+            this.suffix = null;
+            this.variableName = null;
             StringBuilder patternBuilder = new StringBuilder();
             Matcher matcher = GLOB_PATTERN.matcher(pattern);
             int end = 0;
@@ -658,6 +855,41 @@ public class AntPathMatcher {
             this.pattern = (caseSensitive ? Pattern.compile(patternBuilder.toString()) :
                     Pattern.compile(patternBuilder.toString(), Pattern.CASE_INSENSITIVE));
         }
+        /**
+         * @date: 2024-06-05 9:40
+         * @description: 判断片段规则是否属于“前缀 + 至多一个*或{var} + 后缀”的简单形式。
+         *               是简单形式时返回通配符（*或{）的位置，不含通配符时返回-1；不是简单形式时返回-2。
+         * @Param pattern:
+         * @return: int
+         */
+        private static int simpleWildcardIndex(String pattern) {
+            int wildcard = -1;
+            int length = pattern.length();
+            for (int i = 0; i < length; i++) {
+                char c = pattern.charAt(i);
+                if (c == '?' || c == '\\' || c == '}') {
+                    return -2;
+                }
+                if (c == '*' || c == '{') {
+                    if (wildcard != -1) {
+                        return -2;
+                    }
+                    wildcard = i;
+                    if (c == '{') {
+                        //变量名不能为空，且不能包含/、:、{和\
+                        int j = i + 1;
+                        while (j < length && "/:{}\\".indexOf(pattern.charAt(j)) == -1) {
+                            j++;
+                        }
+                        if (j == i + 1 || j == length || pattern.charAt(j) != '}') {
+                            return -2;
+                        }
+                        i = j;
+                    }
+                }
+            }
+            return wildcard;
+        }
 
         private String quote(String s, int start, int end) {
             if (start == end) {
@@ -672,7 +904,30 @@ public class AntPathMatcher {
          * @return {@code true} if the string matches against the pattern, or {@code false} otherwise.
          */
         public boolean matchStrings(String str, Map<String, String> uriTemplateVariables) {
+            if (uriTemplateVariables == null) {
+                return matchSegment(str, 0, str.length(), null);
+            }
+            UriVariables variables = new UriVariables(0);
+            boolean matched = matchSegment(str, 0, str.length(), variables);
+            variables.copyTo(uriTemplateVariables);
+            return matched;
+        }
+        /**
+         * @date: 2024-06-08 9:50
+         * @description: 匹配str中[start, end)范围内的片段。简单形式的片段直接在原字符序列上比较，不创建对象
+         *               （路径变量只记录其位置）；正则表达式形式的片段通过Matcher.region匹配。
+         * @Param str:
+         * @Param start:
+         * @Param end:
+         * @Param uriTemplateVariables:
+         * @return: boolean
+         */
+        public boolean matchSegment(CharSequence str, int start, int end, UriVariables uriTemplateVariables) {
+            if (this.pattern == null) {
+                return matchSimple(str, start, end, uriTemplateVariables);
+            }
             Matcher matcher = this.pattern.matcher(str);
+            matcher.region(start, end);
             if (matcher.matches()) {
                 if (uriTemplateVariables != null) {
                     // SPR-8455
@@ -684,8 +939,7 @@ public class AntPathMatcher {
                     }
                     for (int i = 1; i <= matcher.groupCount(); i++) {
                         String name = this.variableNames.get(i - 1);
-                        String value = matcher.group(i);
-                        uriTemplateVariables.put(name, value);
+                        uriTemplateVariables.put(name, str, matcher.start(i), matcher.end(i));
                     }
                 }
                 return true;
@@ -693,6 +947,84 @@ public class AntPathMatcher {
                 return false;
             }
         }
+        /**
+         * @date: 2024-06-05 9:50
+         * @description: 简单形式的匹配：逐字符比较前缀和后缀，中间部分（*或{var}）不能包含换行符（与正则表达式中的.一致）
+         * @Param str:
+         * @Param start:
+         * @Param end:
+         * @Param uriTemplateVariables:
+         * @return: boolean
+         */
+        private boolean matchSimple(CharSequence str, int start, int end, UriVariables uriTemplateVariables) {
+            int length = end - start;
+            if (this.literal) {
+                return length == this.prefix.length() && regionMatches(str, start, this.prefix);
+            }
+            int prefixLength = this.prefix.length();
+            int suffixLength = this.suffix.length();
+            int suffixStart = end - suffixLength;
+            if (length < prefixLength + suffixLength || !regionMatches(str, start, this.prefix)
+                    || !regionMatches(str, suffixStart, this.suffix)) {
+                return false;
+            }
+            for (int i = start + prefixLength; i < suffixStart; i++) {
+                if (isLineTerminator(str.charAt(i))) {
+                    return false;
+                }
+            }
+            if (this.variableName != null && uriTemplateVariables != null) {
+                uriTemplateVariables.put(this.variableName, str, start + prefixLength, suffixStart);
+            }
+            return true;
+        }
+        /**
+         * @date: 2024-06-05 9:55
+         * @description: 比较str从offset开始的部分是否与字面量相同。
+         *               不区分大小写时只忽略ASCII字母的大小写（与Pattern.CASE_INSENSITIVE一致）。
+         * @Param str:
+         * @Param offset:
+         * @Param part: 字面量
+         * @return: boolean
+         */
+        private boolean regionMatches(CharSequence str, int offset, String part) {
+            if (this.caseSensitive) {
+                return startsWith(str, offset, part);
+            }
+            int length = part.length();
+            for (int i = 0; i < length; i++) {
+                char a = str.charAt(offset + i);
+                char b = part.charAt(i);
+                if (a != b && (toLowerAscii(a) != toLowerAscii(b) || !isAsciiLetter(a))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isAsciiLetter(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private static char toLowerAscii(char c) {
+            return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+        }
+
+        private static boolean isLineTerminator(char c) {
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+
+        public String getRawPattern() {
+            return this.rawPattern;
+        }
+        /**
+         * @date: 2024-06-05 10:00
+         * @description: 是否使用正则表达式进行匹配
+         * @return: boolean
+         */
+        public boolean isRegex() {
+            return this.pattern != null;
+        }
     }
 
 
@@ -726,8 +1058,19 @@ public class AntPathMatcher {
          */
 
         public int compare(String pattern1, String pattern2) {
-            PatternInfo info1 = new PatternInfo(pattern1);
-            PatternInfo info2 = new PatternInfo(pattern2);
+            return compare(new PatternInfo(pattern1), new PatternInfo(pattern2));
+        }
+
+        /**
+         * @date: 2024-06-07 10:20
+         * @description: 比较两个已经解析的路径规则（供PatternSet复用预先解析的PatternInfo）
+         * @Param info1:
+         * @Param info2:
+         * @return: int
+         */
+        int compare(PatternInfo info1, PatternInfo info2) {
+            String pattern1 = info1.pattern;
+            String pattern2 = info2.pattern;
 
             if (info1.isLeastSpecific() && info2.isLeastSpecific()) {
                 return 0;
@@ -783,7 +1126,7 @@ public class AntPathMatcher {
          * Value class that holds information about the pattern, e.g. number of
          * occurrences of "*", "**", and "{" pattern elements.
          */
-        private static class PatternInfo {
+        static class PatternInfo {
 
 
             private final String pattern;
@@ -875,6 +1218,128 @@ public class AntPathMatcher {
     }
 
 
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.utils
+     * @Author: wyh
+     * @Date: 2024-06-08 10:00
+     * @Description: 分词后的路径，doMatch通过下标访问其中的片段。
+     *               分词成字符串数组的路径（StringPathDirs）和只记录片段边界的路径（PathSegments）共用同一套匹配逻辑。
+     */
+    private interface PathDirs {
+        //片段数
+        int size();
+        //第index个片段是否与片段匹配器匹配
+        boolean matches(AntPathStringMatcher matcher, int index, UriVariables uriTemplateVariables);
+    }
+
+    /**
+     * 分词成字符串数组的路径（tokenizePath的结果）
+     */
+    private static final class StringPathDirs implements PathDirs {
+
+        private final String[] dirs;
+
+        StringPathDirs(String[] dirs) {
+            this.dirs = dirs;
+        }
+
+        @Override
+        public int size() {
+            return this.dirs.length;
+        }
+
+        @Override
+        public boolean matches(AntPathStringMatcher matcher, int index, UriVariables uriTemplateVariables) {
+            return matcher.matchSegment(this.dirs[index], 0, this.dirs[index].length(), uriTemplateVariables);
+        }
+    }
+
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.utils
+     * @Author: wyh
+     * @Date: 2024-06-08 10:05
+     * @Description: 只记录片段边界（起止下标）的路径，可以重复使用。
+     *               分词规则与tokenizeToStringArray(path, pathSeparator, trimTokens, true)一致：
+     *               分隔符中的每个字符都是分隔字符，片段为连续的非分隔字符；需要时去掉片段首尾的空白字符（与String.trim一致）；忽略空片段。
+     */
+    static final class PathSegments implements PathDirs {
+        //被分词的路径
+        private CharSequence path;
+        //片段边界，第i个片段为[bounds[2i], bounds[2i+1])
+        private int[] bounds = new int[32];
+        //片段数
+        private int size;
+
+        void split(CharSequence path, String separator, boolean trimTokens) {
+            this.path = path;
+            this.size = 0;
+            int length = path.length();
+            int i = 0;
+            while (i < length) {
+                while (i < length && isDelimiter(path.charAt(i), separator)) {
+                    i++;
+                }
+                int start = i;
+                while (i < length && !isDelimiter(path.charAt(i), separator)) {
+                    i++;
+                }
+                int end = i;
+                if (trimTokens) {
+                    while (start < end && path.charAt(start) <= ' ') {
+                        start++;
+                    }
+                    while (end > start && path.charAt(end - 1) <= ' ') {
+                        end--;
+                    }
+                }
+                if (start < end) {
+                    if (this.size * 2 == this.bounds.length) {
+                        this.bounds = Arrays.copyOf(this.bounds, this.bounds.length * 2);
+                    }
+                    this.bounds[this.size * 2] = start;
+                    this.bounds[this.size * 2 + 1] = end;
+                    this.size++;
+                }
+            }
+        }
+
+        private static boolean isDelimiter(char c, String separator) {
+            return separator.length() == 1 ? c == separator.charAt(0) : separator.indexOf(c) >= 0;
+        }
+
+        /**
+         * 释放对路径的引用（缓冲区是线程本地的，避免长时间持有请求的路径）
+         */
+        void clear() {
+            this.path = null;
+            this.size = 0;
+        }
+
+        int start(int index) {
+            return this.bounds[index * 2];
+        }
+
+        int end(int index) {
+            return this.bounds[index * 2 + 1];
+        }
+
+        CharSequence getPath() {
+            return this.path;
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+        @Override
+        public boolean matches(AntPathStringMatcher matcher, int index, UriVariables uriTemplateVariables) {
+            return matcher.matchSegment(this.path, this.bounds[index * 2], this.bounds[index * 2 + 1], uriTemplateVariables);
+        }
+    }
+
     /**
      * A simple cache for patterns that depend on the configured path separator.
      */
@@ -0,0 +1,86 @@
+package org.wyh.gateway.common.utils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AsciiString;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.utils
+ * @Author: wyh
+ * @Date: 2024-06-08 10:20
+ * @Description: ByteBuf中一段ASCII字节的CharSequence视图（不复制数据），用于直接匹配ByteBuf中的请求路径，
+ *               例如AntPathMatcher.match(pattern, new ByteBufCharSequence().reset(buf, index, length))。
+ *               每个字节按ISO-8859-1解释为一个字符（与AsciiString一致）。
+ *               对象可以通过reset重复使用（非线程安全）；视图不持有ByteBuf的引用计数，使用期间ByteBuf不能被释放。
+ */
+public final class ByteBufCharSequence implements CharSequence {
+    //数据所在的ByteBuf
+    private ByteBuf buf;
+    //视图在ByteBuf中的起始下标
+    private int offset;
+    //视图的长度
+    private int length;
+    /**
+     * @date: 2024-06-08 10:25
+     * @description: 将视图指向ByteBuf中[index, index + length)范围内的字节
+     * @Param buf:
+     * @Param index:
+     * @Param length:
+     * @return: org.wyh.gateway.common.utils.ByteBufCharSequence
+     */
+    public ByteBufCharSequence reset(ByteBuf buf, int index, int length) {
+        if (index < 0 || length < 0 || index + length > buf.capacity()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length
+                    + " (capacity: " + buf.capacity() + ")");
+        }
+        this.buf = buf;
+        this.offset = index;
+        this.length = length;
+        return this;
+    }
+    /**
+     * @date: 2024-06-08 10:28
+     * @description: 将视图指向ByteBuf中可读的全部字节
+     * @Param buf:
+     * @return: org.wyh.gateway.common.utils.ByteBufCharSequence
+     */
+    public ByteBufCharSequence reset(ByteBuf buf) {
+        return reset(buf, buf.readerIndex(), buf.readableBytes());
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        return (char) (buf.getByte(offset + index) & 0xFF);
+    }
+    /**
+     * @date: 2024-06-08 10:30
+     * @description: 复制[start, end)范围内的字节（只在提取路径变量等需要保留结果的场景调用）
+     * @Param start:
+     * @Param end:
+     * @return: java.lang.CharSequence
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+        }
+        byte[] bytes = new byte[end - start];
+        buf.getBytes(offset + start, bytes);
+        return new AsciiString(bytes, false);
+    }
+
+    @Override
+    public String toString() {
+        return length == 0 ? "" : buf.toString(offset, length, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,78 @@
+package org.wyh.gateway.common.utils;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.utils
+ * @Author: wyh
+ * @Date: 2024-06-06 10:40
+ * @Description: 缓存统计信息类（不可变），是TinyLfuCache在某一时刻的计数器快照。
+ */
+public final class CacheStats {
+    //命中次数
+    private final long hitCount;
+    //未命中次数
+    private final long missCount;
+    //淘汰次数
+    private final long evictionCount;
+    //当前条目数
+    private final int size;
+    //最大条目数
+    private final int maximumSize;
+    /**
+     * @date: 2024-06-06 10:42
+     * @description: 有参构造器
+     * @Param hitCount:
+     * @Param missCount:
+     * @Param evictionCount:
+     * @Param size:
+     * @Param maximumSize:
+     * @return: null
+     */
+    CacheStats(long hitCount, long missCount, long evictionCount, int size, int maximumSize) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.maximumSize = maximumSize;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+    /**
+     * @date: 2024-06-06 10:45
+     * @description: 获取命中率，没有访问时返回1.0
+     * @return: double
+     */
+    public double getHitRate() {
+        long total = hitCount + missCount;
+        return total == 0 ? 1.0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                ", size=" + size +
+                ", maximumSize=" + maximumSize +
+                '}';
+    }
+}
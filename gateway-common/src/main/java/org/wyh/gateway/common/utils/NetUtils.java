@@ -305,5 +305,93 @@ public class NetUtils {
             return "UnknownHost";
         }
     }
+    /**
+     * @date: 2024-05-26 9:10
+     * @description: 将IPv4/IPv6地址字面量压缩为两个long（高64位和低64位）。IPv4地址按照IPv4映射的IPv6地址（::ffff:a.b.c.d）处理。
+                     该方法不会进行DNS解析，ip不是合法的地址字面量（例如主机名或带有zone id的IPv6地址）时返回false。
+     * @Param ip:
+     * @Param packed: 长度至少为2的数组，用于保存结果
+     * @return: boolean
+     */
+    public static boolean packIp(String ip, long[] packed) {
+        if (ip == null || ip.isEmpty()) {
+            return false;
+        }
+        if (ip.indexOf(':') < 0) {
+            long v4 = 0;
+            int octets = 0;
+            int value = -1;
+            for (int i = 0; i <= ip.length(); i++) {
+                char c = i < ip.length() ? ip.charAt(i) : '.';
+                if (c == '.') {
+                    if (value < 0 || ++octets > 4) {
+                        return false;
+                    }
+                    v4 = (v4 << 8) | value;
+                    value = -1;
+                } else if (c >= '0' && c <= '9') {
+                    value = (value < 0 ? 0 : value * 10) + (c - '0');
+                    if (value > 255) {
+                        return false;
+                    }
+                } else {
+                    return false;
+                }
+            }
+            if (octets != 4) {
+                return false;
+            }
+            packed[0] = 0L;
+            packed[1] = 0x0000FFFF00000000L | v4;
+            return true;
+        }
+        if (ip.indexOf('%') >= 0) {
+            return false;
+        }
+        try {
+            //包含冒号的字符串会被当作IPv6字面量解析，不会进行DNS查询
+            byte[] bytes = InetAddress.getByName(ip).getAddress();
+            long hi = 0;
+            long lo = 0;
+            if (bytes.length == 4) {
+                //IPv4映射的IPv6地址会被解析为IPv4地址
+                lo = 0x0000FFFF00000000L | ((bytes[0] & 0xFFL) << 24) | ((bytes[1] & 0xFFL) << 16)
+                        | ((bytes[2] & 0xFFL) << 8) | (bytes[3] & 0xFFL);
+            } else {
+                for (int i = 0; i < 8; i++) {
+                    hi = (hi << 8) | (bytes[i] & 0xFF);
+                    lo = (lo << 8) | (bytes[i + 8] & 0xFF);
+                }
+            }
+            packed[0] = hi;
+            packed[1] = lo;
+            return true;
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+    /**
+     * @date: 2024-05-26 9:20
+     * @description: 将packIp压缩得到的两个long还原为地址字符串（IPv6地址采用Java的标准格式输出）
+     * @Param hi:
+     * @Param lo:
+     * @return: java.lang.String
+     */
+    public static String unpackIp(long hi, long lo) {
+        if (hi == 0L && (lo >>> 32) == 0xFFFFL) {
+            return ((lo >>> 24) & 0xFF) + "." + ((lo >>> 16) & 0xFF) + "." + ((lo >>> 8) & 0xFF) + "." + (lo & 0xFF);
+        }
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (hi >>> (56 - 8 * i));
+            bytes[i + 8] = (byte) (lo >>> (56 - 8 * i));
+        }
+        try {
+            return InetAddress.getByAddress(bytes).getHostAddress();
+        } catch (UnknownHostException e) {
+            //长度为16的数组不会抛出该异常
+            throw new IllegalStateException(e);
+        }
+    }
 
 }
@@ -0,0 +1,53 @@
+package org.wyh.gateway.common.utils;
+
+import java.util.Map;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.utils
+ * @Author: wyh
+ * @Date: 2024-06-07 9:40
+ * @Description: PatternSet的匹配结果类（不可变），包括最佳匹配的路径规则及其提取出的路径变量。
+ */
+public final class PatternMatch {
+    //匹配的路径规则
+    private final String pattern;
+    //路径规则在编译时传入的集合中的位置
+    private final int index;
+    //路径变量（变量名 -> 变量值），没有变量时为空
+    private final Map<String, String> uriVariables;
+    /**
+     * @date: 2024-06-07 9:42
+     * @description: 有参构造器
+     * @Param pattern:
+     * @Param index:
+     * @Param uriVariables:
+     * @return: null
+     */
+    PatternMatch(String pattern, int index, Map<String, String> uriVariables) {
+        this.pattern = pattern;
+        this.index = index;
+        this.uriVariables = uriVariables;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Map<String, String> getUriVariables() {
+        return uriVariables;
+    }
+
+    @Override
+    public String toString() {
+        return "PatternMatch{" +
+                "pattern='" + pattern + '\'' +
+                ", index=" + index +
+                ", uriVariables=" + uriVariables +
+                '}';
+    }
+}
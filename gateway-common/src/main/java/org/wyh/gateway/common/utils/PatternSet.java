@@ -0,0 +1,283 @@
+package org.wyh.gateway.common.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.utils
+ * @Author: wyh
+ * @Date: 2024-06-07 9:50
+ * @Description: 预编译的ANT路径规则集合（不可变，线程安全），用于将一个路径与多个路径规则一次性匹配。
+ *               结果等价于逐个调用AntPathMatcher.match，再用getPatternComparator(path)排序匹配的路径规则并取第一个
+ *               （比较结果相同时取集合中靠前的）。路径只分词一次，只为最佳匹配提取路径变量。
+ *               编译时完成每个路径规则的分词和解析（AntPatternComparator.PatternInfo），并按比较器将全部路径规则排好序。
+ *               AntPatternComparator在某些组合下不满足传递性（例如“/a/**”，“/**\/c”和字面量路径），
+ *               因此编译时用不依赖传递性的插入排序排序（不会像List.sort那样抛出异常），再逐对检查排序结果是否与比较器一致：
+ *               一致时，与路径完全相同的路径规则最优先（比较器中唯一依赖于路径的部分），其余按顺序尝试，第一个匹配的就是最佳匹配。
+ *               此时还会按第一个片段对路径规则分组：第一个片段为字面量的路径规则只有在路径的第一个片段与之相同时才会被尝试；
+ *               不一致时（或路径规则过多，不做排序和检查时），按集合中的顺序逐个比较全部匹配的路径规则，取最具体的一个。
+ *               通过AntPathMatcher.compilePatterns创建，集合持有编译时匹配器设置的副本（分隔符，大小写敏感，去除空白），
+ *               编译后修改原AntPathMatcher的设置不会影响已编译的集合。
+ */
+public final class PatternSet {
+    //做一致性检查（O(n^2)次比较）的路径规则数上限
+    private static final int CONSISTENCY_CHECK_LIMIT = 4096;
+    //路径规则的匹配器（编译时设置的副本，不会再被修改）
+    private final AntPathMatcher matcher;
+    //全部路径规则（编译时的顺序）
+    private final List<String> patterns;
+    //已编译的路径规则（编译时的顺序，不含null）
+    private final Entry[] entries;
+    //按AntPatternComparator排好序的路径规则
+    private final Entry[] rankedEntries;
+    //路径规则 -> 条目（重复的路径规则只保留第一个），用于“路径与路径规则完全相同”的情况
+    private final Map<String, Entry> exactEntries;
+    //排序结果是否与比较器一致（为true时可以按顺序找到第一个匹配的路径规则）
+    private final boolean ranked;
+    //第一个片段为字面量的路径规则，按第一个片段分组（组内按排序结果的顺序），只在ranked为true时使用
+    private final Map<String, Entry[]> literalFirstEntries;
+    //其余路径规则（按排序结果的顺序），只在ranked为true时使用
+    private final Entry[] otherEntries;
+    /**
+     * @date: 2024-06-07 9:55
+     * @description: 有参构造器
+     * @Param matcher:
+     * @Param patterns:
+     * @return: null
+     */
+    PatternSet(AntPathMatcher matcher, Collection<String> patterns) {
+        this.matcher = matcher;
+        this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+        List<Entry> entryList = new ArrayList<>(this.patterns.size());
+        this.exactEntries = new HashMap<>(this.patterns.size() * 2);
+        for (int i = 0; i < this.patterns.size(); i++) {
+            String pattern = this.patterns.get(i);
+            if (pattern == null) {
+                continue;
+            }
+            Entry entry = new Entry(pattern, i, matcher.tokenizePath(pattern));
+            entryList.add(entry);
+            this.exactEntries.putIfAbsent(pattern, entry);
+        }
+        this.entries = entryList.toArray(new Entry[0]);
+        AntPathMatcher.AntPatternComparator comparator = new AntPathMatcher.AntPatternComparator(null);
+        this.rankedEntries = entryList.toArray(new Entry[0]);
+        if (this.rankedEntries.length <= CONSISTENCY_CHECK_LIMIT) {
+            insertionSort(comparator, this.rankedEntries);
+            this.ranked = isConsistent(comparator, this.rankedEntries);
+        } else {
+            this.ranked = false;
+        }
+        //不区分大小写时，字面量片段不能直接按字符串分组
+        boolean indexFirstSegment = this.ranked && matcher.isCaseSensitive();
+        Map<String, List<Entry>> groups = new HashMap<>();
+        List<Entry> others = new ArrayList<>();
+        for (int i = 0; i < this.rankedEntries.length; i++) {
+            Entry entry = this.rankedEntries[i];
+            entry.rank = i;
+            String first = entry.literalFirstSegment();
+            if (indexFirstSegment && first != null) {
+                groups.computeIfAbsent(first, key -> new ArrayList<>()).add(entry);
+            } else {
+                others.add(entry);
+            }
+        }
+        this.literalFirstEntries = new HashMap<>(groups.size() * 2);
+        for (Map.Entry<String, List<Entry>> group : groups.entrySet()) {
+            this.literalFirstEntries.put(group.getKey(), group.getValue().toArray(new Entry[0]));
+        }
+        this.otherEntries = others.toArray(new Entry[0]);
+    }
+    /**
+     * @date: 2024-06-09 9:30
+     * @description: 稳定的二分插入排序。比较器不满足传递性时结果的顺序没有意义（由isConsistent检查），但不会抛出异常，
+     *               而List.sort（TimSort）在这种情况下可能抛出IllegalArgumentException。
+     * @Param comparator:
+     * @Param entries:
+     * @return: void
+     */
+    private static void insertionSort(AntPathMatcher.AntPatternComparator comparator, Entry[] entries) {
+        for (int i = 1; i < entries.length; i++) {
+            Entry entry = entries[i];
+            //插入到比较结果相同的路径规则之后，保持原有顺序
+            int low = 0;
+            int high = i;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparator.compare(entry.info, entries[mid].info) < 0) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            System.arraycopy(entries, low, entries, low + 1, i - low);
+            entries[low] = entry;
+        }
+    }
+    /**
+     * @date: 2024-06-07 10:30
+     * @description: 检查排序结果是否与比较器一致：任意两个路径规则中排在前面的，要么比较结果更小，要么比较结果相同且在集合中更靠前。
+     *               满足该条件时，对任意一组匹配的路径规则排序，结果都与它们在排序结果中的先后顺序相同。
+     * @Param comparator:
+     * @Param ranked:
+     * @return: boolean
+     */
+    private static boolean isConsistent(AntPathMatcher.AntPatternComparator comparator, Entry[] ranked) {
+        for (int i = 0; i < ranked.length; i++) {
+            for (int j = i + 1; j < ranked.length; j++) {
+                int result = comparator.compare(ranked[i].info, ranked[j].info);
+                if (result > 0 || (result == 0 && ranked[i].index > ranked[j].index)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    /**
+     * @date: 2024-06-07 10:00
+     * @description: 获取路径的最佳匹配，没有匹配的路径规则时返回null
+     * @Param path:
+     * @return: org.wyh.gateway.common.utils.PatternMatch
+     */
+    public PatternMatch match(String path) {
+        if (path == null || entries.length == 0) {
+            return null;
+        }
+        String[] pathDirs = matcher.tokenizePath(path);
+        if (!ranked) {
+            return matchAndScan(path, pathDirs);
+        }
+        //与路径完全相同的路径规则比其他路径规则更具体（“/**”除外，它总是排在最后）
+        Entry exact = exactEntries.get(path);
+        if (exact != null && !exact.info.isLeastSpecific() && exact.matches(matcher, path, pathDirs, null)) {
+            return exact.toMatch(matcher, path, pathDirs);
+        }
+        //按排序结果的顺序合并两组候选：第一个片段与路径相同的路径规则和其余路径规则
+        Entry[] literal = pathDirs.length == 0 ? null : literalFirstEntries.get(pathDirs[0]);
+        int literalLength = literal == null ? 0 : literal.length;
+        int i = 0;
+        int j = 0;
+        while (i < literalLength || j < otherEntries.length) {
+            Entry entry;
+            if (j == otherEntries.length || (i < literalLength && literal[i].rank < otherEntries[j].rank)) {
+                entry = literal[i++];
+            } else {
+                entry = otherEntries[j++];
+            }
+            if (entry.matches(matcher, path, pathDirs, null)) {
+                return entry.toMatch(matcher, path, pathDirs);
+            }
+        }
+        return null;
+    }
+    /**
+     * @date: 2024-06-07 10:35
+     * @description: 排序结果与比较器不一致时的匹配方式：按集合中的顺序逐个比较匹配的路径规则，只有更具体时才替换当前结果。
+     *               匹配的路径规则之间满足传递性时，结果与排序后取第一个相同；不满足时也不会像List.sort那样抛出异常。
+     * @Param path:
+     * @Param pathDirs:
+     * @return: org.wyh.gateway.common.utils.PatternMatch
+     */
+    private PatternMatch matchAndScan(String path, String[] pathDirs) {
+        AntPathMatcher.AntPatternComparator comparator = null;
+        Entry best = null;
+        for (Entry entry : entries) {
+            if (!entry.matches(matcher, path, pathDirs, null)) {
+                continue;
+            }
+            if (best == null) {
+                best = entry;
+                continue;
+            }
+            if (comparator == null) {
+                comparator = new AntPathMatcher.AntPatternComparator(path);
+            }
+            if (comparator.compare(entry.info, best.info) < 0) {
+                best = entry;
+            }
+        }
+        return best == null ? null : best.toMatch(matcher, path, pathDirs);
+    }
+
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    public int size() {
+        return patterns.size();
+    }
+    /**
+     * @date: 2024-06-07 10:40
+     * @description: 是否可以按预先排好的顺序查找最佳匹配（否则每次匹配都需要逐个比较全部匹配的路径规则）
+     * @return: boolean
+     */
+    public boolean isRanked() {
+        return ranked;
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.utils
+     * @Author: wyh
+     * @Date: 2024-06-07 10:05
+     * @Description: 已编译的路径规则
+     */
+    private static final class Entry {
+        private final String pattern;
+        private final int index;
+        //分词后的路径规则
+        private final String[] pattDirs;
+        //比较器使用的路径规则信息
+        private final AntPathMatcher.AntPatternComparator.PatternInfo info;
+        //是否含有路径变量（没有时直接使用空的结果）
+        private final boolean hasVariables;
+        //在排序结果中的位置
+        private int rank;
+
+        private Entry(String pattern, int index, String[] pattDirs) {
+            this.pattern = pattern;
+            this.index = index;
+            this.pattDirs = pattDirs;
+            this.info = new AntPathMatcher.AntPatternComparator.PatternInfo(pattern);
+            //提前计算长度，之后只读
+            this.info.getLength();
+            this.hasVariables = pattern.indexOf('{') != -1;
+        }
+
+        /**
+         * @date: 2024-06-07 11:10
+         * @description: 获取第一个片段（不含通配符时），否则返回null
+         * @return: java.lang.String
+         */
+        private String literalFirstSegment() {
+            if (pattDirs.length == 0) {
+                return null;
+            }
+            String first = pattDirs[0];
+            for (int i = 0; i < first.length(); i++) {
+                char c = first.charAt(i);
+                if (c == '*' || c == '?' || c == '{' || c == '}') {
+                    return null;
+                }
+            }
+            return first;
+        }
+
+        private boolean matches(AntPathMatcher matcher, String path, String[] pathDirs, UriVariables variables) {
+            return matcher.matchTokenized(pattern, pattDirs, path, pathDirs, variables);
+        }
+
+        private PatternMatch toMatch(AntPathMatcher matcher, String path, String[] pathDirs) {
+            if (!hasVariables) {
+                return new PatternMatch(pattern, index, Collections.emptyMap());
+            }
+            UriVariables variables = new UriVariables(0);
+            matches(matcher, path, pathDirs, variables);
+            return new PatternMatch(pattern, index, variables.toMap());
+        }
+    }
+}
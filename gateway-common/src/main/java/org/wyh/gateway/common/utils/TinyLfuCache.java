@@ -0,0 +1,410 @@
+package org.wyh.gateway.common.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.utils
+ * @Author: wyh
+ * @Date: 2024-06-06 9:30
+ * @Description: 有界的、基于访问频率的缓存（W-TinyLFU风格）。
+ *               缓存条目被分为三个按访问顺序排列的LRU队列：窗口区（约1%的容量），试用区和保护区（主区的80%）。
+ *               新条目先进入窗口区；被挤出窗口区的条目作为候选者，与试用区中最久未被访问的条目（受害者）比较
+ *               访问频率（由4位计数的Count-Min Sketch估算，并定期减半以淘汰历史热点），频率更高的一方留下。
+ *               试用区的条目再次被访问后晋升到保护区。因此一批只出现一次的key（例如扫描器产生的随机路径）
+ *               只会在窗口区和试用区之间被淘汰，不会挤掉真正的热点条目。
+ *               读操作直接访问ConcurrentHashMap，访问记录（频率和队列顺序）是采样的（平均每16次命中记录一次），
+ *               并且只在能立即获得锁时更新，竞争激烈时被丢弃。热点条目的访问次数足够多，采样不影响淘汰的判断；
+ *               写操作在锁内完成。命中，未命中和淘汰次数通过LongAdder统计（见stats）。
+ */
+public class TinyLfuCache<K, V> {
+    //窗口区占总容量的比例
+    private static final double WINDOW_RATIO = 0.01;
+    //保护区占主区的比例
+    private static final double PROTECTED_RATIO = 0.8;
+    //条目所在的队列
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    //读操作的访问记录采样掩码：每16次命中平均只记录一次，避免热点读路径上的锁竞争和缓存行争用
+    private static final int READ_SAMPLE_MASK = 15;
+    //最大条目数
+    private final int maximumSize;
+    //窗口区和保护区的最大条目数
+    private final int maxWindow;
+    private final int maxProtected;
+    //key -> 条目
+    private final Map<K, Node<K, V>> data;
+    //访问频率的估算
+    private final FrequencySketch sketch;
+    //三个队列（哨兵节点为头，按从旧到新的顺序排列）
+    private final Node<K, V> window = Node.sentinel();
+    private final Node<K, V> probation = Node.sentinel();
+    private final Node<K, V> protectedQueue = Node.sentinel();
+    //各队列的条目数
+    private int windowSize;
+    private int probationSize;
+    private int protectedSize;
+    //队列和频率估算的锁
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    /**
+     * @date: 2024-06-06 9:40
+     * @description: 有参构造器
+     * @Param maximumSize: 最大条目数
+     * @return: null
+     */
+    public TinyLfuCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.maxWindow = Math.max(1, (int) (maximumSize * WINDOW_RATIO));
+        int maxMain = maximumSize - maxWindow;
+        this.maxProtected = (int) (maxMain * PROTECTED_RATIO);
+        this.data = new ConcurrentHashMap<>(Math.min(maximumSize, 256));
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+    /**
+     * @date: 2024-06-06 9:45
+     * @description: 查找缓存条目，不存在时返回null
+     * @Param key:
+     * @return: V
+     */
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if ((ThreadLocalRandom.current().nextInt() & READ_SAMPLE_MASK) == 0) {
+            onAccess(node);
+        }
+        return node.value;
+    }
+    /**
+     * @date: 2024-06-06 9:50
+     * @description: 查找缓存条目，不存在时通过mappingFunction创建并放入缓存。
+     *               mappingFunction在锁外执行，并发时可能被执行多次，但只有一个结果会被缓存和返回。
+     * @Param key:
+     * @Param mappingFunction:
+     * @return: V
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = mappingFunction.apply(key);
+        if (value == null) {
+            return null;
+        }
+        return putIfAbsent(key, value);
+    }
+    /**
+     * @date: 2024-06-06 9:55
+     * @description: 放入缓存条目（已存在时覆盖）
+     * @Param key:
+     * @Param value:
+     * @return: void
+     */
+    public void put(K key, V value) {
+        lock.lock();
+        try {
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                node.value = value;
+                touch(node);
+                return;
+            }
+            add(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+    /**
+     * @date: 2024-06-06 10:00
+     * @description: 放入缓存条目（已存在时不覆盖），返回缓存中的值。
+     *               与get配合使用时可以避免computeIfAbsent在命中时创建捕获了外部变量的lambda对象。
+     * @Param key:
+     * @Param value:
+     * @return: V
+     */
+    public V putIfAbsent(K key, V value) {
+        lock.lock();
+        try {
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                return node.value;
+            }
+            add(key, value);
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            data.clear();
+            resetQueue(window);
+            resetQueue(probation);
+            resetQueue(protectedQueue);
+            windowSize = 0;
+            probationSize = 0;
+            protectedSize = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @date: 2024-06-06 10:05
+     * @description: 获取命中，未命中和淘汰次数的快照
+     * @return: org.wyh.gateway.common.utils.CacheStats
+     */
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), data.size(), maximumSize);
+    }
+    /**
+     * @date: 2024-06-06 10:10
+     * @description: 记录一次（被采样的）命中。只有能立即获得锁时才更新频率和队列顺序，否则丢弃这次记录（近似的LRU/LFU已经足够）。
+     * @Param node:
+     * @return: void
+     */
+    private void onAccess(Node<K, V> node) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            //条目可能在获得锁之前已经被淘汰
+            if (node.prev != null) {
+                touch(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    /*
+     * 以下方法只在持有锁时调用
+     */
+    private void touch(Node<K, V> node) {
+        sketch.increment(node.key);
+        switch (node.queue) {
+            case WINDOW:
+                moveToTail(window, node);
+                break;
+            case PROBATION:
+                //试用区的条目再次被访问后晋升到保护区，保护区超出容量时，最久未被访问的条目降级到试用区
+                unlink(node);
+                probationSize--;
+                node.queue = PROTECTED;
+                linkLast(protectedQueue, node);
+                protectedSize++;
+                while (protectedSize > maxProtected) {
+                    Node<K, V> demoted = protectedQueue.next;
+                    unlink(demoted);
+                    protectedSize--;
+                    demoted.queue = PROBATION;
+                    linkLast(probation, demoted);
+                    probationSize++;
+                }
+                break;
+            default:
+                moveToTail(protectedQueue, node);
+                break;
+        }
+    }
+
+    private void add(K key, V value) {
+        Node<K, V> node = new Node<>(key, value);
+        sketch.increment(key);
+        node.queue = WINDOW;
+        linkLast(window, node);
+        windowSize++;
+        data.put(key, node);
+        while (windowSize > maxWindow) {
+            //被挤出窗口区的条目进入试用区，然后由主区决定淘汰谁
+            Node<K, V> candidate = window.next;
+            unlink(candidate);
+            windowSize--;
+            candidate.queue = PROBATION;
+            linkLast(probation, candidate);
+            probationSize++;
+            evictFromMain(candidate);
+        }
+    }
+    /**
+     * @date: 2024-06-06 10:15
+     * @description: 主区超出容量时，比较候选者与受害者（试用区中最久未被访问的条目）的访问频率，淘汰频率较低的一方
+     * @Param candidate: 刚从窗口区进入试用区的条目
+     * @return: void
+     */
+    private void evictFromMain(Node<K, V> candidate) {
+        while (windowSize + probationSize + protectedSize > maximumSize) {
+            Node<K, V> victim = probation.next;
+            if (victim == candidate || victim == probation) {
+                evict(candidate);
+                continue;
+            }
+            if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evict(victim);
+            } else {
+                evict(candidate);
+            }
+        }
+    }
+
+    private void evict(Node<K, V> node) {
+        unlink(node);
+        if (node.queue == PROBATION) {
+            probationSize--;
+        } else if (node.queue == PROTECTED) {
+            protectedSize--;
+        } else {
+            windowSize--;
+        }
+        data.remove(node.key, node);
+        evictions.increment();
+    }
+
+    private static <K, V> void resetQueue(Node<K, V> head) {
+        head.prev = head;
+        head.next = head;
+    }
+
+    private static <K, V> void moveToTail(Node<K, V> head, Node<K, V> node) {
+        unlink(node);
+        linkLast(head, node);
+    }
+
+    private static <K, V> void linkLast(Node<K, V> head, Node<K, V> node) {
+        Node<K, V> last = head.prev;
+        node.prev = last;
+        node.next = head;
+        last.next = node;
+        head.prev = node;
+    }
+
+    private static <K, V> void unlink(Node<K, V> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.utils
+     * @Author: wyh
+     * @Date: 2024-06-06 10:20
+     * @Description: 缓存条目，同时是双向循环链表的节点（prev为null表示已经不在任何队列中）
+     */
+    private static final class Node<K, V> {
+        private final K key;
+        private volatile V value;
+        private int queue;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        private static <K, V> Node<K, V> sentinel() {
+            Node<K, V> head = new Node<>(null, null);
+            resetQueue(head);
+            return head;
+        }
+    }
+    /**
+     * @BelongsProject: my-api-gateway
+     * @BelongsPackage: org.wyh.gateway.common.utils
+     * @Author: wyh
+     * @Date: 2024-06-06 10:25
+     * @Description: 4位计数的Count-Min Sketch，用于估算key的访问频率。
+     *               每个long保存16个计数器，每个key在4个long中各占一个计数器，频率取4个计数器的最小值（最大为15）。
+     *               累加次数达到10倍容量时，全部计数器减半，使频率能够反映近期的访问情况。
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        //减半时清除每个计数器最高位之外的进位
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private final long[] table;
+        private final int tableMask;
+        //触发减半的累加次数
+        private final int sampleSize;
+        //自上次减半以来的累加次数
+        private int additions;
+
+        private FrequencySketch(int maximumSize) {
+            int length = Integer.highestOneBit(Math.max(8, Math.min(maximumSize, 1 << 30) - 1)) << 1;
+            this.table = new long[length];
+            this.tableMask = length - 1;
+            this.sampleSize = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+        }
+
+        private int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        private void increment(Object key) {
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = (start + i) << 2;
+                long mask = 0xfL << offset;
+                if ((table[index] & mask) != mask) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions >>>= 1;
+            }
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & tableMask;
+        }
+
+        private static int spread(int hash) {
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            return (hash >>> 16) ^ hash;
+        }
+    }
+}
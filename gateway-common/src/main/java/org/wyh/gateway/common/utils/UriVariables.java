@@ -0,0 +1,219 @@
+package org.wyh.gateway.common.utils;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.utils
+ * @Author: wyh
+ * @Date: 2024-06-09 9:30
+ * @Description: 可重复使用的路径变量容器，用于AntPathMatcher.extractUriTemplateVariables(String, CharSequence, UriVariables)。
+ *               变量名直接引用编译好的片段匹配器中的字符串；变量值只以（原字符序列，起止下标）的形式记录，
+ *               在第一次调用getValue时才创建字符串（之后缓存），也可以通过valueEquals等方法在不创建字符串的情况下使用。
+ *               因此对于不含正则表达式片段的路径规则，在容器容量足够时提取路径变量不会创建任何对象。
+ *               变量值引用被匹配的路径，在读取完变量值之前，路径（例如ByteBufCharSequence指向的ByteBuf）不能被修改或释放。
+ *               非线程安全，通常每个线程（或每个请求）使用一个容器，每次提取前会被清空。
+ */
+public final class UriVariables {
+    //容量为0时共享的空数组
+    private static final String[] EMPTY_STRINGS = {};
+    private static final CharSequence[] EMPTY_SOURCES = {};
+    private static final int[] EMPTY_BOUNDS = {};
+    //变量名
+    private String[] names;
+    //变量值所在的字符序列
+    private CharSequence[] sources;
+    //变量值在字符序列中的起止下标，第i个变量为[bounds[2i], bounds[2i+1])
+    private int[] bounds;
+    //已经创建的变量值字符串，没有创建时为null
+    private String[] values;
+    //变量个数
+    private int size;
+
+    public UriVariables() {
+        this(4);
+    }
+    /**
+     * @date: 2024-06-09 9:35
+     * @description: 有参构造器
+     * @Param initialCapacity: 初始容量（变量个数），为0时在记录第一个变量时才分配
+     * @return: null
+     */
+    public UriVariables(int initialCapacity) {
+        if (initialCapacity <= 0) {
+            this.names = EMPTY_STRINGS;
+            this.sources = EMPTY_SOURCES;
+            this.bounds = EMPTY_BOUNDS;
+            this.values = EMPTY_STRINGS;
+        } else {
+            this.names = new String[initialCapacity];
+            this.sources = new CharSequence[initialCapacity];
+            this.bounds = new int[initialCapacity * 2];
+            this.values = new String[initialCapacity];
+        }
+    }
+    /**
+     * @date: 2024-06-09 9:40
+     * @description: 记录一个变量。同名的变量已经存在时覆盖其值（位置不变），与Map.put的效果一致。
+     * @Param name:
+     * @Param source: 变量值所在的字符序列
+     * @Param start:
+     * @Param end:
+     * @return: void
+     */
+    void put(String name, CharSequence source, int start, int end) {
+        int index = indexOf(name);
+        if (index < 0) {
+            if (size == names.length) {
+                int capacity = Math.max(4, size * 2);
+                names = Arrays.copyOf(names, capacity);
+                sources = Arrays.copyOf(sources, capacity);
+                bounds = Arrays.copyOf(bounds, capacity * 2);
+                values = Arrays.copyOf(values, capacity);
+            }
+            index = size++;
+            names[index] = name;
+        }
+        sources[index] = source;
+        bounds[index * 2] = start;
+        bounds[index * 2 + 1] = end;
+        values[index] = null;
+    }
+    /**
+     * @date: 2024-06-09 9:45
+     * @description: 清空容器（释放对路径和变量值的引用，保留已分配的容量）
+     * @return: void
+     */
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(sources, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public String getName(int index) {
+        checkIndex(index);
+        return names[index];
+    }
+    /**
+     * @date: 2024-06-09 9:50
+     * @description: 获取变量的位置，不存在时返回-1
+     * @Param name:
+     * @return: int
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    /**
+     * @date: 2024-06-09 9:55
+     * @description: 获取第index个变量的值（第一次调用时创建字符串）
+     * @Param index:
+     * @return: java.lang.String
+     */
+    public String getValue(int index) {
+        checkIndex(index);
+        String value = values[index];
+        if (value == null) {
+            value = sources[index].subSequence(bounds[index * 2], bounds[index * 2 + 1]).toString();
+            values[index] = value;
+        }
+        return value;
+    }
+    /**
+     * @date: 2024-06-09 10:00
+     * @description: 根据变量名获取变量的值，不存在时返回null
+     * @Param name:
+     * @return: java.lang.String
+     */
+    public String get(String name) {
+        int index = indexOf(name);
+        return index < 0 ? null : getValue(index);
+    }
+
+    public int getValueLength(int index) {
+        checkIndex(index);
+        return bounds[index * 2 + 1] - bounds[index * 2];
+    }
+    /**
+     * @date: 2024-06-09 10:05
+     * @description: 判断第index个变量的值是否与expected相同（不创建字符串）
+     * @Param index:
+     * @Param expected:
+     * @return: boolean
+     */
+    public boolean valueEquals(int index, CharSequence expected) {
+        int length = getValueLength(index);
+        if (expected == null || expected.length() != length) {
+            return false;
+        }
+        CharSequence source = sources[index];
+        int start = bounds[index * 2];
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * @date: 2024-06-09 10:10
+     * @description: 将第index个变量的值追加到StringBuilder中（不创建字符串）
+     * @Param index:
+     * @Param builder:
+     * @return: java.lang.StringBuilder
+     */
+    public StringBuilder appendValue(int index, StringBuilder builder) {
+        checkIndex(index);
+        if (values[index] != null) {
+            return builder.append(values[index]);
+        }
+        return builder.append(sources[index], bounds[index * 2], bounds[index * 2 + 1]);
+    }
+    /**
+     * @date: 2024-06-09 10:15
+     * @description: 将全部变量复制到map中（按记录的顺序）
+     * @Param map:
+     * @return: void
+     */
+    void copyTo(Map<String, String> map) {
+        for (int i = 0; i < size; i++) {
+            map.put(names[i], getValue(i));
+        }
+    }
+    /**
+     * @date: 2024-06-09 10:20
+     * @description: 以Map的形式获取全部变量（会创建全部变量值的字符串）
+     * @return: java.util.Map<java.lang.String, java.lang.String>
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> map = new LinkedHashMap<>(size * 2);
+        copyTo(map);
+        return map;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
@@ -0,0 +1,57 @@
+package org.wyh.gateway.common.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-06-10 10:40
+ * @Description: 快照构建器的测试：注册中心重复推送内容相同的服务定义时，不产生修改和变更事件，但仍记录该服务被刷新过
+ */
+class ConfigSnapshotTest {
+
+    @Test
+    void putEqualServiceDefinitionKeepsCurrentObject() {
+        ConfigSnapshot.Builder builder = ConfigSnapshot.EMPTY.toBuilder();
+        ServiceDefinition definition = newDefinition("/user/**", 3000);
+        builder.putServiceDefinition(definition.getUniqueId(), definition);
+        ConfigSnapshot snapshot = builder.build();
+
+        ConfigSnapshot.Builder next = snapshot.toBuilder();
+        next.markRefreshed(definition.getUniqueId())
+                .putServiceDefinition(definition.getUniqueId(), newDefinition("/user/**", 3000));
+        assertFalse(next.isModified());
+        assertEquals(1, next.getRefreshedUniqueIds().size());
+
+        next.putServiceDefinition(definition.getUniqueId(), newDefinition("/user/**", 5000));
+        assertTrue(next.isModified());
+        //同一批修改中先改后改回，不产生变更事件
+        next.putServiceDefinition(definition.getUniqueId(), newDefinition("/user/**", 3000));
+        ConfigSnapshot newSnapshot = next.build();
+        assertTrue(next.diff(newSnapshot).isEmpty());
+
+        ConfigSnapshot.Builder changed = newSnapshot.toBuilder();
+        changed.putServiceDefinition(definition.getUniqueId(), newDefinition("/user/v2/**", 3000));
+        assertEquals(1, changed.diff(changed.build()).size());
+        assertSame(definition, snapshot.getServiceDefinition(definition.getUniqueId()));
+    }
+
+    private static ServiceDefinition newDefinition(String patternPath, int timeout) {
+        HttpServiceInvoker invoker = new HttpServiceInvoker();
+        invoker.setInvokerPath("/user/info");
+        invoker.setTimeout(timeout);
+        Map<String, ServiceInvoker> invokerMap = new HashMap<>();
+        invokerMap.put(invoker.getInvokerPath(), invoker);
+        return new ServiceDefinition("user-service:1.0.0", "user-service", "1.0.0", "http", patternPath,
+                "dev", true, null, invokerMap);
+    }
+}
@@ -0,0 +1,69 @@
+package org.wyh.gateway.common.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-06-11 10:00
+ * @Description: PersistentMap的随机对比测试：随机执行添加，替换和删除操作，并与HashMap的结果对比。
+                 key中包含哈希值相同的字符串（例如“Aa”和“BB”），用于覆盖冲突节点。
+ */
+class PersistentMapTest {
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        Random random = new Random(20240611L);
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentMap<String, Integer> actual = PersistentMap.empty();
+        for (int i = 0; i < 200_000; i++) {
+            String key = randomKey(random);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                actual = actual.minus(key);
+            } else {
+                Integer value = random.nextInt(8) == 0 ? null : random.nextInt(100);
+                expected.put(key, value);
+                actual = actual.plus(key, value);
+            }
+            assertEquals(expected.get(key), actual.get(key));
+            assertEquals(expected.containsKey(key), actual.containsKey(key));
+            assertEquals(expected.size(), actual.size());
+            if (i % 10_000 == 0) {
+                assertEquals(expected, actual);
+                assertEquals(expected.size(), actual.entrySet().stream().count());
+            }
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void unchangedOperationsReturnSameMap() {
+        Integer value = 1;
+        PersistentMap<String, Integer> map = PersistentMap.<String, Integer>empty().plus("Aa", value).plus("BB", 2);
+        assertSame(map, map.plus("Aa", value));
+        assertSame(map, map.minus("C#"));
+        PersistentMap<String, Integer> removed = map.minus("Aa");
+        assertEquals(1, removed.size());
+        assertEquals(2, removed.get("BB"));
+        assertEquals(value, map.get("Aa"));
+        assertSame(PersistentMap.empty(), removed.minus("BB"));
+    }
+
+    private static String randomKey(Random random) {
+        //“Aa”和“BB”的哈希值相同，由它们拼接出的等长字符串哈希值也相同
+        StringBuilder key = new StringBuilder(random.nextInt(2) == 0 ? "service-" + random.nextInt(3000) : "");
+        for (int i = random.nextInt(4); i > 0; i--) {
+            key.append(random.nextBoolean() ? "Aa" : "BB");
+        }
+        return key.toString();
+    }
+}
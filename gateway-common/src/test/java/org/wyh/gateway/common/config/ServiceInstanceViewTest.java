@@ -0,0 +1,72 @@
+package org.wyh.gateway.common.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.config
+ * @Author: wyh
+ * @Date: 2024-06-12 10:00
+ * @Description: 服务实例视图的测试：参与路由的对象在视图创建时构建，读操作直接返回已经创建的对象；
+                 增量更新时只为发生变化的服务实例创建新对象，没有变化的灰度/正常服务实例数组和标签索引直接沿用。
+ */
+class ServiceInstanceViewTest {
+    private static final String UNIQUE_ID = "user-service:1.0.0";
+
+    @Test
+    void readsReturnMaterializedInstances() {
+        List<ServiceInstance> instances = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            instances.add(newInstance(i, i % 5 != 4, i == 0));
+        }
+        ServiceInstanceView view = ServiceInstanceView.of(UNIQUE_ID, instances);
+        ServiceInstance[] normal = view.getInstances(false);
+        assertEquals(7, normal.length);
+        assertSame(normal[0], view.getInstance("10.0.0.1:8080"));
+        assertSame(view.getInstance("10.0.0.1:8080"), view.getInstance("10.0.0.1:8080"));
+        assertSame(view.getInstance("10.0.0.1:8080"), new ArrayList<>(view.getAllInstances()).get(1));
+        //被禁用的服务实例不参与路由，但仍然可以查到
+        ServiceInstance disabled = view.getInstance("10.0.0.4:8080");
+        assertFalse(disabled.isEnable());
+        assertEquals(1, view.getTagIndex(false).select(Collections.singletonMap("zone", "z1")).length);
+    }
+
+    @Test
+    void incrementalUpdateReusesUnchangedRouting() {
+        List<ServiceInstance> instances = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            instances.add(newInstance(i, true, i < 2));
+        }
+        ServiceInstanceView view = ServiceInstanceView.of(UNIQUE_ID, instances);
+        ServiceInstanceView updated = view.withInstance(UNIQUE_ID, newInstance(5, true, false));
+        assertSame(view.getInstances(true), updated.getInstances(true));
+        assertSame(view.getTagIndex(true), updated.getTagIndex(true));
+        assertNotSame(view.getTagIndex(false), updated.getTagIndex(false));
+        assertSame(view.getInstance("10.0.0.6:8080"), updated.getInstance("10.0.0.6:8080"));
+        ServiceInstanceView removed = updated.withoutInstance("10.0.0.0:8080");
+        assertEquals(1, removed.getInstances(true).length);
+        assertSame(updated.getInstances(false), removed.getInstances(false));
+    }
+
+    private static ServiceInstance newInstance(int i, boolean enable, boolean gray) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setServiceInstanceId("10.0.0." + i + ":8080");
+        instance.setUniqueId(UNIQUE_ID);
+        instance.setIp("10.0.0." + i);
+        instance.setPort(8080);
+        instance.setVersion("1.0.0");
+        instance.setTags("zone=z" + i);
+        instance.setEnable(enable);
+        instance.setGray(gray);
+        return instance;
+    }
+}
@@ -0,0 +1,197 @@
+package org.wyh.gateway.common.router;
+
+import org.junit.jupiter.api.Test;
+import org.wyh.gateway.common.config.HttpServiceInvoker;
+import org.wyh.gateway.common.config.ServiceDefinition;
+import org.wyh.gateway.common.config.ServiceInvoker;
+import org.wyh.gateway.common.constant.GatewayConst;
+import org.wyh.gateway.common.utils.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.router
+ * @Author: wyh
+ * @Date: 2024-06-09 10:00
+ * @Description: RouteTable的随机对比测试：随机生成服务定义（含“**”出现在中间的表达式和前缀表达式），
+                 与逐个调用AntPathMatcher.match再按比较器取最具体路由的结果对比。
+                 匹配的路由之间比较结果不满足传递性时不存在唯一的正确结果，只检查构建不抛出异常，且结果与服务定义的顺序无关。
+ */
+class RouteTableTest {
+    private static final String[] PATTERN_SEGMENTS = {"a", "b", "c", "x", "*", "**", "**", "{id}", "*.html"};
+    private static final String[] PATH_SEGMENTS = {"a", "b", "c", "x", "y", "x.html"};
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    @Test
+    void buildWithInnerDoubleWildcardsAndPrefixPatterns() {
+        Map<String, ServiceDefinition> definitions = new LinkedHashMap<>();
+        String[] patterns = {"/b/**/**/x", "/*/**/a", "/x/**/b/{id}", "/{id}/{id}/**/c", "/a/**", "/a/b/**",
+                "/x/{id}/{id}", "/a/b/c", "/**"};
+        for (int i = 0; i < patterns.length; i++) {
+            definitions.put("service-" + i, newDefinition("service-" + i, GatewayConst.DEFAULT_VERSION,
+                    patterns[i], Collections.emptyList()));
+        }
+        RouteTable table = RouteTable.build(definitions);
+        assertEquals(patterns.length, table.size());
+        assertEquals("/a/b/c", table.match("/a/b/c").getPattern());
+        assertEquals("/b/**/**/x", table.match("/b/c/x").getPattern());
+        assertEquals("/**", table.match("/y").getPattern());
+    }
+
+    @Test
+    void randomDefinitionsMatchBruteForce() {
+        Random random = new Random(20240609L);
+        int inconsistent = 0;
+        for (int round = 0; round < 1000; round++) {
+            List<ServiceDefinition> definitionList = randomDefinitions(random);
+            Map<String, ServiceDefinition> definitions = toMap(definitionList);
+            List<ServiceDefinition> shuffled = new ArrayList<>(definitionList);
+            Collections.shuffle(shuffled, random);
+            RouteTable table = RouteTable.build(definitions);
+            RouteTable shuffledTable = RouteTable.build(toMap(shuffled));
+            List<Route> routes = allRoutes(definitions);
+            for (int i = 0; i < 50; i++) {
+                String path = randomPath(random);
+                Route actual = table.match(path);
+                assertEquals(key(actual), key(shuffledTable.match(path)), path);
+                List<Route> candidates = new ArrayList<>();
+                for (Route route : routes) {
+                    if (PATH_MATCHER.match(route.getPattern(), path)) {
+                        candidates.add(route);
+                    }
+                }
+                Route expected = best(candidates, path);
+                if (expected == null && !candidates.isEmpty()) {
+                    inconsistent++;
+                    continue;
+                }
+                assertEquals(key(expected), key(actual), () -> path + " " + candidates);
+            }
+        }
+        //确认随机数据确实覆盖了比较结果不满足传递性的情况
+        assertTrue(inconsistent > 0);
+    }
+    /**
+     * @date: 2024-06-09 10:10
+     * @description: 按比较器排序匹配的路由并取第一个；排序结果与比较器不一致（不满足传递性）时返回null
+     * @Param candidates:
+     * @Param path:
+     * @return: org.wyh.gateway.common.router.Route
+     */
+    private static Route best(List<Route> candidates, String path) {
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        Comparator<Route> comparator = Comparator.comparing(Route::getPattern, PATH_MATCHER.getPatternComparator(path))
+                .thenComparing(route -> route.getServiceInvoker() == null)
+                .thenComparing(route -> !GatewayConst.DEFAULT_VERSION.equals(route.getServiceDefinition().getVersion()))
+                .thenComparing(route -> route.getServiceDefinition().getUniqueId())
+                .thenComparing(Route::getPattern);
+        List<Route> sorted = new ArrayList<>();
+        for (Route candidate : candidates) {
+            int i = sorted.size();
+            while (i > 0 && comparator.compare(candidate, sorted.get(i - 1)) < 0) {
+                i--;
+            }
+            sorted.add(i, candidate);
+        }
+        for (int i = 0; i < sorted.size(); i++) {
+            for (int j = i + 1; j < sorted.size(); j++) {
+                if (comparator.compare(sorted.get(i), sorted.get(j)) > 0) {
+                    return null;
+                }
+            }
+        }
+        return sorted.get(0);
+    }
+
+    private static List<Route> allRoutes(Map<String, ServiceDefinition> definitions) {
+        List<Route> routes = new ArrayList<>();
+        for (ServiceDefinition definition : definitions.values()) {
+            routes.add(new Route(definition.getPatternPath(), RouteTable.split(definition.getPatternPath()),
+                    definition, null));
+            for (Map.Entry<String, ServiceInvoker> entry : definition.getInvokerMap().entrySet()) {
+                routes.add(new Route(entry.getKey(), RouteTable.split(entry.getKey()), definition, entry.getValue()));
+            }
+        }
+        return routes;
+    }
+
+    private static String key(Route route) {
+        return route == null ? null : route.getPattern() + "@" + route.getServiceDefinition().getUniqueId()
+                + (route.getServiceInvoker() == null ? "" : "#invoker");
+    }
+    /*
+     * 测试数据的构建方法
+     */
+    private static List<ServiceDefinition> randomDefinitions(Random random) {
+        List<ServiceDefinition> definitions = new ArrayList<>();
+        int routeCount = 32 + random.nextInt(199);
+        int count = 0;
+        for (int i = 0; count < routeCount; i++) {
+            List<String> invokerPaths = new ArrayList<>();
+            for (int j = random.nextInt(4); j > 0; j--) {
+                invokerPaths.add(randomPattern(random));
+            }
+            String version = random.nextInt(4) == 0 ? "2.0.0" : GatewayConst.DEFAULT_VERSION;
+            definitions.add(newDefinition("service-" + i, version, randomPattern(random), invokerPaths));
+            count += 1 + invokerPaths.size();
+        }
+        return definitions;
+    }
+
+    private static Map<String, ServiceDefinition> toMap(List<ServiceDefinition> definitions) {
+        Map<String, ServiceDefinition> map = new LinkedHashMap<>();
+        for (ServiceDefinition definition : definitions) {
+            map.put(definition.getUniqueId(), definition);
+        }
+        return map;
+    }
+
+    private static ServiceDefinition newDefinition(String uniqueId, String version, String patternPath,
+                                                   List<String> invokerPaths) {
+        Map<String, ServiceInvoker> invokerMap = new HashMap<>();
+        for (String invokerPath : invokerPaths) {
+            HttpServiceInvoker invoker = new HttpServiceInvoker();
+            invoker.setInvokerPath(invokerPath);
+            invokerMap.put(invokerPath, invoker);
+        }
+        ServiceDefinition definition = new ServiceDefinition();
+        definition.setUniqueId(uniqueId);
+        definition.setVersion(version);
+        definition.setEnable(true);
+        definition.setPatternPath(patternPath);
+        definition.setInvokerMap(invokerMap);
+        return definition;
+    }
+
+    private static String randomPattern(Random random) {
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 1 + random.nextInt(4); i > 0; i--) {
+            pattern.append('/').append(PATTERN_SEGMENTS[random.nextInt(PATTERN_SEGMENTS.length)]);
+        }
+        return pattern.toString();
+    }
+
+    private static String randomPath(Random random) {
+        StringBuilder path = new StringBuilder();
+        for (int i = random.nextInt(5); i > 0; i--) {
+            path.append('/').append(PATH_SEGMENTS[random.nextInt(PATH_SEGMENTS.length)]);
+        }
+        if (path.length() == 0 || random.nextInt(8) == 0) {
+            path.append('/');
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package org.wyh.gateway.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @BelongsProject: my-api-gateway
+ * @BelongsPackage: org.wyh.gateway.common.utils
+ * @Author: wyh
+ * @Date: 2024-06-09 10:30
+ * @Description: PatternSet的随机对比测试：随机生成路径规则集合（含“**”出现在中间的路径规则和前缀路径规则），
+                 与逐个调用AntPathMatcher.match再用getPatternComparator(path)排序取第一个的结果对比。
+                 匹配的路径规则之间比较结果不满足传递性时不存在唯一的正确结果，只检查编译和匹配不抛出异常。
+ */
+class PatternSetTest {
+    private static final String[] PATTERN_SEGMENTS = {"a", "b", "c", "x", "*", "**", "**", "{id}", "*.html"};
+    private static final String[] PATH_SEGMENTS = {"a", "b", "c", "x", "y", "x.html"};
+
+    @Test
+    void compileInconsistentPatterns() {
+        AntPathMatcher matcher = new AntPathMatcher();
+        List<String> patterns = new ArrayList<>(Arrays.asList("/b/**/**/x", "/*/**/a", "/x/**/b/{id}",
+                "/{id}/{id}/**/c", "/a/**", "/aaaa/**", "/**/c", "/{id}/{id}/{id}"));
+        for (int i = 0; i < 40; i++) {
+            patterns.add("/x/{id}/b/" + i);
+        }
+        PatternSet patternSet = matcher.compilePatterns(patterns);
+        assertFalse(patternSet.isRanked());
+        PatternMatch match = patternSet.match("/b/c/x");
+        assertNotNull(match);
+        assertEquals("/{id}/{id}/{id}", match.getPattern());
+        assertNull(patternSet.match("/y"));
+    }
+
+    @Test
+    void randomPatternsMatchBruteForce() {
+        Random random = new Random(20240609L);
+        AntPathMatcher matcher = new AntPathMatcher();
+        int inconsistent = 0;
+        for (int round = 0; round < 1000; round++) {
+            List<String> patterns = new ArrayList<>();
+            for (int i = 32 + random.nextInt(199); i > 0; i--) {
+                patterns.add(randomPattern(random));
+            }
+            PatternSet patternSet = matcher.compilePatterns(patterns);
+            for (int i = 0; i < 50; i++) {
+                String path = randomPath(random);
+                PatternMatch actual = patternSet.match(path);
+                List<Integer> candidates = new ArrayList<>();
+                for (int j = 0; j < patterns.size(); j++) {
+                    if (matcher.match(patterns.get(j), path)) {
+                        candidates.add(j);
+                    }
+                }
+                Integer expected = best(matcher, patterns, candidates, path);
+                if (expected == null && !candidates.isEmpty()) {
+                    inconsistent++;
+                    continue;
+                }
+                if (expected == null) {
+                    assertNull(actual, path);
+                } else {
+                    assertNotNull(actual, path);
+                    assertEquals(expected.intValue(), actual.getIndex(), path);
+                    assertEquals(matcher.extractUriTemplateVariables(patterns.get(expected), path),
+                            actual.getUriVariables(), path);
+                }
+            }
+        }
+        //确认随机数据确实覆盖了比较结果不满足传递性的情况
+        assertTrue(inconsistent > 0);
+    }
+    /**
+     * @date: 2024-06-09 10:40
+     * @description: 按比较器排序匹配的路径规则（比较结果相同时集合中靠前的优先）并取第一个；
+                     排序结果与比较器不一致（不满足传递性）时返回null
+     * @Param matcher:
+     * @Param patterns:
+     * @Param candidates: 匹配的路径规则在集合中的下标（升序）
+     * @Param path:
+     * @return: java.lang.Integer
+     */
+    private static Integer best(AntPathMatcher matcher, List<String> patterns, List<Integer> candidates, String path) {
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        Comparator<String> patternComparator = matcher.getPatternComparator(path);
+        Comparator<Integer> comparator = Comparator.comparing(patterns::get, patternComparator)
+                .thenComparing(Comparator.naturalOrder());
+        List<Integer> sorted = new ArrayList<>();
+        for (Integer candidate : candidates) {
+            int i = sorted.size();
+            while (i > 0 && comparator.compare(candidate, sorted.get(i - 1)) < 0) {
+                i--;
+            }
+            sorted.add(i, candidate);
+        }
+        for (int i = 0; i < sorted.size(); i++) {
+            for (int j = i + 1; j < sorted.size(); j++) {
+                if (comparator.compare(sorted.get(i), sorted.get(j)) > 0) {
+                    return null;
+                }
+            }
+        }
+        return sorted.get(0);
+    }
+    /*
+     * 测试数据的构建方法
+     */
+    private static String randomPattern(Random random) {
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 1 + random.nextInt(4); i > 0; i--) {
+            pattern.append('/').append(PATTERN_SEGMENTS[random.nextInt(PATTERN_SEGMENTS.length)]);
+        }
+        return pattern.toString();
+    }
+
+    private static String randomPath(Random random) {
+        StringBuilder path = new StringBuilder();
+        for (int i = random.nextInt(5); i > 0; i--) {
+            path.append('/').append(PATH_SEGMENTS[random.nextInt(PATH_SEGMENTS.length)]);
+        }
+        if (path.length() == 0 || random.nextInt(8) == 0) {
+            path.append('/');
+        }
+        return path.toString();
+    }
+}